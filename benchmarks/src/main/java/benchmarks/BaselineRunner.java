@@ -0,0 +1,39 @@
+package benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark single-threaded and with 2, 4 and 8 threads sharing
+ * the same state, writing one JSON result file per thread count
+ * (baseline-t1.json, ...). Those files are the baseline to compare against
+ * when checking a change for performance regressions.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar benchmarks.BaselineRunner
+ * [outputDir] [benchmark regex]
+ */
+public class BaselineRunner {
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws RunnerException, java.io.IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "benchmarks/results");
+        String include = args.length > 1 ? args[1] : "benchmarks\\..*Benchmark.*";
+        Files.createDirectories(directory);
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(directory.resolve("baseline-t" + threads + ".json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utils.Logger;
+
+/**
+ * Logger.info with a plain message, with a template, and when the level is
+ * disabled. Enabled messages include the wait for the writer thread whenever
+ * the ring buffer is full.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+    private Logger logger;
+
+    @Setup
+    public void setUp() {
+        logger = Logger.getInstance();
+        logger.setLevel(Logger.Level.INFO);
+    }
+
+    @Benchmark
+    public void info() {
+        logger.info("Transition fired successfully.");
+    }
+
+    @Benchmark
+    public void infoTemplate() {
+        logger.info("Transition {} fired successfully.", 3);
+    }
+
+    @Benchmark
+    public void debugDisabled() {
+        logger.debug("Transition {} fired successfully.", 3);
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import monitor.BalancedPolicy;
+import monitor.Monitor;
+import utils.Logger;
+
+/**
+ * Monitor.fireTransition over the two-transition cycle: each operation fires
+ * T0 and then T1 (either may fail under contention, which is measured too).
+ * The log level decides whether the firing line is written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MonitorBenchmark {
+    @Param({"WARN", "INFO"})
+    public String logLevel;
+
+    private Monitor monitor;
+
+    @Setup
+    public void setUp() {
+        Logger.getInstance().setLevel(Logger.Level.valueOf(logLevel));
+        monitor = new Monitor(Nets.cyclePlaces(), Nets.cycleTransitions(), new BalancedPolicy(),
+                Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public void fireTransition(Blackhole blackhole) {
+        blackhole.consume(monitor.fireTransition(0));
+        blackhole.consume(monitor.fireTransition(1));
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import monitor.BalancedPolicy;
+import monitor.LockFreeMonitor;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.MonitorType;
+import monitor.StripedMonitor;
+import utils.Logger;
+
+/**
+ * fireTransition over the two-transition cycle with four threads, for each
+ * monitor implementation. Each operation fires T0 and then T1 (either may
+ * fail under contention). In the LockFreeMonitor T0 takes the pending-bit
+ * path (it has a counter to update) and T1 a plain compare-and-set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MonitorTypeBenchmark {
+    @Param({"COARSE", "STRIPED", "LOCK_FREE"})
+    public MonitorType monitorType;
+
+    private MonitorInterface monitor;
+
+    @Setup
+    public void setUp() {
+        Logger.getInstance().setLevel(Logger.Level.WARN);
+        switch (monitorType) {
+            case STRIPED:
+                monitor = new StripedMonitor(Nets.cyclePlaces(), Nets.cycleTransitions(), new BalancedPolicy(),
+                        Integer.MAX_VALUE);
+                break;
+            case LOCK_FREE:
+                monitor = new LockFreeMonitor(Nets.cyclePlaces(), Nets.cycleTransitions(), new BalancedPolicy(),
+                        Integer.MAX_VALUE);
+                break;
+            default:
+                monitor = new Monitor(Nets.cyclePlaces(), Nets.cycleTransitions(), new BalancedPolicy(),
+                        Integer.MAX_VALUE);
+        }
+    }
+
+    @Benchmark
+    public void fireTransition(Blackhole blackhole) {
+        blackhole.consume(monitor.fireTransition(0));
+        blackhole.consume(monitor.fireTransition(1));
+    }
+}
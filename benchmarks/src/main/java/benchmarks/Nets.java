@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import petrinet.Places;
+import petrinet.Transition;
+
+/**
+ * Small nets shared by the benchmarks.
+ */
+final class Nets {
+    // Tokens in the first place, enough for 8 threads never to run dry.
+    static final int TOKENS = 1_000;
+
+    private Nets() {
+    }
+
+    /**
+     * Two places and a cycle T0: p0 -> p1, T1: p1 -> p0, with all tokens in p0.
+     */
+    static Places cyclePlaces() {
+        Places places = new Places();
+        places.addPlace(0, TOKENS);
+        places.addPlace(1, 0);
+        return places;
+    }
+
+    static Map<Integer, Transition> cycleTransitions() {
+        Map<Integer, Transition> transitions = new HashMap<>();
+        transitions.put(0, new Transition(0, new int[] {0}, new int[] {1}, new int[] {1}, new int[] {1},
+                false, 0, Long.MAX_VALUE));
+        transitions.put(1, new Transition(1, new int[] {1}, new int[] {1}, new int[] {0}, new int[] {1},
+                false, 0, Long.MAX_VALUE));
+        return transitions;
+    }
+
+    /**
+     * A non-temporal self-loop on p0 (consumes and produces one token), so
+     * that firing it never changes the marking.
+     */
+    static Transition selfLoop() {
+        return new Transition(0, new int[] {0}, new int[] {1}, new int[] {0}, new int[] {1},
+                false, 0, Long.MAX_VALUE);
+    }
+}
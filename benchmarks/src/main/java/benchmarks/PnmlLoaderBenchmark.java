@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utils.Logger;
+import utils.PnmlLoader;
+
+/**
+ * PnmlLoader.load on a generated PIPE-style ring of the given number of
+ * places and as many transitions (P_i -> T_i -> P_i+1), from memory, to
+ * check that nets with tens of thousands of nodes load well under a second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PnmlLoaderBenchmark {
+    @Param({"10000", "50000"})
+    public int places;
+
+    private byte[] document;
+
+    @Setup
+    public void setUp() {
+        Logger.getInstance().setLevel(Logger.Level.WARN);
+        document = ring(places).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PnmlLoader.LoadedNet load() throws IOException {
+        return PnmlLoader.load(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * Writes a ring of n places and n transitions, with one token in P0.
+     */
+    static String ring(int n) {
+        StringBuilder xml = new StringBuilder(n * 600);
+        xml.append("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<pnml>\n<net id=\"Net-One\" type=\"P/T net\">\n");
+        for (int i = 0; i < n; i++) {
+            xml.append("<place id=\"P").append(i).append("\">\n")
+                    .append("<name><value>P").append(i).append("</value></name>\n")
+                    .append("<initialMarking><value>Default,").append(i == 0 ? 1 : 0)
+                    .append("</value></initialMarking>\n")
+                    .append("<capacity><value>0</value></capacity>\n</place>\n");
+        }
+        for (int i = 0; i < n; i++) {
+            xml.append("<transition id=\"T").append(i).append("\">\n")
+                    .append("<name><value>T").append(i).append("</value></name>\n")
+                    .append("<rate><value>1.0</value></rate>\n")
+                    .append("<timed><value>false</value></timed>\n</transition>\n");
+        }
+        for (int i = 0; i < n; i++) {
+            xml.append("<arc id=\"P").append(i).append(" to T").append(i).append("\" source=\"P").append(i)
+                    .append("\" target=\"T").append(i).append("\">\n")
+                    .append("<inscription><value>Default,1</value></inscription>\n")
+                    .append("<type value=\"normal\"/>\n</arc>\n");
+            xml.append("<arc id=\"T").append(i).append(" to P").append((i + 1) % n).append("\" source=\"T")
+                    .append(i).append("\" target=\"P").append((i + 1) % n).append("\">\n")
+                    .append("<inscription><value>Default,1</value></inscription>\n")
+                    .append("<type value=\"normal\"/>\n</arc>\n");
+        }
+        xml.append("</net>\n</pnml>\n");
+        return xml.toString();
+    }
+}
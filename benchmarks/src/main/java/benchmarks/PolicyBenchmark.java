@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monitor.BalancedPolicy;
+import monitor.Policy;
+import monitor.PriorityPolicy;
+
+/**
+ * Policy.allowTransition for a transition in conflict (T2), and
+ * Policy.selectTransition for its conflict set (T2/T3, both enabled), with
+ * counters updated by earlier firings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyBenchmark {
+    @Param({"balanced", "priority"})
+    public String policyName;
+
+    private Policy policy;
+    private final long[] enabled = {(1L << 2) | (1L << 3)};
+    private final long[] conflictSet = {(1L << 2) | (1L << 3)};
+
+    @Setup
+    public void setUp() {
+        policy = "balanced".equals(policyName) ? new BalancedPolicy() : new PriorityPolicy();
+        for (int i = 0; i < 100; i++) {
+            policy.updateCounters(i % 3 == 0 ? 3 : 2);
+            policy.updateCounters(i % 4 == 0 ? 7 : 6);
+        }
+    }
+
+    @Benchmark
+    public boolean allowTransition() {
+        return policy.allowTransition(2);
+    }
+
+    @Benchmark
+    public int selectTransition() {
+        return policy.selectTransition(enabled, conflictSet);
+    }
+}
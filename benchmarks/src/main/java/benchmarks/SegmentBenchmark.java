@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monitor.BalancedPolicy;
+import monitor.Monitor;
+import petrinet.Places;
+import petrinet.Segment;
+import petrinet.Transition;
+
+/**
+ * Segment.canBeScheduled, the readiness check done for every firing that
+ * may wake the segment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentBenchmark {
+    private Segment segment;
+
+    @Setup
+    public void setUp() {
+        Places places = Nets.cyclePlaces();
+        Map<Integer, Transition> transitions = Nets.cycleTransitions();
+        Monitor monitor = new Monitor(places, transitions, new BalancedPolicy(), Integer.MAX_VALUE);
+        segment = new Segment("SegmentA", new ArrayList<>(transitions.values()), monitor, places);
+    }
+
+    @Benchmark
+    public boolean canBeScheduled() {
+        return segment.canBeScheduled();
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import petrinet.Places;
+import petrinet.Transition;
+import utils.Logger;
+
+/**
+ * Transition.isEnabled and Transition.fire (non-temporal) on a shared
+ * marking.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransitionBenchmark {
+    private Places places;
+    private Transition transition;
+
+    @Setup
+    public void setUp() {
+        // Keep the "fired successfully" line out of the measurement.
+        Logger.getInstance().setLevel(Logger.Level.WARN);
+        places = Nets.cyclePlaces();
+        transition = Nets.selfLoop();
+    }
+
+    @Benchmark
+    public boolean isEnabled() {
+        return transition.isEnabled(places);
+    }
+
+    @Benchmark
+    public void fire() throws InterruptedException {
+        transition.fire(places);
+    }
+}
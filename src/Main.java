@@ -1,14 +1,25 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
 
-import monitor.Monitor;
+import javax.management.JMException;
+
+import analysis.NetInvariants;
+import metrics.MetricsRegistry;
+import monitor.MonitorInterface;
+import monitor.MonitorType;
 import monitor.Policy;
 import monitor.PriorityPolicy;
 import monitor.BalancedPolicy;
+import monitor.StripedMonitor;
 import pool.MyThreadFactory;
 import pool.PoolManager;
+import pool.PoolMode;
+import simulation.DiscreteEventSimulator;
 import utils.Logger;
 import utils.PetriNet;
+import utils.TraceRecorder;
 import petrinet.Places;
 import petrinet.Segment;
 
@@ -24,23 +35,82 @@ public class Main {
         long startTime = System.currentTimeMillis();
 
         // Construct the Petri net using the selected policy.
-        PetriNet net = new PetriNet(policy);
+        // Run with -Dpetri.monitor=striped to use one lock per place, or
+        // -Dpetri.monitor=lockfree for the compare-and-set monitor.
+        MonitorType monitorType = MonitorType.fromName(System.getProperty("petri.monitor"));
+        // Run with -Dpetri.net=<file.pnml> to load the net from a PNML file.
+        String pnmlFile = System.getProperty("petri.net");
+        PetriNet net;
+        try {
+            net = pnmlFile == null
+                    ? new PetriNet(policy, monitorType)
+                    : new PetriNet(policy, monitorType, Paths.get(pnmlFile));
+        } catch (IOException e) {
+            logger.error("Could not load net from " + pnmlFile + ": " + e.getMessage());
+            System.err.println("Could not load net from " + pnmlFile + ": " + e.getMessage());
+            logger.close();
+            return;
+        }
+
+        // Log the P- and T-invariants of the net, computed from its structure
+        // (the Monitor checks the P-invariants after every firing).
+        logInvariants(computeInvariants(net));
+
+        // Run with -Dpetri.mode=des to simulate with a virtual clock instead of
+        // threads (-Dpetri.seed chooses among simultaneously fireable transitions).
+        if ("des".equals(System.getProperty("petri.mode"))) {
+            runDiscreteEvent(net, policy, startTime);
+            return;
+        }
 
         // Retrieve the segments, places, and monitor.
         List<Segment> segments = net.getSegments();
         Places places = net.getPlaces();
-        Monitor monitor = (Monitor) net.getMonitor();
+        MonitorInterface monitor = net.getMonitor();
 
         // Configure the thread pool with 4 threads using the custom factory.
+        // Each segment is queued at most once, so its queue never holds more
+        // than one task per segment.
+        // Run with -Dpetri.pool=forkjoin to use the work-stealing backend, or
+        // -Dpetri.pool=virtual for one (virtual, if available) thread per segment.
+        String poolProperty = System.getProperty("petri.pool");
+        PoolMode poolMode = "forkjoin".equals(poolProperty) ? PoolMode.FORK_JOIN
+                : "virtual".equals(poolProperty) ? PoolMode.THREAD_PER_SEGMENT
+                : PoolMode.FIXED;
         MyThreadFactory threadFactory = new MyThreadFactory("TestPoolThread");
-        PoolManager poolManager = new PoolManager(4, threadFactory);
+        PoolManager poolManager = new PoolManager(4, threadFactory, Math.max(1, segments.size()), poolMode);
+
+        // Run with -Dpetri.trace=<dir> to record a binary trace of the firings
+        // (decode it with utils.TraceReader).
+        String traceDir = System.getProperty("petri.trace");
+        TraceRecorder traceRecorder = null;
+        if (traceDir != null) {
+            try {
+                traceRecorder = new TraceRecorder(Paths.get(traceDir));
+                monitor.setTraceRecorder(traceRecorder);
+            } catch (IOException e) {
+                logger.error("Could not create trace in " + traceDir + ": " + e.getMessage());
+            }
+        }
+
+        // Run with -Dpetri.metrics=<seconds> to collect runtime metrics, publish
+        // them over JMX (watch them with jconsole) and print a snapshot every
+        // given number of seconds (0: only at the end).
+        Long metricsPeriod = Long.getLong("petri.metrics");
+        MetricsRegistry metrics = null;
+        if (metricsPeriod != null) {
+            metrics = createMetrics(net, monitor, segments, poolManager, threadFactory);
+            if (metricsPeriod > 0) {
+                metrics.startSnapshots(metricsPeriod * 1000L, System.out::print);
+            }
+        }
 
         // Start the Monitor Scheduler.
         monitor.startScheduler(segments, poolManager);
 
         // Wait until the invariant condition is met (T11 fired 186 times).
         synchronized (monitor.getInvariantLock()) {
-            while (monitor.getT0Counter() < 187) {
+            while (monitor.getT0Counter() < monitor.getT0Limit()) {
                 try {
                     monitor.getInvariantLock().wait();
                 } catch (InterruptedException e) {
@@ -54,31 +124,132 @@ public class Main {
         // Stop the Scheduler and immediately shut down the thread pool.
         monitor.stopScheduler();
         poolManager.shutdownNow();
+        if (traceRecorder != null) {
+            monitor.setTraceRecorder(null);
+            traceRecorder.close();
+            System.out.println("Firing trace: " + traceRecorder.getRecordCount() + " records in " + traceDir);
+        }
+        if (metrics != null) {
+            metrics.close();
+            System.out.print(metrics.snapshot());
+        }
 
         // Stop the stopwatch and calculate elapsed time.
         long endTime = System.currentTimeMillis();
         long elapsedTime = endTime - startTime;
 
         // Print final token counts in each Place.
-        System.out.println("Final tokens in Place 0: " + places.getTokenCount(0));
-        System.out.println("Final tokens in Place 1: " + places.getTokenCount(1));
-        System.out.println("Final tokens in Place 2: " + places.getTokenCount(2));
-        System.out.println("Final tokens in Place 3: " + places.getTokenCount(3));
-        System.out.println("Final tokens in Place 4: " + places.getTokenCount(4));
-        System.out.println("Final tokens in Place 5: " + places.getTokenCount(5));
-        System.out.println("Final tokens in Place 6: " + places.getTokenCount(6));
-        System.out.println("Final tokens in Place 7: " + places.getTokenCount(7));
-        System.out.println("Final tokens in Place 8: " + places.getTokenCount(8));
-        System.out.println("Final tokens in Place 9: " + places.getTokenCount(9));
-        System.out.println("Final tokens in Place 10: " + places.getTokenCount(10));
-        System.out.println("Final tokens in Place 11: " + places.getTokenCount(11));
-        System.out.println("Final tokens in Place 12: " + places.getTokenCount(12));
-        System.out.println("Final tokens in Place 13: " + places.getTokenCount(13));
-        System.out.println("Final tokens in Place 14: " + places.getTokenCount(14));
+        for (int placeId = 0; placeId < places.getPlaceCount(); placeId++) {
+            System.out.println("Final tokens in Place " + placeId + ": " + monitor.getTokenCount(placeId));
+        }
 
         // Print policy-specific statistics.
-        if (monitor.getPolicy() instanceof PriorityPolicy) {
-            PriorityPolicy prioPolicy = (PriorityPolicy) monitor.getPolicy();
+        printPolicyStatistics(monitor.getPolicy());
+
+        // Print the maximum number of simultaneously running tasks measured by PoolManager.
+        System.out.println("Maximum number of concurrently running tasks: " 
+                + poolManager.getMaxConcurrentTasks());
+        if (monitor instanceof StripedMonitor) {
+            System.out.println("Maximum number of concurrent firings: "
+                    + ((StripedMonitor) monitor).getMaxConcurrentFirings());
+        }
+
+        logger.info("Petri net simulation ended.");
+        logger.info("Elapsed time: " + elapsedTime + " ms");
+        logger.close();
+    }
+
+    /**
+     * Computes the P- and T-invariants of the net, or returns null if they
+     * could not be computed.
+     */
+    private static NetInvariants computeInvariants(PetriNet net) {
+        try {
+            return NetInvariants.compute(net.getPlaces(), net.getTransitions());
+        } catch (IllegalStateException e) {
+            Logger.getInstance().error("Could not compute the net invariants: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Logs the minimal P- and T-invariants of the net, warning if some place
+     * is not covered by a P-invariant.
+     */
+    private static void logInvariants(NetInvariants invariants) {
+        if (invariants == null) {
+            return;
+        }
+        Logger logger = Logger.getInstance();
+        for (String line : invariants.report().split("\n")) {
+            logger.info(line);
+        }
+        if (!invariants.isCoveredByPInvariants()) {
+            logger.warn("Some places are not covered by a P-invariant: the net may be unbounded.");
+        }
+    }
+
+    /**
+     * Creates a metrics registry for the net, connects it to the monitor and
+     * the segments and publishes it as an MBean.
+     */
+    private static MetricsRegistry createMetrics(PetriNet net, MonitorInterface monitor, List<Segment> segments,
+            PoolManager poolManager, MyThreadFactory threadFactory) {
+        Logger logger = Logger.getInstance();
+        MetricsRegistry metrics = new MetricsRegistry(net.getTransitions().size());
+        for (Segment segment : segments) {
+            segment.setMetrics(metrics.registerSegment(segment.getSegmentName()));
+        }
+        metrics.registerGauge("maxConcurrentTasks", poolManager::getMaxConcurrentTasks);
+        metrics.registerGauge("maxActiveThreads", threadFactory::getMaxActiveThreads);
+        monitor.setMetrics(metrics);
+        try {
+            metrics.registerMBean();
+            logger.info("Metrics published as MBean " + MetricsRegistry.OBJECT_NAME);
+        } catch (JMException e) {
+            logger.error("Could not publish metrics over JMX: " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * Runs the net as a discrete-event simulation and prints the same
+     * statistics as a threaded run, plus the virtual time it took.
+     */
+    private static void runDiscreteEvent(PetriNet net, Policy policy, long startTime) {
+        Logger logger = Logger.getInstance();
+        long seed = Long.getLong("petri.seed", 42L);
+        DiscreteEventSimulator simulator = new DiscreteEventSimulator(net.getPlaces(), net.getTransitions(),
+                policy, seed);
+        int t0Limit = net.getT0Limit();
+        if (simulator.run(t0Limit)) {
+            logger.info("Simulation reached " + t0Limit + " T0 firings.");
+        } else {
+            logger.warn("Simulation stopped before T0 fired " + t0Limit + " times: no transition can fire.");
+        }
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        for (int placeId = 0; placeId < simulator.getPlaceCount(); placeId++) {
+            System.out.println("Final tokens in Place " + placeId + ": " + simulator.getTokenCount(placeId));
+        }
+        printPolicyStatistics(policy);
+        System.out.println("Simulated time: " + simulator.getTime() + " ms (" + simulator.getFiringCount()
+                + " firings)");
+
+        logger.info("Petri net simulation ended.");
+        logger.info("Elapsed time: " + elapsedTime + " ms");
+        logger.close();
+    }
+
+    /**
+     * Prints the reservation counters of the policy and, for PriorityPolicy,
+     * the estimated number of each invariant.
+     *
+     * @param policy the policy used in the run.
+     */
+    private static void printPolicyStatistics(Policy policy) {
+        if (policy instanceof PriorityPolicy) {
+            PriorityPolicy prioPolicy = (PriorityPolicy) policy;
             System.out.println("Superior reservations count: " + prioPolicy.getSuperiorCount());
             System.out.println("Inferior reservations count: " + prioPolicy.getInferiorCount());
             System.out.println("Confirmed reservations count: " + prioPolicy.getConfirmedCount());
@@ -95,21 +266,13 @@ public class Main {
             System.out.println("Fourth invariant (T2 and T6): " + Math.round(fourthInvariant));
         }
 
-        if (monitor.getPolicy() instanceof BalancedPolicy) {
-            BalancedPolicy balPolicy = (BalancedPolicy) monitor.getPolicy();
+        if (policy instanceof BalancedPolicy) {
+            BalancedPolicy balPolicy = (BalancedPolicy) policy;
             System.out.println("Superior reservations count: " + balPolicy.getSuperiorCount());
             System.out.println("Inferior reservations count: " + balPolicy.getInferiorCount());
             System.out.println("Confirmed reservations count: " + balPolicy.getConfirmedCount());
             System.out.println("Cancelled reservations count: " + balPolicy.getCancelledCount());
         }
-
-        // Print the maximum number of simultaneously running tasks measured by PoolManager.
-        System.out.println("Maximum number of concurrently running tasks: " 
-                + poolManager.getMaxConcurrentTasks());
-
-        logger.info("Petri net simulation ended.");
-        logger.info("Elapsed time: " + elapsedTime + " ms");
-        logger.close();
     }
 
     /**
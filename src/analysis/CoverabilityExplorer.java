@@ -0,0 +1,553 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import monitor.BalancedPolicy;
+import monitor.MonitorType;
+import petrinet.Places;
+import petrinet.Transition;
+import utils.Logger;
+import utils.PetriNet;
+
+/**
+ * Builds a Karp-Miller coverability tree of a net, which is finite even when
+ * the net is unbounded, and reports the unbounded places.
+ *
+ * A marking may hold omega (any number of tokens) in some places. When a
+ * firing leads to a marking strictly greater than one of its ancestors, the
+ * firing sequence in between can be repeated forever, so every place that
+ * grew is set to omega (acceleration). A new marking covered by (less than
+ * or equal to) a marking already in the tree is pruned: whatever it leads
+ * to is covered by what the covering marking leads to. A place is unbounded
+ * exactly when some marking of the tree holds omega in it.
+ *
+ * The tree is built level by level, like ReachabilityExplorer. The worker
+ * threads first expand chunks of the current level, accelerating and
+ * pruning the successors against the tree built so far, which is read-only
+ * during the level; duplicates within the level are dropped through a
+ * concurrent set. They then prune the successors strictly covered by
+ * another successor of the same level, so the maximal ones are kept.
+ *
+ * Coverage queries go through a NodeIndex instead of scanning every node. A
+ * finite marking can only be covered by an equal one (found by hashing), by
+ * one holding more tokens in total, or by one with omegas, so only those
+ * are compared. In a conservative net every reachable marking holds the
+ * same number of tokens, and no comparison is needed at all. Markings are
+ * compared through a 64-bit signature of their marked and omega places
+ * first, which rejects most pairs without a scan.
+ *
+ * Usage: java analysis.CoverabilityExplorer [--threads N] [--max-nodes N]
+ * [net.pnml]
+ */
+public class CoverabilityExplorer {
+  /** Token count standing for omega (unbounded). */
+  public static final int OMEGA = Integer.MAX_VALUE;
+
+  // Nodes of a level taken at once by a worker.
+  private static final int CHUNK = 256;
+
+  private final int placeCount;
+  private final int transitionCount;
+  private final int[] initialMarking;
+  private final int threads;
+  private final int maxNodes;
+
+  // Input and output arcs of each transition.
+  private final int[][] prePlaces;
+  private final int[][] preWeights;
+  private final int[][] postPlaces;
+  private final int[][] postWeights;
+
+  /**
+   * A node of the coverability tree. Its marking is never modified once the
+   * node is built.
+   */
+  private static final class Node {
+    final int[] marking;
+    final Node parent;
+    // Bit p % 64 is set if place p holds tokens (or omega).
+    final long marked;
+    // Bit p % 64 is set if place p holds omega.
+    final long omegas;
+    final boolean hasOmega;
+    // Total of the finite token counts.
+    final long tokens;
+    // Over this node and its ancestors: whether one holds omega, and the
+    // fewest tokens held by one.
+    final boolean omegaAbove;
+    final long fewestAbove;
+    final int hash;
+
+    Node(int[] marking, Node parent) {
+      this.marking = marking;
+      this.parent = parent;
+      long markedBits = 0;
+      long omegaBits = 0;
+      boolean omega = false;
+      long total = 0;
+      long h = 0x9E3779B97F4A7C15L;
+      for (int p = 0; p < marking.length; p++) {
+        if (marking[p] != 0) {
+          markedBits |= 1L << p;
+        }
+        if (marking[p] == OMEGA) {
+          omegaBits |= 1L << p;
+          omega = true;
+        } else {
+          total += marking[p];
+        }
+        h = (h ^ marking[p]) * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 32;
+      }
+      this.marked = markedBits;
+      this.omegas = omegaBits;
+      this.hasOmega = omega;
+      this.tokens = total;
+      this.omegaAbove = omega || (parent != null && parent.omegaAbove);
+      this.fewestAbove = parent == null ? total : Math.min(total, parent.fewestAbove);
+      h *= 0xC4CEB9FE1A85EC53L;
+      this.hash = (int) (h ^ (h >>> 29));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Node && hash == ((Node) other).hash
+          && Arrays.equals(marking, ((Node) other).marking);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    /**
+     * Returns true if every place of this node holds at most the tokens of
+     * the other node.
+     */
+    boolean coveredBy(Node other) {
+      if ((marked & ~other.marked) != 0 || (omegas & ~other.omegas) != 0) {
+        return false;
+      }
+      int[] greater = other.marking;
+      for (int p = 0; p < marking.length; p++) {
+        if (marking[p] > greater[p]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * An index of tree nodes answering "is there a node strictly greater than
+   * this marking" without comparing it to every node. It is filled by one
+   * thread, then queried concurrently.
+   */
+  private static final class NodeIndex {
+    private final Set<Node> nodes = new HashSet<>();
+    // Finite nodes by their total token count.
+    private final TreeMap<Long, List<Node>> byTokens = new TreeMap<>();
+    private final List<Node> withOmega = new ArrayList<>();
+
+    void add(Node node) {
+      if (!nodes.add(node)) {
+        return;
+      }
+      if (node.hasOmega) {
+        withOmega.add(node);
+      } else {
+        byTokens.computeIfAbsent(node.tokens, k -> new ArrayList<>()).add(node);
+      }
+    }
+
+    boolean contains(Node node) {
+      return nodes.contains(node);
+    }
+
+    /**
+     * Returns true if some node covers the given one and differs from it.
+     */
+    boolean coversStrictly(Node node) {
+      for (Node other : withOmega) {
+        if (node.coveredBy(other) && !node.equals(other)) {
+          return true;
+        }
+      }
+      if (node.hasOmega || byTokens.isEmpty() || byTokens.lastKey() <= node.tokens) {
+        return false;
+      }
+      // A different finite node covering this one holds more tokens.
+      for (List<Node> bucket : byTokens.tailMap(node.tokens, false).values()) {
+        for (Node other : bucket) {
+          if (node.coveredBy(other)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns true if some node covers the given one.
+     */
+    boolean covers(Node node) {
+      return contains(node) || coversStrictly(node);
+    }
+  }
+
+  /**
+   * Creates an explorer for a net.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param threads     the number of worker threads.
+   * @param maxNodes    the number of tree nodes after which exploration stops.
+   */
+  public CoverabilityExplorer(Places places, Map<Integer, Transition> transitions, int threads, int maxNodes) {
+    this.placeCount = places.getPlaceCount();
+    this.initialMarking = new int[placeCount];
+    for (int p = 0; p < placeCount; p++) {
+      initialMarking[p] = places.getTokenCount(p);
+    }
+    this.threads = Math.max(1, threads);
+    this.maxNodes = maxNodes;
+
+    int maxId = -1;
+    for (Transition transition : transitions.values()) {
+      maxId = Math.max(maxId, transition.getId());
+    }
+    this.transitionCount = maxId + 1;
+    prePlaces = new int[transitionCount][];
+    preWeights = new int[transitionCount][];
+    postPlaces = new int[transitionCount][];
+    postWeights = new int[transitionCount][];
+    for (int t = 0; t < transitionCount; t++) {
+      Transition transition = transitions.get(t);
+      boolean present = transition != null;
+      prePlaces[t] = present ? transition.getPrePlaces() : new int[0];
+      preWeights[t] = present ? transition.getPreWeights() : new int[0];
+      postPlaces[t] = present ? transition.getPostPlaces() : new int[0];
+      postWeights[t] = present ? transition.getPostWeights() : new int[0];
+      for (int p : prePlaces[t]) {
+        checkPlace(p);
+      }
+      for (int p : postPlaces[t]) {
+        checkPlace(p);
+      }
+    }
+  }
+
+  private void checkPlace(int placeId) {
+    if (placeId < 0 || placeId >= placeCount) {
+      throw new IllegalArgumentException("Arc to unknown place " + placeId);
+    }
+  }
+
+  private boolean isEnabled(int t, int[] marking) {
+    for (int i = 0; i < prePlaces[t].length; i++) {
+      int tokens = marking[prePlaces[t][i]];
+      if (tokens != OMEGA && tokens < preWeights[t][i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes into successor the marking reached by firing an enabled
+   * transition. Omega places stay omega.
+   */
+  private void fire(int t, int[] marking, int[] successor) {
+    System.arraycopy(marking, 0, successor, 0, placeCount);
+    for (int i = 0; i < prePlaces[t].length; i++) {
+      int p = prePlaces[t][i];
+      if (successor[p] != OMEGA) {
+        successor[p] -= preWeights[t][i];
+      }
+    }
+    for (int i = 0; i < postPlaces[t].length; i++) {
+      int p = postPlaces[t][i];
+      if (successor[p] != OMEGA) {
+        // A count this large cannot be told apart from omega.
+        successor[p] = (int) Math.min(OMEGA, (long) successor[p] + postWeights[t][i]);
+      }
+    }
+  }
+
+  /**
+   * Sets to omega every place that grew since an ancestor the successor
+   * strictly covers. While both are finite, such an ancestor holds fewer
+   * tokens in total, so the others are skipped without a scan, and the walk
+   * stops once no ancestor left can hold fewer tokens.
+   */
+  private static void accelerate(int[] successor, Node parent) {
+    boolean omega = false;
+    long tokens = 0;
+    for (int count : successor) {
+      if (count == OMEGA) {
+        omega = true;
+      } else {
+        tokens += count;
+      }
+    }
+    for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+      if (!omega && !ancestor.omegaAbove && ancestor.fewestAbove >= tokens) {
+        break;
+      }
+      if (!omega && !ancestor.hasOmega && ancestor.tokens >= tokens) {
+        continue;
+      }
+      int[] smaller = ancestor.marking;
+      boolean covers = true;
+      boolean strictly = false;
+      for (int p = 0; p < successor.length && covers; p++) {
+        if (smaller[p] > successor[p]) {
+          covers = false;
+        } else if (smaller[p] < successor[p]) {
+          strictly = true;
+        }
+      }
+      if (covers && strictly) {
+        for (int p = 0; p < successor.length; p++) {
+          if (smaller[p] < successor[p]) {
+            successor[p] = OMEGA;
+          }
+        }
+        omega = true;
+      }
+    }
+  }
+
+  // Shared state of the exploration in progress.
+  private NodeIndex tree;
+  private int treeSize;
+  private Node[] frontier;
+  private int frontierSize;
+  // Successors of the current level, without duplicates, and those strictly
+  // covered by another one.
+  private Set<Node> seen;
+  private Node[] candidates;
+  private int candidateCount;
+  private NodeIndex level;
+  private boolean[] dropped;
+  private boolean pruning;
+  private final AtomicInteger nextChunk = new AtomicInteger();
+
+  /**
+   * Builds the coverability tree.
+   *
+   * @return the result of the exploration.
+   * @throws InterruptedException if the calling thread is interrupted.
+   */
+  public synchronized CoverabilityResult explore() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    Node root = new Node(initialMarking.clone(), null);
+    tree = new NodeIndex();
+    tree.add(root);
+    treeSize = 1;
+    int[] bounds = initialMarking.clone();
+    frontier = new Node[] {root};
+    frontierSize = 1;
+    boolean truncated = false;
+
+    List<Worker> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(new Worker());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "CoverabilityWorker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    int depth = 0;
+    try {
+      while (frontierSize > 0 && !truncated) {
+        pruning = false;
+        seen = ConcurrentHashMap.newKeySet(frontierSize * 2);
+        runWorkers(executor, workers);
+        seen = null;
+        candidateCount = 0;
+        for (Worker worker : workers) {
+          candidateCount += worker.nextSize;
+        }
+        candidates = new Node[candidateCount];
+        int at = 0;
+        for (Worker worker : workers) {
+          System.arraycopy(worker.next, 0, candidates, at, worker.nextSize);
+          at += worker.nextSize;
+          worker.clearNext();
+        }
+
+        level = new NodeIndex();
+        for (Node candidate : candidates) {
+          level.add(candidate);
+        }
+        dropped = new boolean[candidateCount];
+        pruning = true;
+        runWorkers(executor, workers);
+
+        int kept = 0;
+        for (int i = 0; i < candidateCount; i++) {
+          if (dropped[i]) {
+            continue;
+          }
+          if (treeSize == maxNodes) {
+            truncated = true;
+            break;
+          }
+          Node node = candidates[i];
+          tree.add(node);
+          treeSize++;
+          for (int p = 0; p < placeCount; p++) {
+            bounds[p] = Math.max(bounds[p], node.marking[p]);
+          }
+          candidates[kept++] = node;
+        }
+        frontier = candidates;
+        frontierSize = kept;
+        candidates = null;
+        level = null;
+        dropped = null;
+        if (kept > 0) {
+          depth++;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Exploration failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long edges = 0;
+    boolean[] everEnabled = new boolean[transitionCount];
+    for (Worker worker : workers) {
+      edges += worker.edges;
+      for (int t = 0; t < transitionCount; t++) {
+        everEnabled[t] |= worker.everEnabled[t];
+      }
+    }
+    int nodes = treeSize;
+    tree = null;
+    frontier = null;
+    return new CoverabilityResult(nodes, edges, depth, bounds, everEnabled, truncated,
+        System.currentTimeMillis() - start);
+  }
+
+  private void runWorkers(ExecutorService executor, List<Worker> workers)
+      throws InterruptedException, ExecutionException {
+    nextChunk.set(0);
+    for (Future<Void> future : executor.invokeAll(workers)) {
+      future.get();
+    }
+  }
+
+  /**
+   * Expands, then prunes, chunks of the current level until there are none
+   * left. Its statistics are kept across levels and merged at the end.
+   */
+  private final class Worker implements Callable<Void> {
+    private int[] successor = new int[placeCount];
+    private Node[] next = new Node[CHUNK];
+    private int nextSize = 0;
+
+    private final boolean[] everEnabled = new boolean[transitionCount];
+    private long edges = 0;
+
+    @Override
+    public Void call() {
+      int size = pruning ? candidateCount : frontierSize;
+      while (true) {
+        int from = nextChunk.getAndAdd(CHUNK);
+        if (from >= size) {
+          break;
+        }
+        int to = Math.min(size, from + CHUNK);
+        for (int i = from; i < to; i++) {
+          if (pruning) {
+            dropped[i] = level.coversStrictly(candidates[i]);
+          } else {
+            expand(frontier[i]);
+          }
+        }
+      }
+      return null;
+    }
+
+    private void expand(Node node) {
+      int[] marking = node.marking;
+      for (int t = 0; t < transitionCount; t++) {
+        if (!isEnabled(t, marking)) {
+          continue;
+        }
+        everEnabled[t] = true;
+        edges++;
+        fire(t, marking, successor);
+        accelerate(successor, node);
+        Node child = new Node(successor, node);
+        if (!tree.covers(child) && seen.add(child)) {
+          push(child);
+          successor = new int[placeCount];
+        }
+      }
+    }
+
+    private void push(Node node) {
+      if (nextSize == next.length) {
+        next = Arrays.copyOf(next, next.length * 2);
+      }
+      next[nextSize++] = node;
+    }
+
+    void clearNext() {
+      Arrays.fill(next, 0, nextSize, null);
+      nextSize = 0;
+      if (next.length > CHUNK * 64) {
+        next = new Node[CHUNK];
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int maxNodes = 1 << 20;
+    String pnml = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--threads".equals(args[i]) && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if ("--max-nodes".equals(args[i]) && i + 1 < args.length) {
+        maxNodes = Integer.parseInt(args[++i]);
+      } else if (args[i].startsWith("--")) {
+        System.err.println("Usage: java analysis.CoverabilityExplorer [--threads N] [--max-nodes N] [net.pnml]");
+        System.exit(1);
+      } else {
+        pnml = args[i];
+      }
+    }
+    Logger.getInstance().setLevel(Logger.Level.WARN);
+    PetriNet net = pnml == null
+        ? new PetriNet(new BalancedPolicy())
+        : new PetriNet(new BalancedPolicy(), MonitorType.COARSE, Paths.get(pnml));
+    CoverabilityExplorer explorer = new CoverabilityExplorer(net.getPlaces(), net.getTransitions(), threads,
+        maxNodes);
+    System.out.println("Building the coverability tree with " + threads + " threads, up to " + maxNodes
+        + " nodes.");
+    System.out.print(explorer.explore().report());
+    Logger.getInstance().close();
+  }
+}
@@ -0,0 +1,162 @@
+package analysis;
+
+/**
+ * The outcome of a coverability analysis (see CoverabilityExplorer).
+ */
+public class CoverabilityResult {
+  private final int nodeCount;
+  private final long edgeCount;
+  private final int depth;
+  private final int[] bounds;
+  private final boolean[] everEnabled;
+  private final boolean truncated;
+  private final long elapsedMillis;
+
+  CoverabilityResult(int nodeCount, long edgeCount, int depth, int[] bounds, boolean[] everEnabled,
+      boolean truncated, long elapsedMillis) {
+    this.nodeCount = nodeCount;
+    this.edgeCount = edgeCount;
+    this.depth = depth;
+    this.bounds = bounds;
+    this.everEnabled = everEnabled;
+    this.truncated = truncated;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  public long getEdgeCount() {
+    return edgeCount;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Returns true if a place can hold an arbitrarily large number of tokens.
+   *
+   * @param placeId the place id.
+   * @return whether the place is unbounded.
+   */
+  public boolean isUnbounded(int placeId) {
+    return bounds[placeId] == CoverabilityExplorer.OMEGA;
+  }
+
+  /**
+   * Returns the unbounded places.
+   *
+   * @return their ids, in increasing order.
+   */
+  public int[] getUnboundedPlaces() {
+    int count = 0;
+    for (int bound : bounds) {
+      if (bound == CoverabilityExplorer.OMEGA) {
+        count++;
+      }
+    }
+    int[] unbounded = new int[count];
+    for (int p = 0, i = 0; p < bounds.length; p++) {
+      if (bounds[p] == CoverabilityExplorer.OMEGA) {
+        unbounded[i++] = p;
+      }
+    }
+    return unbounded;
+  }
+
+  /**
+   * Returns the largest number of tokens a place can hold.
+   *
+   * @param placeId the place id.
+   * @return the bound, or CoverabilityExplorer.OMEGA if it is unbounded.
+   */
+  public int getBound(int placeId) {
+    return bounds[placeId];
+  }
+
+  /**
+   * Returns the transitions that can never fire. Enabling only grows with
+   * the marking, so a transition not enabled in any node of the tree is
+   * not enabled in any reachable marking.
+   *
+   * @return the ids of the dead transitions.
+   */
+  public int[] getDeadTransitions() {
+    int count = 0;
+    for (boolean enabled : everEnabled) {
+      if (!enabled) {
+        count++;
+      }
+    }
+    int[] dead = new int[count];
+    for (int t = 0, i = 0; t < everEnabled.length; t++) {
+      if (!everEnabled[t]) {
+        dead[i++] = t;
+      }
+    }
+    return dead;
+  }
+
+  /**
+   * Returns true if the node limit was reached before the tree was
+   * complete; places may then be unbounded without being reported.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Formats the tree size, the unbounded places, the bounds and the dead
+   * transitions.
+   *
+   * @return a multi-line report.
+   */
+  public String report() {
+    StringBuilder out = new StringBuilder();
+    out.append("Coverability tree: ").append(nodeCount).append(" nodes (").append(edgeCount)
+        .append(" edges, depth ").append(depth).append(", ").append(elapsedMillis).append(" ms)\n");
+    if (truncated) {
+      out.append("Exploration stopped at the node limit: results are partial.\n");
+    }
+    int[] unbounded = getUnboundedPlaces();
+    out.append("Unbounded places: ");
+    if (unbounded.length == 0) {
+      out.append("none");
+    }
+    for (int i = 0; i < unbounded.length; i++) {
+      out.append(i == 0 ? "p" : " p").append(unbounded[i]);
+    }
+    out.append('\n');
+    out.append("Place bounds:");
+    int max = 0;
+    for (int p = 0; p < bounds.length; p++) {
+      out.append(" p").append(p).append('=');
+      if (bounds[p] == CoverabilityExplorer.OMEGA) {
+        out.append("omega");
+      } else {
+        out.append(bounds[p]);
+        max = Math.max(max, bounds[p]);
+      }
+    }
+    out.append('\n');
+    if (!truncated && unbounded.length == 0) {
+      out.append("The net is ").append(max).append("-bounded").append(max <= 1 ? " (safe)" : "").append(".\n");
+    }
+    int[] dead = getDeadTransitions();
+    out.append("Dead transitions: ");
+    if (dead.length == 0) {
+      out.append("none");
+    }
+    for (int i = 0; i < dead.length; i++) {
+      out.append(i == 0 ? "T" : " T").append(dead[i]);
+    }
+    out.append('\n');
+    return out.toString();
+  }
+}
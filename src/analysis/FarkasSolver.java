@@ -0,0 +1,459 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the minimal-support non-negative integer solutions y of y A = 0
+ * for a sparse integer matrix A, with the Farkas (Fourier-Motzkin) algorithm.
+ *
+ * Every row starts as the pair (row of A, unit vector of the row). The
+ * columns of A are then eliminated one at a time: rows with a zero in the
+ * column are kept, and every row with a positive entry is combined with
+ * every row with a negative entry, so that the column cancels. The unit
+ * parts of the rows left when A is all zero are the solutions.
+ *
+ * The number of rows can grow quickly, so:
+ * - the column eliminated next is the one creating the fewest rows;
+ * - a combination is dropped before it is built if its support (the rows
+ *   of A it combines) contains the support of another row, since it could
+ *   only lead to non-minimal solutions, or if it equals the support of
+ *   another combination of the same step;
+ * - only the rows starting inside that support are compared with it, and
+ *   only the rows with a non-zero entry in a column are visited when it is
+ *   eliminated;
+ * - rows are sparse in both parts, and divided by the gcd of their entries.
+ */
+final class FarkasSolver {
+
+  /**
+   * A row being eliminated: its remaining entries of A, and the combination
+   * of the rows of A it is made of, both sorted by index.
+   */
+  private static final class Row {
+    final int[] columns;
+    final long[] values;
+    final int[] rows;
+    final long[] coefficients;
+    final int supportSize;
+    // The first row of the combination, under which it is indexed.
+    final int first;
+    boolean removed;
+
+    Row(int[] columns, long[] values, int[] rows, long[] coefficients) {
+      this.columns = columns;
+      this.values = values;
+      this.rows = rows;
+      this.coefficients = coefficients;
+      this.supportSize = rows.length;
+      this.first = rows[0];
+    }
+
+    long valueAt(int column) {
+      int i = Arrays.binarySearch(columns, column);
+      return i >= 0 ? values[i] : 0;
+    }
+
+    boolean inSupport(int row) {
+      return Arrays.binarySearch(rows, row) >= 0;
+    }
+
+    /**
+     * Returns true if the support of this row is a subset of the union of
+     * the supports of p and q.
+     */
+    boolean supportWithin(Row p, Row q) {
+      for (int row : rows) {
+        if (!p.inSupport(row) && !q.inSupport(row)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns true if the support of this row is a subset of the support of
+     * the other row.
+     */
+    boolean supportWithin(Row other) {
+      int j = 0;
+      for (int row : rows) {
+        while (j < other.rows.length && other.rows[j] < row) {
+          j++;
+        }
+        if (j == other.rows.length || other.rows[j] != row) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A support, as sorted row indices, usable as a set element.
+   */
+  private static final class SupportKey {
+    final int[] rows;
+    final int hash;
+
+    SupportKey(int[] rows) {
+      this.rows = rows;
+      this.hash = Arrays.hashCode(rows);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof SupportKey && Arrays.equals(rows, ((SupportKey) other).rows);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  // Scratch buffer for the union of two supports.
+  private final int[] union;
+  // The rows of the current step. Rows eliminated in earlier steps are
+  // flagged and compacted away from time to time.
+  private final List<Row> rows = new ArrayList<>();
+  private int removedCount = 0;
+  // For each column not eliminated yet, the rows with a non-zero entry in it
+  // (including some removed ones), and how many of the live ones are
+  // positive and negative.
+  private final List<List<Row>> byColumn = new ArrayList<>();
+  private final int[] positive;
+  private final int[] negative;
+  // For each row of A, the rows whose support starts with it (including
+  // some removed ones): a row within a support starts inside it.
+  private final List<List<Row>> byFirst = new ArrayList<>();
+
+  private FarkasSolver(int rowCount, int columnCount) {
+    this.union = new int[rowCount];
+    this.positive = new int[columnCount];
+    this.negative = new int[columnCount];
+    for (int c = 0; c < columnCount; c++) {
+      byColumn.add(new ArrayList<>());
+    }
+    for (int r = 0; r < rowCount; r++) {
+      byFirst.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Solves y A = 0, y &gt;= 0.
+   *
+   * @param rowCount    the number of rows of A.
+   * @param columnCount the number of columns of A.
+   * @param rowColumns  for each row, the columns of its non-zero entries.
+   * @param rowValues   for each row, the values of those entries.
+   * @return the minimal-support solutions, with coprime weights, sorted by
+   *         their support.
+   * @throws IllegalStateException if a weight overflows.
+   */
+  static List<Invariant> solve(int rowCount, int columnCount, int[][] rowColumns, int[][] rowValues) {
+    FarkasSolver solver = new FarkasSolver(rowCount, columnCount);
+    for (int r = 0; r < rowCount; r++) {
+      int[] order = sortedOrder(rowColumns[r]);
+      int[] columns = new int[order.length];
+      long[] values = new long[order.length];
+      int count = 0;
+      for (int i : order) {
+        // Merge repeated columns, dropping those that cancel.
+        if (count > 0 && columns[count - 1] == rowColumns[r][i]) {
+          values[count - 1] += rowValues[r][i];
+          if (values[count - 1] == 0) {
+            count--;
+          }
+        } else if (rowValues[r][i] != 0) {
+          columns[count] = rowColumns[r][i];
+          values[count++] = rowValues[r][i];
+        }
+      }
+      solver.add(new Row(Arrays.copyOf(columns, count), Arrays.copyOf(values, count), new int[] {r},
+          new long[] {1}));
+    }
+    return solver.run();
+  }
+
+  private List<Invariant> run() {
+    // Columns still holding non-zero entries; an eliminated column stays
+    // zero, since only rows with a zero in it are combined afterwards.
+    int[] active = new int[positive.length];
+    int activeCount = 0;
+    for (int c = 0; c < positive.length; c++) {
+      if (positive[c] + negative[c] > 0) {
+        active[activeCount++] = c;
+      }
+    }
+    while (activeCount > 0) {
+      int chosen = -1;
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < activeCount; i++) {
+        int c = active[i];
+        long growth = (long) positive[c] * negative[c] - positive[c] - negative[c];
+        if (growth < best) {
+          best = growth;
+          chosen = i;
+        }
+      }
+      int column = active[chosen];
+      active[chosen] = active[--activeCount];
+      eliminate(column);
+    }
+
+    // Rows kept with a zero in some column may still contain the support of
+    // a combination built later.
+    compact();
+    List<Invariant> invariants = new ArrayList<>();
+    for (Row row : rows) {
+      if (!containsOther(row, rows)) {
+        invariants.add(toInvariant(row));
+      }
+    }
+    invariants.sort((a, b) -> {
+      for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+        if (a.getIndex(i) != b.getIndex(i)) {
+          return Integer.compare(a.getIndex(i), b.getIndex(i));
+        }
+      }
+      return Integer.compare(a.size(), b.size());
+    });
+    return invariants;
+  }
+
+  private void add(Row row) {
+    rows.add(row);
+    byFirst.get(row.first).add(row);
+    for (int i = 0; i < row.columns.length; i++) {
+      byColumn.get(row.columns[i]).add(row);
+      if (row.values[i] > 0) {
+        positive[row.columns[i]]++;
+      } else {
+        negative[row.columns[i]]++;
+      }
+    }
+  }
+
+  private void remove(Row row) {
+    row.removed = true;
+    removedCount++;
+    for (int i = 0; i < row.columns.length; i++) {
+      if (row.values[i] > 0) {
+        positive[row.columns[i]]--;
+      } else {
+        negative[row.columns[i]]--;
+      }
+    }
+  }
+
+  private void compact() {
+    if (removedCount > 0) {
+      rows.removeIf(row -> row.removed);
+      for (List<Row> list : byFirst) {
+        list.removeIf(row -> row.removed);
+      }
+      removedCount = 0;
+    }
+  }
+
+  /**
+   * Cancels one column, combining the rows with opposite signs in it.
+   */
+  private void eliminate(int column) {
+    List<Row> positives = new ArrayList<>();
+    List<Row> negatives = new ArrayList<>();
+    for (Row row : byColumn.get(column)) {
+      if (!row.removed) {
+        (row.valueAt(column) > 0 ? positives : negatives).add(row);
+      }
+    }
+    byColumn.set(column, null);
+    if (removedCount > rows.size() / 2) {
+      compact();
+    }
+
+    List<Row> created = new ArrayList<>();
+    Set<SupportKey> supports = new HashSet<>();
+    for (Row p : positives) {
+      for (Row q : negatives) {
+        int size = union(p.rows, q.rows, union);
+        if (!isMinimal(union, size, p, q)) {
+          continue;
+        }
+        if (supports.add(new SupportKey(Arrays.copyOf(union, size)))) {
+          created.add(combine(p, q, column));
+        }
+      }
+    }
+    for (Row row : positives) {
+      remove(row);
+    }
+    for (Row row : negatives) {
+      remove(row);
+    }
+    // Two combinations of this step may still contain one another.
+    for (Row row : created) {
+      if (!containsOther(row, created)) {
+        add(row);
+      }
+    }
+  }
+
+  /**
+   * Returns true if no row of the current step other than p and q has its
+   * support within the union of theirs, given in sorted order.
+   */
+  private boolean isMinimal(int[] union, int size, Row p, Row q) {
+    for (int i = 0; i < size; i++) {
+      for (Row row : byFirst.get(union[i])) {
+        if (!row.removed && row != p && row != q && row.supportSize <= size && row.supportWithin(p, q)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the union of two sorted index arrays.
+   *
+   * @return the number of indices written.
+   */
+  private static int union(int[] x, int[] y, int[] out) {
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < x.length || j < y.length) {
+      if (j == y.length || (i < x.length && x[i] < y[j])) {
+        out[count++] = x[i++];
+      } else if (i == x.length || y[j] < x[i]) {
+        out[count++] = y[j++];
+      } else {
+        out[count++] = x[i++];
+        j++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns true if the support of some other row is a strict subset of the
+   * support of the given row.
+   */
+  private static boolean containsOther(Row row, List<Row> rows) {
+    for (Row other : rows) {
+      if (other != row && other.supportSize < row.supportSize && other.supportWithin(row)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a p + b q, with a and b the smallest positive factors cancelling
+   * the column, divided by the gcd of its entries.
+   */
+  private Row combine(Row p, Row q, int column) {
+    long pValue = p.valueAt(column);
+    long qValue = -q.valueAt(column);
+    long g = gcd(pValue, qValue);
+    long a = qValue / g;
+    long b = pValue / g;
+    try {
+      int[] columns = new int[p.columns.length + q.columns.length];
+      long[] values = new long[columns.length];
+      int columnCount = merge(p.columns, p.values, a, q.columns, q.values, b, columns, values);
+      int[] combined = new int[p.rows.length + q.rows.length];
+      long[] coefficients = new long[combined.length];
+      int rowCount = merge(p.rows, p.coefficients, a, q.rows, q.coefficients, b, combined, coefficients);
+
+      // The A part is a combination of the coefficients, so it stays integer.
+      long divisor = 0;
+      for (int i = 0; i < rowCount; i++) {
+        divisor = gcd(divisor, coefficients[i]);
+      }
+      if (divisor > 1) {
+        for (int i = 0; i < rowCount; i++) {
+          coefficients[i] /= divisor;
+        }
+        for (int i = 0; i < columnCount; i++) {
+          values[i] /= divisor;
+        }
+      }
+      return new Row(Arrays.copyOf(columns, columnCount), Arrays.copyOf(values, columnCount),
+          Arrays.copyOf(combined, rowCount), Arrays.copyOf(coefficients, rowCount));
+    } catch (ArithmeticException e) {
+      throw new IllegalStateException("Invariant weights overflow while eliminating column " + column, e);
+    }
+  }
+
+  /**
+   * Writes a x + b y of two sparse vectors, leaving out zero entries.
+   *
+   * @return the number of entries written.
+   */
+  private static int merge(int[] xIndices, long[] xValues, long a, int[] yIndices, long[] yValues, long b,
+      int[] indices, long[] values) {
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < xIndices.length || j < yIndices.length) {
+      int index;
+      long value;
+      if (j == yIndices.length || (i < xIndices.length && xIndices[i] < yIndices[j])) {
+        index = xIndices[i];
+        value = Math.multiplyExact(a, xValues[i++]);
+      } else if (i == xIndices.length || yIndices[j] < xIndices[i]) {
+        index = yIndices[j];
+        value = Math.multiplyExact(b, yValues[j++]);
+      } else {
+        index = xIndices[i];
+        value = Math.addExact(Math.multiplyExact(a, xValues[i++]), Math.multiplyExact(b, yValues[j++]));
+      }
+      if (value != 0) {
+        indices[count] = index;
+        values[count++] = value;
+      }
+    }
+    return count;
+  }
+
+  private static Invariant toInvariant(Row row) {
+    int[] weights = new int[row.coefficients.length];
+    for (int i = 0; i < weights.length; i++) {
+      if (row.coefficients[i] > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Invariant weight does not fit in an int: " + row.coefficients[i]);
+      }
+      weights[i] = (int) row.coefficients[i];
+    }
+    return new Invariant(row.rows.clone(), weights);
+  }
+
+  private static int[] sortedOrder(int[] columns) {
+    Integer[] order = new Integer[columns.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (x, y) -> Integer.compare(columns[x], columns[y]));
+    int[] sorted = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = order[i];
+    }
+    return sorted;
+  }
+
+  private static long gcd(long a, long b) {
+    a = Math.abs(a);
+    b = Math.abs(b);
+    while (b != 0) {
+      long r = a % b;
+      a = b;
+      b = r;
+    }
+    return a;
+  }
+}
@@ -0,0 +1,100 @@
+package analysis;
+
+import java.util.Arrays;
+
+/**
+ * A non-negative integer invariant of a net, stored sparsely: the indices
+ * (places for a P-invariant, transitions for a T-invariant) with a non-zero
+ * weight, in increasing order, and their weights.
+ */
+public final class Invariant {
+  private final int[] indices;
+  private final int[] weights;
+
+  Invariant(int[] indices, int[] weights) {
+    this.indices = indices;
+    this.weights = weights;
+  }
+
+  /**
+   * Returns the number of indices in the support of the invariant.
+   */
+  public int size() {
+    return indices.length;
+  }
+
+  public int getIndex(int i) {
+    return indices[i];
+  }
+
+  public int getWeight(int i) {
+    return weights[i];
+  }
+
+  public int[] getSupport() {
+    return indices.clone();
+  }
+
+  /**
+   * Returns the weighted sum of a vector over the invariant, e.g. the
+   * tokens a P-invariant keeps constant for a marking.
+   *
+   * @param vector a marking (P-invariant) or firing count vector (T-invariant).
+   * @return the sum of weight * vector[index].
+   */
+  public long weightedSum(int[] vector) {
+    long sum = 0;
+    for (int i = 0; i < indices.length; i++) {
+      sum += (long) weights[i] * vector[indices[i]];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the weights as a dense vector.
+   *
+   * @param length the number of places or transitions of the net.
+   * @return the weight of every index, 0 outside the support.
+   */
+  public int[] toDense(int length) {
+    int[] dense = new int[length];
+    for (int i = 0; i < indices.length; i++) {
+      dense[indices[i]] = weights[i];
+    }
+    return dense;
+  }
+
+  /**
+   * Formats the invariant as a sum, e.g. "p1 + p2" or "2*T3 + T7".
+   *
+   * @param prefix the prefix of the indices ("p" or "T").
+   * @return the formatted sum.
+   */
+  public String format(String prefix) {
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < indices.length; i++) {
+      out.append(i == 0 ? "" : " + ");
+      if (weights[i] != 1) {
+        out.append(weights[i]).append('*');
+      }
+      out.append(prefix).append(indices[i]);
+    }
+    return out.toString();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Invariant && Arrays.equals(indices, ((Invariant) other).indices)
+        && Arrays.equals(weights, ((Invariant) other).weights);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(indices) + Arrays.hashCode(weights);
+  }
+
+  @Override
+  public String toString() {
+    return format("x");
+  }
+}
@@ -0,0 +1,221 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.TraceReader;
+
+/**
+ * Offline checker that decomposes the firings of a run into T-invariants.
+ *
+ * A text log (petri_net.log) is memory-mapped and split into chunks at line
+ * boundaries. The chunks are parsed in parallel into arrays of transition
+ * ids, one task per chunk, and fed in file order to an InvariantMatcher
+ * while the next chunks are still being parsed. Matching is a few array
+ * operations per firing, so parsing dominates and scales with the cores. A
+ * binary trace (see utils.TraceRecorder) is already compact and ordered, so
+ * its records are fed straight to the matcher.
+ *
+ * Usage: java analysis.InvariantChecker [--trace] path
+ */
+public class InvariantChecker {
+  // Bytes of log parsed by one task.
+  private static final int CHUNK_SIZE = 32 << 20;
+  // Extra bytes mapped past a chunk, so that its last line can be finished.
+  private static final int MAX_LINE = 64 << 10;
+
+  private static final byte[] PREFIX = "] Transition ".getBytes();
+  private static final byte[] SUFFIX = " fired".getBytes();
+
+  private final int[][] invariants;
+  private final int parallelism;
+
+  /**
+   * Creates a checker for the given invariant paths.
+   *
+   * @param invariants  the ordered transition path of each invariant.
+   * @param parallelism the number of parsing threads.
+   */
+  public InvariantChecker(int[][] invariants, int parallelism) {
+    this.invariants = invariants;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * Checks a text log written by utils.Logger. Only the "Transition N fired"
+   * lines are taken into account.
+   *
+   * @param log the log file.
+   * @return the matcher holding the results.
+   * @throws IOException if the log cannot be read.
+   */
+  public InvariantMatcher checkLog(Path log) throws IOException {
+    InvariantMatcher matcher = new InvariantMatcher(invariants);
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "InvariantParser");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+      long size = channel.size();
+      // Chunks being parsed, in file order; at most two per thread in flight.
+      ArrayDeque<Future<int[]>> pending = new ArrayDeque<>();
+      long start = 0;
+      while (start < size || !pending.isEmpty()) {
+        while (start < size && pending.size() < 2 * parallelism) {
+          long end = Math.min(size, start + CHUNK_SIZE);
+          boolean first = start == 0;
+          // Later chunks also map the byte before them, so a chunk starting
+          // right after a newline does not lose its first line.
+          long mapStart = first ? 0 : start - 1;
+          MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart,
+              Math.min(size, end + MAX_LINE) - mapStart);
+          int limit = (int) (end - mapStart);
+          pending.add(executor.submit(() -> parseChunk(buffer, limit, first)));
+          start = end;
+        }
+        int[] firings = pending.poll().get();
+        matcher.acceptAll(firings, 1, firings[0]);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while checking " + log, e);
+    } catch (ExecutionException e) {
+      throw new IOException("Could not parse " + log, e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return matcher;
+  }
+
+  /**
+   * Checks a binary trace written by utils.TraceRecorder.
+   *
+   * @param directory the trace directory.
+   * @return the matcher holding the results.
+   * @throws IOException if the trace cannot be read.
+   */
+  public InvariantMatcher checkTrace(Path directory) throws IOException {
+    InvariantMatcher matcher = new InvariantMatcher(invariants);
+    new TraceReader(directory).read((nanos, threadId, transitionId) -> matcher.accept(transitionId));
+    return matcher;
+  }
+
+  /**
+   * Extracts the transition ids of the firing lines that start in
+   * [0, limit) of the buffer. A line starting before limit is read to its
+   * end, past limit if needed. Unless this is the first chunk, the buffer
+   * starts with the last byte of the previous chunk, and the line running
+   * through it belongs to the previous chunk.
+   *
+   * @return the firings, preceded by their count at index 0.
+   */
+  static int[] parseChunk(MappedByteBuffer buffer, int limit, boolean first) {
+    int capacity = buffer.capacity();
+    int[] firings = new int[1024];
+    int count = 0;
+    int position = 0;
+    if (!first) {
+      // Skip the rest of the line started in the previous chunk.
+      while (position < capacity && buffer.get(position) != '\n') {
+        position++;
+      }
+      position++;
+    }
+    while (position < limit) {
+      int lineEnd = position;
+      while (lineEnd < capacity && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int transitionId = parseFiring(buffer, position, lineEnd);
+      if (transitionId >= 0) {
+        if (++count == firings.length) {
+          firings = Arrays.copyOf(firings, firings.length * 2);
+        }
+        firings[count] = transitionId;
+      }
+      position = lineEnd + 1;
+    }
+    firings[0] = count;
+    return firings;
+  }
+
+  /**
+   * Returns the transition id of a "... [LEVEL] Transition N fired ..." line
+   * in [from, to), or -1 if it is some other line.
+   */
+  private static int parseFiring(MappedByteBuffer buffer, int from, int to) {
+    int at = indexOf(buffer, PREFIX, from, to);
+    if (at < 0) {
+      return -1;
+    }
+    int position = at + PREFIX.length;
+    int value = 0;
+    int digits = 0;
+    while (position < to) {
+      byte b = buffer.get(position);
+      if (b < '0' || b > '9') {
+        break;
+      }
+      value = value * 10 + (b - '0');
+      digits++;
+      position++;
+    }
+    if (digits == 0 || digits > 9 || !startsWith(buffer, SUFFIX, position, to)) {
+      return -1;
+    }
+    return value;
+  }
+
+  private static int indexOf(MappedByteBuffer buffer, byte[] pattern, int from, int to) {
+    byte head = pattern[0];
+    for (int i = from, last = to - pattern.length; i <= last; i++) {
+      if (buffer.get(i) == head && startsWith(buffer, pattern, i, to)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean startsWith(MappedByteBuffer buffer, byte[] pattern, int at, int to) {
+    if (at + pattern.length > to) {
+      return false;
+    }
+    for (int i = 0; i < pattern.length; i++) {
+      if (buffer.get(at + i) != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static void main(String[] args) throws IOException {
+    boolean trace = args.length > 1 && "--trace".equals(args[0]);
+    if (args.length == 0 || (args.length > 1 && !trace)) {
+      System.err.println("Usage: java analysis.InvariantChecker [--trace] path");
+      System.exit(1);
+    }
+    Path path = Paths.get(args[args.length - 1]);
+    if (!Files.exists(path)) {
+      System.err.println("No such file: " + path);
+      System.exit(1);
+    }
+    InvariantChecker checker = new InvariantChecker(InvariantMatcher.defaultInvariants(),
+        Runtime.getRuntime().availableProcessors());
+    long start = System.nanoTime();
+    InvariantMatcher result = trace ? checker.checkTrace(path) : checker.checkLog(path);
+    System.out.print(result.report());
+    System.out.println("Checked in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+  }
+}
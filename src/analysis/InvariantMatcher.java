@@ -0,0 +1,313 @@
+package analysis;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally decomposes a firing sequence into T-invariants.
+ *
+ * Each invariant is given as the ordered path of transitions a token follows
+ * through the net (e.g. T0 T1 T2 T5 T6 T9 T10 T11). The paths are merged in
+ * a prefix tree; every partially matched path sits in a FIFO queue at its
+ * node. A firing of t advances the oldest partial path waiting at a node
+ * with a t edge (tokens in a place are consumed in arrival order), or starts
+ * a new path if t begins an invariant and no partial path can take it. A
+ * path reaching a leaf counts one occurrence of its invariant; a firing that
+ * fits no path is counted as unmatched.
+ *
+ * This class is not thread-safe; it is fed sequentially, in firing order.
+ */
+public class InvariantMatcher {
+  private final int[][] invariants;
+  private final int transitionCount;
+
+  // Prefix tree: child[node * transitionCount + t] is the node reached from
+  // node by firing t, or -1. Node 0 is the root.
+  private int[] child;
+  // Invariant completed at each node, or -1.
+  private int[] leafOf;
+  private int nodeCount;
+  // For each transition, the nodes (other than the root) with a t edge.
+  private int[][] parents;
+
+  // Per node FIFO queue of partial paths, holding the sequence number of the
+  // firing that last advanced each path.
+  private long[][] queue;
+  private int[] queueHead;
+  private int[] queueSize;
+
+  private long firings = 0;
+  private final long[] completed;
+  private final long[] unmatched;
+  // Unmatched firings of transitions that appear in no invariant.
+  private long otherUnmatched = 0;
+
+  /**
+   * Builds a matcher for the given invariant paths.
+   *
+   * @param invariants the ordered transition path of each invariant.
+   */
+  public InvariantMatcher(int[][] invariants) {
+    this.invariants = new int[invariants.length][];
+    int maxTransition = -1;
+    for (int i = 0; i < invariants.length; i++) {
+      if (invariants[i].length == 0) {
+        throw new IllegalArgumentException("Invariant " + i + " is empty.");
+      }
+      this.invariants[i] = invariants[i].clone();
+      for (int t : invariants[i]) {
+        if (t < 0) {
+          throw new IllegalArgumentException("Invalid transition " + t + " in invariant " + i + ".");
+        }
+        maxTransition = Math.max(maxTransition, t);
+      }
+    }
+    this.transitionCount = maxTransition + 1;
+    this.completed = new long[invariants.length];
+    this.unmatched = new long[transitionCount];
+    buildTree();
+  }
+
+  /**
+   * Returns the invariant paths of the net built by utils.PetriNet, in the
+   * order Main reports them: (T3, T7), (T3, T6), (T2, T7), (T2, T6).
+   *
+   * @return the four invariant paths.
+   */
+  public static int[][] defaultInvariants() {
+    return new int[][] {
+        {0, 1, 3, 4, 7, 8, 11},
+        {0, 1, 3, 4, 6, 9, 10, 11},
+        {0, 1, 2, 5, 7, 8, 11},
+        {0, 1, 2, 5, 6, 9, 10, 11},
+    };
+  }
+
+  private void buildTree() {
+    int maxNodes = 1;
+    for (int[] path : invariants) {
+      maxNodes += path.length;
+    }
+    child = new int[maxNodes * transitionCount];
+    Arrays.fill(child, -1);
+    leafOf = new int[maxNodes];
+    Arrays.fill(leafOf, -1);
+    nodeCount = 1;
+    for (int i = 0; i < invariants.length; i++) {
+      int node = 0;
+      for (int t : invariants[i]) {
+        int next = child[node * transitionCount + t];
+        if (next < 0) {
+          next = nodeCount++;
+          child[node * transitionCount + t] = next;
+        }
+        node = next;
+      }
+      if (leafOf[node] >= 0 || hasChildren(node)) {
+        throw new IllegalArgumentException("Invariant " + i + " is a prefix of, or equal to, another invariant.");
+      }
+      leafOf[node] = i;
+    }
+    for (int i = 0; i < invariants.length; i++) {
+      int node = 0;
+      for (int t : invariants[i]) {
+        node = child[node * transitionCount + t];
+        if (leafOf[node] >= 0 && hasChildren(node)) {
+          throw new IllegalArgumentException("Invariant " + leafOf[node] + " is a prefix of invariant " + i + ".");
+        }
+      }
+    }
+
+    int[] parentCount = new int[transitionCount];
+    for (int node = 1; node < nodeCount; node++) {
+      for (int t = 0; t < transitionCount; t++) {
+        if (child[node * transitionCount + t] >= 0) {
+          parentCount[t]++;
+        }
+      }
+    }
+    parents = new int[transitionCount][];
+    for (int t = 0; t < transitionCount; t++) {
+      parents[t] = new int[parentCount[t]];
+      parentCount[t] = 0;
+    }
+    for (int node = 1; node < nodeCount; node++) {
+      for (int t = 0; t < transitionCount; t++) {
+        if (child[node * transitionCount + t] >= 0) {
+          parents[t][parentCount[t]++] = node;
+        }
+      }
+    }
+
+    queue = new long[nodeCount][16];
+    queueHead = new int[nodeCount];
+    queueSize = new int[nodeCount];
+  }
+
+  private boolean hasChildren(int node) {
+    for (int t = 0; t < transitionCount; t++) {
+      if (child[node * transitionCount + t] >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Feeds the next firing of the sequence.
+   *
+   * @param transitionId the transition that fired.
+   */
+  public void accept(int transitionId) {
+    long sequence = firings++;
+    if (transitionId < 0 || transitionId >= transitionCount) {
+      recordUnmatched(transitionId);
+      return;
+    }
+    // The oldest partial path that can take this firing.
+    int from = -1;
+    long oldest = Long.MAX_VALUE;
+    for (int node : parents[transitionId]) {
+      if (queueSize[node] > 0) {
+        long age = queue[node][queueHead[node]];
+        if (age < oldest) {
+          oldest = age;
+          from = node;
+        }
+      }
+    }
+    if (from >= 0) {
+      poll(from);
+    } else if (child[transitionId] >= 0) {
+      from = 0;
+    } else {
+      recordUnmatched(transitionId);
+      return;
+    }
+    int next = child[from * transitionCount + transitionId];
+    if (leafOf[next] >= 0) {
+      completed[leafOf[next]]++;
+    } else {
+      offer(next, sequence);
+    }
+  }
+
+  /**
+   * Feeds a run of firings.
+   *
+   * @param transitionIds the firings, in order.
+   * @param offset        the index of the first firing in the array.
+   * @param length        the number of firings to take from the array.
+   */
+  public void acceptAll(int[] transitionIds, int offset, int length) {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      accept(transitionIds[i]);
+    }
+  }
+
+  private void recordUnmatched(int transitionId) {
+    if (transitionId >= 0 && transitionId < transitionCount) {
+      unmatched[transitionId]++;
+    } else {
+      otherUnmatched++;
+    }
+  }
+
+  private void offer(int node, long sequence) {
+    long[] q = queue[node];
+    int size = queueSize[node];
+    if (size == q.length) {
+      long[] grown = new long[q.length * 2];
+      for (int i = 0; i < size; i++) {
+        grown[i] = q[(queueHead[node] + i) % q.length];
+      }
+      queue[node] = q = grown;
+      queueHead[node] = 0;
+    }
+    q[(queueHead[node] + size) % q.length] = sequence;
+    queueSize[node] = size + 1;
+  }
+
+  private void poll(int node) {
+    queueHead[node] = (queueHead[node] + 1) % queue[node].length;
+    queueSize[node]--;
+  }
+
+  public long getFiringCount() {
+    return firings;
+  }
+
+  public int getInvariantCount() {
+    return invariants.length;
+  }
+
+  public int[] getInvariant(int index) {
+    return invariants[index].clone();
+  }
+
+  /**
+   * Returns how many times an invariant was completed.
+   *
+   * @param index the invariant index.
+   * @return the number of complete occurrences.
+   */
+  public long getCompleted(int index) {
+    return completed[index];
+  }
+
+  /**
+   * Returns how many firings of a transition did not fit any invariant path.
+   *
+   * @param transitionId the transition id.
+   * @return the number of unmatched firings.
+   */
+  public long getUnmatched(int transitionId) {
+    return transitionId < transitionCount ? unmatched[transitionId] : 0;
+  }
+
+  /**
+   * Returns the number of partial paths still waiting (tokens in flight when
+   * the sequence ended).
+   *
+   * @return the number of incomplete paths.
+   */
+  public long getIncompleteCount() {
+    long total = 0;
+    for (int node = 1; node < nodeCount; node++) {
+      total += queueSize[node];
+    }
+    return total;
+  }
+
+  /**
+   * Formats the counts per invariant, the incomplete paths and the unmatched
+   * firings.
+   *
+   * @return a multi-line report.
+   */
+  public String report() {
+    StringBuilder out = new StringBuilder();
+    out.append("Firings: ").append(firings).append('\n');
+    for (int i = 0; i < invariants.length; i++) {
+      out.append("Invariant ").append(i + 1).append(" (");
+      for (int j = 0; j < invariants[i].length; j++) {
+        out.append(j == 0 ? "T" : " T").append(invariants[i][j]);
+      }
+      out.append("): ").append(completed[i]).append('\n');
+    }
+    out.append("Incomplete paths: ").append(getIncompleteCount()).append('\n');
+    long totalUnmatched = 0;
+    StringBuilder detail = new StringBuilder();
+    for (int t = 0; t < transitionCount; t++) {
+      if (unmatched[t] > 0) {
+        totalUnmatched += unmatched[t];
+        detail.append(" T").append(t).append('=').append(unmatched[t]);
+      }
+    }
+    if (otherUnmatched > 0) {
+      totalUnmatched += otherUnmatched;
+      detail.append(" other=").append(otherUnmatched);
+    }
+    out.append("Unmatched firings: ").append(totalUnmatched).append(detail).append('\n');
+    return out.toString();
+  }
+}
@@ -0,0 +1,130 @@
+package analysis;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent set of packed markings, each a fixed number of long words.
+ *
+ * Open addressing with linear probing over one flat long[] of keys, so a
+ * state costs its words plus a 4-byte slot state and nothing is boxed. A slot
+ * is claimed with a compare-and-set on its state (EMPTY to WRITING), the key
+ * is written, and the state is published as FULL; a thread probing a slot
+ * that is being written spins until it is published. Entries are never
+ * removed, and the table does not grow: it is sized for a maximum number of
+ * states up front (at most half full), and add reports FULL once that many
+ * have been added.
+ */
+public class MarkingSet {
+  public static final int ADDED = 0;
+  public static final int PRESENT = 1;
+  public static final int FULL = 2;
+
+  private static final int EMPTY = 0;
+  private static final int WRITING = 1;
+  private static final int WRITTEN = 2;
+
+  private final int words;
+  private final long maxSize;
+  private final int mask;
+  private final long[] keys;
+  private final AtomicIntegerArray slots;
+  private final AtomicLong size = new AtomicLong();
+
+  /**
+   * Creates a set able to hold maxSize keys, at a load factor of at most
+   * one half.
+   *
+   * @param words   the number of long words of each key.
+   * @param maxSize the maximum number of keys.
+   * @throws IllegalArgumentException if the table would not fit in an array.
+   */
+  public MarkingSet(int words, long maxSize) {
+    long capacity = Long.highestOneBit(Math.max(16, maxSize * 2 - 1)) << 1;
+    if (capacity > (1 << 30) || capacity * words > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Cannot hold " + maxSize + " markings of " + words + " words.");
+    }
+    this.words = words;
+    this.maxSize = maxSize;
+    this.mask = (int) capacity - 1;
+    this.keys = new long[(int) capacity * words];
+    this.slots = new AtomicIntegerArray((int) capacity);
+  }
+
+  /**
+   * Returns the bytes used by a set of the given size, to size it against the
+   * heap.
+   *
+   * @param words   the number of long words of each key.
+   * @param maxSize the maximum number of keys.
+   * @return the approximate footprint in bytes.
+   */
+  public static long footprint(int words, long maxSize) {
+    long capacity = Long.highestOneBit(Math.max(16, maxSize * 2 - 1)) << 1;
+    return capacity * (words * 8L + 4);
+  }
+
+  /**
+   * Adds a key, given as words [offset, offset + words) of an array.
+   *
+   * @return ADDED if it was not in the set, PRESENT if it was, or FULL if
+   *         it was not and the set already holds maxSize keys.
+   */
+  public int add(long[] key, int offset) {
+    int slot = hash(key, offset) & mask;
+    while (true) {
+      int state = slots.get(slot);
+      if (state == EMPTY) {
+        // The key is not in the set. The limit is checked before claiming,
+        // so concurrent adds may overshoot it by a few keys, which the
+        // spare capacity absorbs.
+        if (size.get() >= maxSize) {
+          return FULL;
+        }
+        if (slots.compareAndSet(slot, EMPTY, WRITING)) {
+          size.incrementAndGet();
+          System.arraycopy(key, offset, keys, slot * words, words);
+          slots.set(slot, WRITTEN);
+          return ADDED;
+        }
+        state = slots.get(slot);
+      }
+      while (state == WRITING) {
+        Thread.onSpinWait();
+        state = slots.get(slot);
+      }
+      if (equalsAt(key, offset, slot)) {
+        return PRESENT;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean equalsAt(long[] key, int offset, int slot) {
+    int base = slot * words;
+    for (int i = 0; i < words; i++) {
+      if (keys[base + i] != key[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int hash(long[] key, int offset) {
+    long h = 0x9E3779B97F4A7C15L;
+    for (int i = 0; i < words; i++) {
+      h = (h ^ key[offset + i]) * 0xFF51AFD7ED558CCDL;
+      h ^= h >>> 32;
+    }
+    h *= 0xC4CEB9FE1A85EC53L;
+    return (int) (h ^ (h >>> 29));
+  }
+
+  public long size() {
+    return size.get();
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+}
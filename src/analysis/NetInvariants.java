@@ -0,0 +1,214 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import monitor.BalancedPolicy;
+import monitor.MonitorType;
+import petrinet.Places;
+import petrinet.Transition;
+import utils.Logger;
+import utils.PetriNet;
+
+/**
+ * The minimal P-invariants and T-invariants of a net, computed from its
+ * incidence matrix C (C[p][t] = post - pre) with FarkasSolver.
+ *
+ * A P-invariant y (y C = 0) is a weighted set of places whose weighted token
+ * sum no firing changes, so it stays at its value in the initial marking;
+ * a net covered by P-invariants is bounded. A T-invariant x (C x = 0) is a
+ * multiset of firings that leads back to the marking it started from.
+ *
+ * Usage: java analysis.NetInvariants [net.pnml]
+ */
+public class NetInvariants {
+  private final int placeCount;
+  private final int transitionCount;
+  private final List<Invariant> pInvariants;
+  private final List<Invariant> tInvariants;
+  // Weighted token sum of each P-invariant in the initial marking.
+  private final long[] pInvariantTokens;
+  private final long elapsedMillis;
+
+  private NetInvariants(int placeCount, int transitionCount, List<Invariant> pInvariants,
+      List<Invariant> tInvariants, long[] pInvariantTokens, long elapsedMillis) {
+    this.placeCount = placeCount;
+    this.transitionCount = transitionCount;
+    this.pInvariants = Collections.unmodifiableList(pInvariants);
+    this.tInvariants = Collections.unmodifiableList(tInvariants);
+    this.pInvariantTokens = pInvariantTokens;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * Computes the invariants of a net.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @return the invariants.
+   * @throws IllegalStateException if a weight overflows.
+   */
+  public static NetInvariants compute(Places places, Map<Integer, Transition> transitions) {
+    long start = System.currentTimeMillis();
+    int placeCount = places.getPlaceCount();
+    int transitionCount = 0;
+    for (Transition transition : transitions.values()) {
+      transitionCount = Math.max(transitionCount, transition.getId() + 1);
+    }
+
+    // Column t of C, as (place, value) pairs; a place both consumed and
+    // produced appears twice and is merged by the solver.
+    int[][] transitionPlaces = new int[transitionCount][];
+    int[][] transitionValues = new int[transitionCount][];
+    int[] placeArcs = new int[placeCount];
+    for (int t = 0; t < transitionCount; t++) {
+      Transition transition = transitions.get(t);
+      int[] pre = transition != null ? transition.getPrePlaces() : new int[0];
+      int[] preWeights = transition != null ? transition.getPreWeights() : new int[0];
+      int[] post = transition != null ? transition.getPostPlaces() : new int[0];
+      int[] postWeights = transition != null ? transition.getPostWeights() : new int[0];
+      transitionPlaces[t] = new int[pre.length + post.length];
+      transitionValues[t] = new int[pre.length + post.length];
+      for (int i = 0; i < pre.length; i++) {
+        checkPlace(pre[i], placeCount);
+        transitionPlaces[t][i] = pre[i];
+        transitionValues[t][i] = -preWeights[i];
+        placeArcs[pre[i]]++;
+      }
+      for (int i = 0; i < post.length; i++) {
+        checkPlace(post[i], placeCount);
+        transitionPlaces[t][pre.length + i] = post[i];
+        transitionValues[t][pre.length + i] = postWeights[i];
+        placeArcs[post[i]]++;
+      }
+    }
+
+    // Row p of C, for the P-invariants.
+    int[][] placeTransitions = new int[placeCount][];
+    int[][] placeValues = new int[placeCount][];
+    for (int p = 0; p < placeCount; p++) {
+      placeTransitions[p] = new int[placeArcs[p]];
+      placeValues[p] = new int[placeArcs[p]];
+      placeArcs[p] = 0;
+    }
+    for (int t = 0; t < transitionCount; t++) {
+      for (int i = 0; i < transitionPlaces[t].length; i++) {
+        int p = transitionPlaces[t][i];
+        placeTransitions[p][placeArcs[p]] = t;
+        placeValues[p][placeArcs[p]++] = transitionValues[t][i];
+      }
+    }
+
+    List<Invariant> pInvariants = FarkasSolver.solve(placeCount, transitionCount, placeTransitions, placeValues);
+    List<Invariant> tInvariants = FarkasSolver.solve(transitionCount, placeCount, transitionPlaces,
+        transitionValues);
+    int[] marking = new int[placeCount];
+    for (int p = 0; p < placeCount; p++) {
+      marking[p] = places.getTokenCount(p);
+    }
+    long[] tokens = new long[pInvariants.size()];
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = pInvariants.get(i).weightedSum(marking);
+    }
+    return new NetInvariants(placeCount, transitionCount, new ArrayList<>(pInvariants),
+        new ArrayList<>(tInvariants), tokens, System.currentTimeMillis() - start);
+  }
+
+  private static void checkPlace(int placeId, int placeCount) {
+    if (placeId < 0 || placeId >= placeCount) {
+      throw new IllegalArgumentException("Arc to unknown place " + placeId);
+    }
+  }
+
+  public List<Invariant> getPInvariants() {
+    return pInvariants;
+  }
+
+  public List<Invariant> getTInvariants() {
+    return tInvariants;
+  }
+
+  /**
+   * Returns the weighted token sum a P-invariant keeps, its value in the
+   * initial marking.
+   *
+   * @param index the index of the P-invariant.
+   * @return the constant weighted sum.
+   */
+  public long getPInvariantTokens(int index) {
+    return pInvariantTokens[index];
+  }
+
+  /**
+   * Returns true if every place belongs to some P-invariant, which makes
+   * the net bounded for any initial marking.
+   */
+  public boolean isCoveredByPInvariants() {
+    return covers(pInvariants, placeCount);
+  }
+
+  /**
+   * Returns true if every transition belongs to some T-invariant.
+   */
+  public boolean isCoveredByTInvariants() {
+    return covers(tInvariants, transitionCount);
+  }
+
+  private static boolean covers(List<Invariant> invariants, int length) {
+    boolean[] covered = new boolean[length];
+    for (Invariant invariant : invariants) {
+      for (int i = 0; i < invariant.size(); i++) {
+        covered[invariant.getIndex(i)] = true;
+      }
+    }
+    for (boolean c : covered) {
+      if (!c) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Formats the invariants, with the constant of each P-invariant.
+   *
+   * @return a multi-line report.
+   */
+  public String report() {
+    StringBuilder out = new StringBuilder();
+    out.append("P-invariants: ").append(pInvariants.size()).append(isCoveredByPInvariants()
+        ? " (every place covered: the net is bounded)" : " (not every place covered)").append('\n');
+    for (int i = 0; i < pInvariants.size(); i++) {
+      out.append("  ").append(pInvariants.get(i).format("p")).append(" = ").append(pInvariantTokens[i])
+          .append('\n');
+    }
+    out.append("T-invariants: ").append(tInvariants.size()).append(isCoveredByTInvariants()
+        ? " (every transition covered)" : " (not every transition covered)").append('\n');
+    for (Invariant invariant : tInvariants) {
+      out.append("  ").append(invariant.format("T")).append('\n');
+    }
+    out.append("Computed in ").append(elapsedMillis).append(" ms\n");
+    return out.toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length > 1 || (args.length == 1 && args[0].startsWith("--"))) {
+      System.err.println("Usage: java analysis.NetInvariants [net.pnml]");
+      System.exit(1);
+    }
+    Logger.getInstance().setLevel(Logger.Level.WARN);
+    PetriNet net = args.length == 0
+        ? new PetriNet(new BalancedPolicy())
+        : new PetriNet(new BalancedPolicy(), MonitorType.COARSE, Paths.get(args[0]));
+    System.out.print(compute(net.getPlaces(), net.getTransitions()).report());
+    Logger.getInstance().close();
+  }
+}
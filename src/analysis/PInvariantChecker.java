@@ -0,0 +1,142 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import petrinet.Places;
+import petrinet.Transition;
+import utils.Logger;
+
+/**
+ * Checks the P-invariants of a net after every firing, in time proportional
+ * to the invariants touched by the fired transition instead of the size of
+ * the net.
+ *
+ * The checker keeps the weighted token sum of each P-invariant (e.g.
+ * p10 + p11 + p12 + p13 = 1). The marking of a monitor only changes through
+ * firings, so the change a firing of t makes to the sum of invariant y is the
+ * constant y . C[., t]. These deltas are precomputed for every transition and
+ * the invariants holding its places, and a check adds them to the sums and
+ * compares the result with the value in the initial marking. No tokens are
+ * read. A nonzero delta means the invariants do not match the arcs of the
+ * net (e.g. they were computed for another net), and is reported when the
+ * transition fires.
+ *
+ * Not thread-safe: the Monitor calls it while holding its lock.
+ */
+public class PInvariantChecker {
+  private static final Logger logger = Logger.getInstance();
+
+  private final NetInvariants invariants;
+  // Current and initial weighted sum of each P-invariant.
+  private final long[] sums;
+  private final long[] expected;
+  // For each transition, the invariants holding any place of its arcs,
+  // without repeats, and the change of their sums when it fires.
+  private final int[][] touched;
+  private final long[][] deltas;
+
+  /**
+   * Creates a checker starting from the current marking of places.
+   *
+   * @param invariants  the invariants of the net.
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   */
+  public PInvariantChecker(NetInvariants invariants, Places places, Map<Integer, Transition> transitions) {
+    this.invariants = invariants;
+    int placeCount = places.getPlaceCount();
+    List<Invariant> pInvariants = invariants.getPInvariants();
+    sums = new long[pInvariants.size()];
+    expected = new long[pInvariants.size()];
+    int[] marking = new int[placeCount];
+    for (int p = 0; p < placeCount; p++) {
+      marking[p] = places.getTokenCount(p);
+    }
+    // Weight of each place in each invariant, by invariant.
+    List<Map<Integer, Integer>> weights = new ArrayList<>();
+    List<List<Integer>> placeInvariants = new ArrayList<>();
+    for (int p = 0; p < placeCount; p++) {
+      placeInvariants.add(new ArrayList<>());
+    }
+    for (int i = 0; i < pInvariants.size(); i++) {
+      Invariant invariant = pInvariants.get(i);
+      sums[i] = invariant.weightedSum(marking);
+      expected[i] = invariants.getPInvariantTokens(i);
+      Map<Integer, Integer> weight = new HashMap<>();
+      for (int k = 0; k < invariant.size(); k++) {
+        weight.put(invariant.getIndex(k), invariant.getWeight(k));
+        placeInvariants.get(invariant.getIndex(k)).add(i);
+      }
+      weights.add(weight);
+    }
+
+    int transitionCount = 0;
+    for (Transition transition : transitions.values()) {
+      transitionCount = Math.max(transitionCount, transition.getId() + 1);
+    }
+    touched = new int[transitionCount][0];
+    deltas = new long[transitionCount][0];
+    for (Transition transition : transitions.values()) {
+      int t = transition.getId();
+      TreeSet<Integer> held = new TreeSet<>();
+      for (int p : transition.getPrePlaces()) {
+        held.addAll(placeInvariants.get(p));
+      }
+      for (int p : transition.getPostPlaces()) {
+        held.addAll(placeInvariants.get(p));
+      }
+      touched[t] = held.stream().mapToInt(Integer::intValue).toArray();
+      deltas[t] = new long[touched[t].length];
+      for (int k = 0; k < touched[t].length; k++) {
+        Map<Integer, Integer> weight = weights.get(touched[t][k]);
+        long delta = 0;
+        int[] pre = transition.getPrePlaces();
+        int[] preWeights = transition.getPreWeights();
+        for (int a = 0; a < pre.length; a++) {
+          delta -= (long) weight.getOrDefault(pre[a], 0) * preWeights[a];
+        }
+        int[] post = transition.getPostPlaces();
+        int[] postWeights = transition.getPostWeights();
+        for (int a = 0; a < post.length; a++) {
+          delta += (long) weight.getOrDefault(post[a], 0) * postWeights[a];
+        }
+        deltas[t][k] = delta;
+      }
+    }
+  }
+
+  public NetInvariants getInvariants() {
+    return invariants;
+  }
+
+  /**
+   * Applies the firing of a transition to the invariant sums and checks the
+   * invariants holding the places of the transition.
+   *
+   * @param transitionId the transition that fired.
+   * @return true if every invariant still holds, false otherwise (the
+   *         violation is logged).
+   */
+  public boolean check(int transitionId) {
+    if (transitionId < 0 || transitionId >= touched.length) {
+      return true;
+    }
+    boolean valid = true;
+    int[] held = touched[transitionId];
+    long[] delta = deltas[transitionId];
+    for (int k = 0; k < held.length; k++) {
+      int i = held[k];
+      sums[i] += delta[k];
+      if (sums[i] != expected[i]) {
+        logger.error("Invariant violation: " + invariants.getPInvariants().get(i).format("p") + " = " + sums[i]
+            + " instead of " + expected[i]);
+        valid = false;
+      }
+    }
+    return valid;
+  }
+}
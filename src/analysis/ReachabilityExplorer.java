@@ -0,0 +1,538 @@
+package analysis;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import monitor.BalancedPolicy;
+import monitor.MonitorType;
+import petrinet.IncidenceMatrix;
+import petrinet.Places;
+import petrinet.Transition;
+import utils.Logger;
+import utils.PetriNet;
+
+/**
+ * Explores the reachability graph of a net from its initial marking, with a
+ * level-synchronous parallel breadth-first search.
+ *
+ * Markings are packed into long words, a fixed number of bits per place, and
+ * kept in a MarkingSet (a concurrent open-addressing table of primitive
+ * words). Each BFS level is split in chunks taken by the worker threads; a
+ * worker decodes a marking, fires every enabled transition through the
+ * IncidenceMatrix, and adds the successors it is the first to reach to its
+ * part of the next level. The exploration reports the number of states, the
+ * deadlocks (markings with no enabled transition), the bound of every place
+ * and the dead transitions (never enabled).
+ *
+ * The net is explored as an untimed place/transition net: delays and the
+ * policy are not taken into account, so every interleaving is considered.
+ *
+ * In reduced mode only the enabled transitions of a stubborn set are fired
+ * from each marking, instead of all enabled transitions. A stubborn set is
+ * closed under the structural conflict relation: it holds, for each of its
+ * enabled transitions, every transition sharing an input place with it, and
+ * for each of its disabled transitions, every producer of one input place
+ * missing tokens. Transitions outside the set cannot disable or be disabled
+ * by those inside, so independent firings are explored in one order only,
+ * and every deadlock is still reached. The set is grown from each enabled
+ * transition in turn and the one with the fewest enabled transitions is kept.
+ *
+ * Usage: java analysis.ReachabilityExplorer [--threads N] [--max-states N]
+ * [--bits N] [--reduced] [net.pnml]
+ */
+public class ReachabilityExplorer {
+  // States of a level taken at once by a worker.
+  private static final int CHUNK = 1024;
+  private static final int MAX_DEADLOCK_EXAMPLES = 10;
+
+  private final IncidenceMatrix matrix;
+  private final int placeCount;
+  private final int transitionCount;
+  private final int[] initialMarking;
+  private final int threads;
+  private final long maxStates;
+  private final boolean reduced;
+
+  // Structural relations used by the stubborn sets: the input arcs of each
+  // transition, the transitions sharing an input place with it (itself
+  // included), and the transitions producing into each place.
+  private final int[][] prePlaces;
+  private final int[][] preWeights;
+  private final int[][] conflicting;
+  private final int[][] producers;
+
+  // Marking encoding: bitsPerPlace bits per place, placesPerWord places per
+  // long (no place spans two words).
+  private final int bitsPerPlace;
+  private final int placesPerWord;
+  private final int words;
+  private final int maxTokens;
+
+  /**
+   * Creates an explorer for a net.
+   *
+   * @param places       the Places holding the initial marking.
+   * @param transitions  a mapping from transition IDs to Transition objects.
+   * @param threads      the number of worker threads.
+   * @param maxStates    the number of states after which exploration stops.
+   * @param bitsPerPlace the bits used to encode the tokens of a place (1 to
+   *                     31); a place exceeding 2^bitsPerPlace - 1 tokens
+   *                     stops the exploration.
+   */
+  public ReachabilityExplorer(Places places, Map<Integer, Transition> transitions, int threads, long maxStates,
+      int bitsPerPlace) {
+    this(places, transitions, threads, maxStates, bitsPerPlace, false);
+  }
+
+  /**
+   * Creates an explorer for a net, optionally reduced with stubborn sets.
+   *
+   * @param places       the Places holding the initial marking.
+   * @param transitions  a mapping from transition IDs to Transition objects.
+   * @param threads      the number of worker threads.
+   * @param maxStates    the number of states after which exploration stops.
+   * @param bitsPerPlace the bits used to encode the tokens of a place.
+   * @param reduced      whether to fire only the transitions of a stubborn
+   *                     set (preserves deadlocks only).
+   */
+  public ReachabilityExplorer(Places places, Map<Integer, Transition> transitions, int threads, long maxStates,
+      int bitsPerPlace, boolean reduced) {
+    if (bitsPerPlace < 1 || bitsPerPlace > 31) {
+      throw new IllegalArgumentException("Bits per place must be between 1 and 31: " + bitsPerPlace);
+    }
+    this.matrix = new IncidenceMatrix(places.getPlaceCount(), transitions);
+    this.placeCount = places.getPlaceCount();
+    this.transitionCount = matrix.getTransitionCount();
+    this.initialMarking = new int[placeCount];
+    for (int p = 0; p < placeCount; p++) {
+      initialMarking[p] = places.getTokenCount(p);
+    }
+    this.threads = Math.max(1, threads);
+    this.maxStates = maxStates;
+    this.bitsPerPlace = bitsPerPlace;
+    this.placesPerWord = 64 / bitsPerPlace;
+    this.words = Math.max(1, (placeCount + placesPerWord - 1) / placesPerWord);
+    this.maxTokens = (1 << bitsPerPlace) - 1;
+    for (int p = 0; p < placeCount; p++) {
+      if (initialMarking[p] > maxTokens) {
+        throw new IllegalArgumentException("Place " + p + " starts with more than " + maxTokens + " tokens.");
+      }
+    }
+
+    this.reduced = reduced;
+    prePlaces = new int[transitionCount][];
+    preWeights = new int[transitionCount][];
+    List<List<Integer>> consumersOf = new ArrayList<>();
+    List<List<Integer>> producersOf = new ArrayList<>();
+    for (int p = 0; p < placeCount; p++) {
+      consumersOf.add(new ArrayList<>());
+      producersOf.add(new ArrayList<>());
+    }
+    for (int t = 0; t < transitionCount; t++) {
+      Transition transition = transitions.get(t);
+      prePlaces[t] = transition != null ? transition.getPrePlaces() : new int[0];
+      preWeights[t] = transition != null ? transition.getPreWeights() : new int[0];
+      for (int p : prePlaces[t]) {
+        consumersOf.get(p).add(t);
+      }
+      if (transition != null) {
+        for (int p : transition.getPostPlaces()) {
+          producersOf.get(p).add(t);
+        }
+      }
+    }
+    conflicting = new int[transitionCount][];
+    for (int t = 0; t < transitionCount; t++) {
+      TreeSet<Integer> set = new TreeSet<>();
+      set.add(t);
+      for (int p : prePlaces[t]) {
+        set.addAll(consumersOf.get(p));
+      }
+      conflicting[t] = set.stream().mapToInt(Integer::intValue).toArray();
+    }
+    producers = new int[placeCount][];
+    for (int p = 0; p < placeCount; p++) {
+      producers[p] = producersOf.get(p).stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+  }
+
+  /**
+   * Returns a number of bits per place leaving room for four times the
+   * largest initial marking (at least 4 bits).
+   *
+   * @param places the Places holding the initial marking.
+   * @return the suggested bits per place.
+   */
+  public static int defaultBitsPerPlace(Places places) {
+    int max = 1;
+    for (int p = 0; p < places.getPlaceCount(); p++) {
+      max = Math.max(max, places.getTokenCount(p));
+    }
+    return Math.min(31, Math.max(4, 34 - Integer.numberOfLeadingZeros(max)));
+  }
+
+  /**
+   * Returns the number of long words of a packed marking.
+   */
+  public int getWords() {
+    return words;
+  }
+
+  void encode(int[] marking, long[] key, int offset) {
+    Arrays.fill(key, offset, offset + words, 0L);
+    for (int p = 0; p < placeCount; p++) {
+      key[offset + p / placesPerWord] |= (long) marking[p] << ((p % placesPerWord) * bitsPerPlace);
+    }
+  }
+
+  void decode(long[] key, int offset, int[] marking) {
+    for (int p = 0; p < placeCount; p++) {
+      marking[p] = (int) (key[offset + p / placesPerWord] >>> ((p % placesPerWord) * bitsPerPlace)) & maxTokens;
+    }
+  }
+
+  // Shared state of the exploration in progress.
+  private MarkingSet visited;
+  private long[] frontier;
+  private int frontierSize;
+  private final AtomicInteger nextChunk = new AtomicInteger();
+  private volatile boolean truncated;
+  private volatile int overflowPlace = -1;
+  private final List<int[]> deadlockExamples = new ArrayList<>();
+
+  /**
+   * Explores the reachability graph.
+   *
+   * @return the result of the exploration.
+   * @throws InterruptedException if the calling thread is interrupted.
+   */
+  public synchronized ReachabilityResult explore() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    visited = new MarkingSet(words, maxStates);
+    truncated = false;
+    overflowPlace = -1;
+    deadlockExamples.clear();
+
+    frontier = new long[words];
+    encode(initialMarking, frontier, 0);
+    visited.add(frontier, 0);
+    frontierSize = 1;
+
+    List<Worker> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(new Worker());
+    }
+    workers.get(0).observe(initialMarking);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "ReachabilityWorker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    int depth = 0;
+    try {
+      while (frontierSize > 0 && !truncated && overflowPlace < 0) {
+        nextChunk.set(0);
+        for (Future<Void> future : executor.invokeAll(workers)) {
+          future.get();
+        }
+        // Concatenate the parts of the next level.
+        int size = 0;
+        for (Worker worker : workers) {
+          size += worker.nextSize;
+        }
+        long[] next = new long[size * words];
+        int at = 0;
+        for (Worker worker : workers) {
+          System.arraycopy(worker.next, 0, next, at, worker.nextSize * words);
+          at += worker.nextSize * words;
+          worker.clearNext();
+        }
+        frontier = next;
+        frontierSize = size;
+        if (size > 0) {
+          depth++;
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Exploration failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long edges = 0;
+    long deadlocks = 0;
+    int[] bounds = new int[placeCount];
+    boolean[] everEnabled = new boolean[transitionCount];
+    for (Worker worker : workers) {
+      edges += worker.edges;
+      deadlocks += worker.deadlocks;
+      for (int p = 0; p < placeCount; p++) {
+        bounds[p] = Math.max(bounds[p], worker.bounds[p]);
+      }
+      for (int t = 0; t < transitionCount; t++) {
+        everEnabled[t] |= worker.everEnabled[t];
+      }
+    }
+    long states = visited.size();
+    visited = null;
+    frontier = null;
+    return new ReachabilityResult(states, edges, depth, deadlocks, deadlockExamples, bounds, everEnabled,
+        truncated, overflowPlace, System.currentTimeMillis() - start, reduced);
+  }
+
+  /**
+   * Expands chunks of the current level until there are none left. Its
+   * statistics are kept across levels and merged at the end.
+   */
+  private final class Worker implements Callable<Void> {
+    private final int[] marking = new int[placeCount];
+    private final int[] successor = new int[placeCount];
+    private final long[] key = new long[words];
+    // Enabled transitions of the marking being expanded, and those to fire.
+    private final boolean[] enabled = new boolean[transitionCount];
+    private final int[] toFire = new int[transitionCount];
+    private final int[] candidate = new int[transitionCount];
+    // Stubborn set construction: membership stamps and work stack.
+    private final int[] stamp = new int[transitionCount];
+    private int currentStamp = 0;
+    private final int[] stack = new int[transitionCount];
+    private long[] next = new long[CHUNK * words];
+    private int nextSize = 0;
+
+    private final int[] bounds = new int[placeCount];
+    private final boolean[] everEnabled = new boolean[transitionCount];
+    private long edges = 0;
+    private long deadlocks = 0;
+
+    @Override
+    public Void call() {
+      while (!truncated && overflowPlace < 0) {
+        int from = nextChunk.getAndAdd(CHUNK);
+        if (from >= frontierSize) {
+          break;
+        }
+        int to = Math.min(frontierSize, from + CHUNK);
+        for (int i = from; i < to; i++) {
+          decode(frontier, i * words, marking);
+          expand();
+        }
+      }
+      return null;
+    }
+
+    private void expand() {
+      int enabledCount = 0;
+      for (int t = 0; t < transitionCount; t++) {
+        enabled[t] = matrix.isEnabled(t, marking);
+        if (enabled[t]) {
+          everEnabled[t] = true;
+          toFire[enabledCount++] = t;
+        }
+      }
+      int fireCount = enabledCount;
+      if (reduced && enabledCount > 1) {
+        fireCount = smallestStubbornSet(enabledCount);
+      }
+      for (int i = 0; i < fireCount; i++) {
+        int t = toFire[i];
+        edges++;
+        System.arraycopy(marking, 0, successor, 0, placeCount);
+        matrix.fire(t, successor);
+        if (!fits(successor)) {
+          return;
+        }
+        encode(successor, key, 0);
+        int added = visited.add(key, 0);
+        if (added == MarkingSet.ADDED) {
+          observe(successor);
+          push(key);
+        } else if (added == MarkingSet.FULL) {
+          truncated = true;
+          return;
+        }
+      }
+      if (enabledCount == 0) {
+        deadlocks++;
+        synchronized (deadlockExamples) {
+          if (deadlockExamples.size() < MAX_DEADLOCK_EXAMPLES) {
+            deadlockExamples.add(marking.clone());
+          }
+        }
+      }
+    }
+
+    /**
+     * Replaces toFire (the enabled transitions) with the enabled transitions
+     * of the smallest stubborn set grown from one of them.
+     *
+     * @return the number of transitions left in toFire.
+     */
+    private int smallestStubbornSet(int enabledCount) {
+      int[] enabledList = Arrays.copyOf(toFire, enabledCount);
+      int best = enabledCount;
+      for (int seed : enabledList) {
+        int count = stubbornSet(seed, best);
+        if (count < best) {
+          best = count;
+          System.arraycopy(candidate, 0, toFire, 0, count);
+          if (best == 1) {
+            break;
+          }
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Grows a stubborn set from an enabled transition, writing its enabled
+     * transitions to candidate. Gives up once it holds limit enabled ones.
+     *
+     * @return the number of enabled transitions in the set (at most limit).
+     */
+    private int stubbornSet(int seed, int limit) {
+      if (++currentStamp == 0) {
+        Arrays.fill(stamp, 0);
+        currentStamp = 1;
+      }
+      int top = 0;
+      int count = 0;
+      stamp[seed] = currentStamp;
+      stack[top++] = seed;
+      while (top > 0) {
+        int t = stack[--top];
+        int[] related;
+        if (enabled[t]) {
+          candidate[count++] = t;
+          if (count >= limit) {
+            return limit;
+          }
+          related = conflicting[t];
+        } else {
+          related = producers[scapegoat(t)];
+        }
+        for (int u : related) {
+          if (stamp[u] != currentStamp) {
+            stamp[u] = currentStamp;
+            stack[top++] = u;
+          }
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Returns an input place of a disabled transition that lacks tokens,
+     * preferring one with few producers.
+     */
+    private int scapegoat(int t) {
+      int chosen = -1;
+      for (int i = 0; i < prePlaces[t].length; i++) {
+        int p = prePlaces[t][i];
+        if (marking[p] < preWeights[t][i] && (chosen < 0 || producers[p].length < producers[chosen].length)) {
+          chosen = p;
+        }
+      }
+      return chosen;
+    }
+
+    private boolean fits(int[] m) {
+      for (int p = 0; p < placeCount; p++) {
+        if (m[p] > maxTokens) {
+          overflowPlace = p;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void observe(int[] m) {
+      for (int p = 0; p < placeCount; p++) {
+        if (m[p] > bounds[p]) {
+          bounds[p] = m[p];
+        }
+      }
+    }
+
+    private void push(long[] k) {
+      if ((nextSize + 1) * words > next.length) {
+        next = Arrays.copyOf(next, next.length * 2);
+      }
+      System.arraycopy(k, 0, next, nextSize * words, words);
+      nextSize++;
+    }
+
+    void clearNext() {
+      nextSize = 0;
+      if (next.length > CHUNK * words * 64) {
+        next = new long[CHUNK * words];
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    long maxStates = -1;
+    int bits = -1;
+    boolean reduced = false;
+    String pnml = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--threads".equals(args[i]) && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if ("--max-states".equals(args[i]) && i + 1 < args.length) {
+        maxStates = Long.parseLong(args[++i]);
+      } else if ("--bits".equals(args[i]) && i + 1 < args.length) {
+        bits = Integer.parseInt(args[++i]);
+      } else if ("--reduced".equals(args[i])) {
+        reduced = true;
+      } else if (args[i].startsWith("--")) {
+        System.err.println("Usage: java analysis.ReachabilityExplorer [--threads N] [--max-states N] "
+            + "[--bits N] [--reduced] [net.pnml]");
+        System.exit(1);
+      } else {
+        pnml = args[i];
+      }
+    }
+    Logger.getInstance().setLevel(Logger.Level.WARN);
+    PetriNet net = pnml == null
+        ? new PetriNet(new BalancedPolicy())
+        : new PetriNet(new BalancedPolicy(), MonitorType.COARSE, Paths.get(pnml));
+    if (bits < 0) {
+      bits = defaultBitsPerPlace(net.getPlaces());
+    }
+    if (maxStates < 0) {
+      maxStates = defaultMaxStates(net.getPlaces().getPlaceCount(), bits);
+    }
+    ReachabilityExplorer explorer = new ReachabilityExplorer(net.getPlaces(), net.getTransitions(), threads,
+        maxStates, bits, reduced);
+    System.out.println("Exploring with " + threads + " threads, " + bits + " bits per place, up to "
+        + maxStates + " states.");
+    System.out.print(explorer.explore().report());
+    Logger.getInstance().close();
+  }
+
+  /**
+   * Returns a state limit whose visited set takes about a third of the heap.
+   */
+  static long defaultMaxStates(int placeCount, int bitsPerPlace) {
+    int perWord = 64 / bitsPerPlace;
+    int words = Math.max(1, (placeCount + perWord - 1) / perWord);
+    long budget = Runtime.getRuntime().maxMemory() / 3;
+    long maxStates = 1 << 20;
+    while (MarkingSet.footprint(words, maxStates * 2) <= budget && maxStates < (1 << 29)) {
+      maxStates *= 2;
+    }
+    return maxStates;
+  }
+}
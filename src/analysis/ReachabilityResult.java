@@ -0,0 +1,185 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a reachability exploration (see ReachabilityExplorer).
+ */
+public class ReachabilityResult {
+  private final long stateCount;
+  private final long edgeCount;
+  private final int depth;
+  private final long deadlockCount;
+  private final List<int[]> deadlockExamples;
+  private final int[] bounds;
+  private final boolean[] everEnabled;
+  private final boolean truncated;
+  private final int overflowPlace;
+  private final long elapsedMillis;
+  private final boolean reduced;
+
+  ReachabilityResult(long stateCount, long edgeCount, int depth, long deadlockCount, List<int[]> deadlockExamples,
+      int[] bounds, boolean[] everEnabled, boolean truncated, int overflowPlace, long elapsedMillis,
+      boolean reduced) {
+    this.stateCount = stateCount;
+    this.edgeCount = edgeCount;
+    this.depth = depth;
+    this.deadlockCount = deadlockCount;
+    this.deadlockExamples = new ArrayList<>(deadlockExamples);
+    this.bounds = bounds;
+    this.everEnabled = everEnabled;
+    this.truncated = truncated;
+    this.overflowPlace = overflowPlace;
+    this.elapsedMillis = elapsedMillis;
+    this.reduced = reduced;
+  }
+
+  public long getStateCount() {
+    return stateCount;
+  }
+
+  public long getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * Returns the number of BFS levels explored (the longest shortest firing
+   * sequence from the initial marking, if the exploration is complete).
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getDeadlockCount() {
+    return deadlockCount;
+  }
+
+  /**
+   * Returns some of the dead markings found (at most ten).
+   */
+  public List<int[]> getDeadlockExamples() {
+    return Collections.unmodifiableList(deadlockExamples);
+  }
+
+  /**
+   * Returns the largest number of tokens seen in a place.
+   *
+   * @param placeId the place id.
+   * @return the bound of the place over the explored states.
+   */
+  public int getBound(int placeId) {
+    return bounds[placeId];
+  }
+
+  /**
+   * Returns the transitions that are not enabled in any explored state (dead
+   * transitions, which can never fire).
+   *
+   * @return the ids of the dead transitions.
+   */
+  public int[] getDeadTransitions() {
+    int count = 0;
+    for (boolean enabled : everEnabled) {
+      if (!enabled) {
+        count++;
+      }
+    }
+    int[] dead = new int[count];
+    for (int t = 0, i = 0; t < everEnabled.length; t++) {
+      if (!everEnabled[t]) {
+        dead[i++] = t;
+      }
+    }
+    return dead;
+  }
+
+  /**
+   * Returns true if the state limit was reached before the exploration
+   * finished; counts and bounds then cover only the explored states.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  /**
+   * Returns the place whose token count did not fit in the marking encoding
+   * (the net may be unbounded), or -1.
+   */
+  public int getOverflowPlace() {
+    return overflowPlace;
+  }
+
+  /**
+   * Returns true if every reachable state was explored.
+   */
+  public boolean isComplete() {
+    return !truncated && overflowPlace < 0;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Returns true if the exploration used stubborn sets. Only the deadlocks
+   * are then exact: the states are a subset of the reachable ones, so bounds
+   * are lower bounds and transitions reported dead may still fire.
+   */
+  public boolean isReduced() {
+    return reduced;
+  }
+
+  /**
+   * Formats the state count, deadlocks, bounds and dead transitions.
+   *
+   * @return a multi-line report.
+   */
+  public String report() {
+    StringBuilder out = new StringBuilder();
+    out.append("States: ").append(stateCount).append(" (").append(edgeCount).append(" edges, depth ")
+        .append(depth).append(", ").append(elapsedMillis).append(" ms)\n");
+    if (reduced) {
+      out.append("Reduced exploration (stubborn sets): deadlocks are exact; bounds and dead transitions "
+          + "only cover the explored states.\n");
+    }
+    if (truncated) {
+      out.append("Exploration stopped at the state limit: results are partial.\n");
+    }
+    if (overflowPlace >= 0) {
+      out.append("Place ").append(overflowPlace)
+          .append(" exceeded the marking encoding: the net may be unbounded (results are partial).\n");
+    }
+    out.append("Deadlocks: ").append(deadlockCount).append('\n');
+    for (int[] marking : deadlockExamples) {
+      out.append("  dead marking:");
+      for (int p = 0; p < marking.length; p++) {
+        if (marking[p] != 0) {
+          out.append(" p").append(p).append('=').append(marking[p]);
+        }
+      }
+      out.append('\n');
+    }
+    out.append("Place bounds:");
+    int max = 0;
+    for (int p = 0; p < bounds.length; p++) {
+      out.append(" p").append(p).append('=').append(bounds[p]);
+      max = Math.max(max, bounds[p]);
+    }
+    out.append('\n');
+    if (isComplete() && !reduced) {
+      out.append("The net is ").append(max).append("-bounded").append(max <= 1 ? " (safe)" : "").append(".\n");
+    }
+    int[] dead = getDeadTransitions();
+    out.append("Dead transitions: ");
+    if (dead.length == 0) {
+      out.append("none");
+    }
+    for (int i = 0; i < dead.length; i++) {
+      out.append(i == 0 ? "T" : " T").append(dead[i]);
+    }
+    out.append('\n');
+    return out.toString();
+  }
+}
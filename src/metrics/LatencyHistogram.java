@@ -0,0 +1,145 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of non-negative values (nanoseconds), with the
+ * log-linear bucketing of an HDR histogram: values below 16 have a bucket of
+ * their own, and every power of two above is split in 16 sub-buckets, so a
+ * value is reported with at most 1/16 (about 6%) relative error. Recording is
+ * a bucket computation and one atomic increment, with no allocation.
+ *
+ * Counts are striped: each thread increments its own copy of the buckets
+ * (chosen by thread id), so that threads recording at the same time do not
+ * contend on the same counters. Readers add the stripes up.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  // Exact buckets for 0..15, then 16 per power of two up to 2^62.
+  static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+  private final int stripeMask;
+  private final AtomicLongArray counts;
+
+  /**
+   * Creates a histogram with one stripe per processor (up to 8).
+   */
+  public LatencyHistogram() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a histogram with the given number of stripes, rounded up to a
+   * power of two.
+   *
+   * @param stripes the number of copies of the buckets.
+   */
+  public LatencyHistogram(int stripes) {
+    int count = Integer.highestOneBit(Math.max(1, Math.min(8, stripes)) * 2 - 1);
+    this.stripeMask = count - 1;
+    this.counts = new AtomicLongArray(count * BUCKET_COUNT);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return value < 0 ? 0 : (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (magnitude - SUB_BITS) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Returns the largest value that falls in a bucket.
+   */
+  static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+  }
+
+  /**
+   * Records one value.
+   *
+   * @param value the value, in nanoseconds; negative values count as 0.
+   */
+  public void record(long value) {
+    int stripe = (int) Thread.currentThread().getId() & stripeMask;
+    counts.incrementAndGet(stripe * BUCKET_COUNT + bucketOf(value));
+  }
+
+  /**
+   * Returns the counts of every bucket, with the stripes added up. Concurrent
+   * recordings may or may not be included.
+   *
+   * @return the bucket counts.
+   */
+  public long[] getCounts() {
+    long[] total = new long[BUCKET_COUNT];
+    for (int i = 0; i < counts.length(); i++) {
+      total[i % BUCKET_COUNT] += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   */
+  public long getTotalCount() {
+    long total = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the recorded values.
+   *
+   * @param counts     bucket counts, as returned by getCounts.
+   * @param percentile the percentile, between 0 and 100.
+   * @return the highest value of the bucket holding the percentile, or 0 if
+   *         there are no values.
+   */
+  public static long valueAtPercentile(long[] counts, double percentile) {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+    long seen = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return highestValueOf(bucket);
+      }
+    }
+    return highestValueOf(counts.length - 1);
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the recorded values.
+   *
+   * @param percentile the percentile, between 0 and 100.
+   * @return the value at the percentile, or 0 if there are no values.
+   */
+  public long getValueAtPercentile(double percentile) {
+    return valueAtPercentile(getCounts(), percentile);
+  }
+
+  /**
+   * Clears the histogram.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+  }
+}
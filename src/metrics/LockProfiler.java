@@ -0,0 +1,158 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock contention profiler, enabled with -Dpetri.lockprofile=true.
+ *
+ * The locks of the net are created through newLock. When profiling is off
+ * it returns a plain ReentrantLock; when it is on, a ProfiledLock that
+ * records, per call site, the acquisitions (and how many were reentrant or
+ * had to wait), the time spent waiting for the lock, the time it was held,
+ * and the time spent in Condition.await. A call site is the method that
+ * took the lock and its caller (e.g. "net: Monitor.fireTransition <-
+ * Segment.run"), found by walking the stack, which costs a few
+ * microseconds per acquisition but needs no changes at the call sites.
+ *
+ * The report is printed when the JVM shuts down.
+ */
+public final class LockProfiler {
+  private static final boolean ENABLED = Boolean.getBoolean("petri.lockprofile");
+  private static final Map<String, Site> sites = new ConcurrentHashMap<>();
+  private static final StackWalker walker = StackWalker.getInstance();
+
+  static {
+    if (ENABLED) {
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(report()), "LockProfilerReport"));
+    }
+  }
+
+  private LockProfiler() {
+  }
+
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Creates a lock, profiled if profiling is enabled.
+   *
+   * @param name the name of the lock in the report.
+   * @return a new lock.
+   */
+  public static ReentrantLock newLock(String name) {
+    return ENABLED ? new ProfiledLock(name) : new ReentrantLock();
+  }
+
+  /**
+   * Records a wait that does not go through a profiled lock (e.g. a blocking
+   * queue), as an await of the given site.
+   *
+   * @param site  the name of the site.
+   * @param nanos the time spent waiting.
+   */
+  public static void recordWait(String site, long nanos) {
+    sites.computeIfAbsent(site, Site::new).recordAwait(nanos);
+  }
+
+  /**
+   * Returns the statistics of the site that called into the lock.
+   */
+  static Site callSite(String lockName) {
+    String caller = walker.walk(frames -> {
+      StringBuilder key = new StringBuilder(lockName).append(": ");
+      int found = 0;
+      for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+        String className = frame.getClassName();
+        if (className.startsWith("metrics.") || className.startsWith("java.")) {
+          continue;
+        }
+        if (found++ > 0) {
+          key.append(" <- ");
+        }
+        key.append(className.substring(className.lastIndexOf('.') + 1)).append('.').append(frame.getMethodName());
+        if (found == 2) {
+          break;
+        }
+      }
+      return key.toString();
+    });
+    return sites.computeIfAbsent(caller, Site::new);
+  }
+
+  /**
+   * Formats the statistics of every site, the sites with the most waiting
+   * and holding time first.
+   *
+   * @return a multi-line report.
+   */
+  public static String report() {
+    List<Site> sorted = new ArrayList<>(sites.values());
+    sorted.sort((a, b) -> Long.compare(b.waitNanos.sum() + b.holdNanos.sum(), a.waitNanos.sum() + a.holdNanos.sum()));
+    StringBuilder out = new StringBuilder();
+    out.append("Lock contention report\n");
+    out.append(String.format("%-60s %10s %10s %10s %10s %10s %10s %8s %10s%n", "site", "acquired", "reentrant",
+        "contended", "wait ms", "maxwait us", "hold ms", "awaits", "await ms"));
+    for (Site site : sorted) {
+      out.append(String.format("%-60s %10d %10d %10d %10.1f %10.1f %10.1f %8d %10.1f%n", site.name,
+          site.acquisitions.sum(), site.reentrant.sum(), site.contended.sum(), site.waitNanos.sum() / 1e6,
+          site.maxWaitNanos.get() / 1e3, site.holdNanos.sum() / 1e6, site.awaits.sum(), site.awaitNanos.sum() / 1e6));
+    }
+    return out.toString();
+  }
+
+  /**
+   * Clears the statistics of every site.
+   */
+  public static void reset() {
+    sites.clear();
+  }
+
+  /**
+   * The statistics of one call site.
+   */
+  static final class Site {
+    private final String name;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder reentrant = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder holdNanos = new LongAdder();
+    private final LongAdder awaits = new LongAdder();
+    private final LongAdder awaitNanos = new LongAdder();
+
+    Site(String name) {
+      this.name = name;
+    }
+
+    void recordReentrant() {
+      acquisitions.increment();
+      reentrant.increment();
+    }
+
+    void recordAcquire(long waited, boolean wasContended) {
+      acquisitions.increment();
+      if (wasContended) {
+        contended.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulate(waited);
+      }
+    }
+
+    void recordHold(long held) {
+      holdNanos.add(held);
+    }
+
+    void recordAwait(long waited) {
+      awaits.increment();
+      awaitNanos.add(waited);
+    }
+  }
+}
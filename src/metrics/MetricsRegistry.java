@@ -0,0 +1,326 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics of a run: per transition, the firings, the rejected
+ * attempts (not enabled, or denied by the Policy), the time spent waiting for
+ * and holding the monitor, and a firing latency histogram; per segment, the
+ * runs and the busy and idle time; plus named gauges (e.g. the maximum
+ * concurrency measured by PoolManager).
+ *
+ * The monitors and segments update it without locks (LongAdder counters and
+ * striped histograms). It can be published as an MBean, to be watched live
+ * with jconsole, and print a periodic snapshot.
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+  // Name under which registerMBean publishes the registry.
+  public static final String OBJECT_NAME = "petrinet:type=Metrics";
+
+  private final TransitionMetrics[] transitions;
+  private final List<SegmentMetrics> segments = new CopyOnWriteArrayList<>();
+  private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+  private final long createdAt = System.nanoTime();
+
+  private ScheduledExecutorService snapshotExecutor;
+  private ObjectName registeredName;
+
+  /**
+   * Creates a registry for transitions 0 to transitionCount - 1.
+   *
+   * @param transitionCount the number of transitions of the net.
+   */
+  public MetricsRegistry(int transitionCount) {
+    transitions = new TransitionMetrics[transitionCount];
+    for (int t = 0; t < transitionCount; t++) {
+      transitions[t] = new TransitionMetrics(t);
+    }
+  }
+
+  /**
+   * Records a successful firing.
+   *
+   * @param transitionId the transition that fired.
+   * @param latencyNanos the time since fireTransition was called.
+   */
+  public void recordFired(int transitionId, long latencyNanos) {
+    if (transitionId >= 0 && transitionId < transitions.length) {
+      transitions[transitionId].recordFired(latencyNanos);
+    }
+  }
+
+  /**
+   * Records an attempt that did not fire.
+   *
+   * @param transitionId the transition.
+   * @param byPolicy     true if the Policy denied it, false if it was not
+   *                     enabled.
+   */
+  public void recordRejected(int transitionId, boolean byPolicy) {
+    if (transitionId >= 0 && transitionId < transitions.length) {
+      transitions[transitionId].recordRejected(byPolicy);
+    }
+  }
+
+  /**
+   * Records one acquisition of the lock(s) needed to fire a transition.
+   *
+   * @param transitionId the transition.
+   * @param waitNanos    the time spent acquiring the lock.
+   * @param holdNanos    the time the lock was held.
+   */
+  public void recordLock(int transitionId, long waitNanos, long holdNanos) {
+    if (transitionId >= 0 && transitionId < transitions.length) {
+      transitions[transitionId].recordLock(waitNanos, holdNanos);
+    }
+  }
+
+  public TransitionMetrics getTransition(int transitionId) {
+    return transitions[transitionId];
+  }
+
+  /**
+   * Adds a segment to the registry.
+   *
+   * @param segmentName the segment name.
+   * @return the counters the segment must update.
+   */
+  public SegmentMetrics registerSegment(String segmentName) {
+    SegmentMetrics metrics = new SegmentMetrics(segmentName);
+    segments.add(metrics);
+    return metrics;
+  }
+
+  /**
+   * Adds a value that is read whenever the metrics are reported.
+   *
+   * @param name     the gauge name.
+   * @param supplier supplies the current value.
+   */
+  public void registerGauge(String name, LongSupplier supplier) {
+    gauges.put(name, supplier);
+  }
+
+  /**
+   * Publishes this registry in the platform MBean server, under OBJECT_NAME.
+   *
+   * @throws JMException if it cannot be registered (e.g. a registry is
+   *                     already published).
+   */
+  public synchronized void registerMBean() throws JMException {
+    if (registeredName != null) {
+      return;
+    }
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    registeredName = name;
+  }
+
+  /**
+   * Prints a snapshot every period until close is called.
+   *
+   * @param periodMillis the time between snapshots.
+   * @param out          receives each snapshot (e.g. System.out::print).
+   */
+  public synchronized void startSnapshots(long periodMillis, Consumer<String> out) {
+    if (snapshotExecutor != null) {
+      return;
+    }
+    snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "MetricsSnapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    snapshotExecutor.scheduleAtFixedRate(() -> out.accept(snapshot()), periodMillis, periodMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the snapshots and removes the MBean, if any.
+   */
+  public synchronized void close() {
+    if (snapshotExecutor != null) {
+      snapshotExecutor.shutdownNow();
+      snapshotExecutor = null;
+    }
+    if (registeredName != null) {
+      try {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(registeredName)) {
+          server.unregisterMBean(registeredName);
+        }
+      } catch (JMException e) {
+        // Nothing left to clean up.
+      }
+      registeredName = null;
+    }
+  }
+
+  @Override
+  public int getTransitionCount() {
+    return transitions.length;
+  }
+
+  @Override
+  public long[] getFiredCounts() {
+    long[] values = new long[transitions.length];
+    for (int t = 0; t < values.length; t++) {
+      values[t] = transitions[t].getFiredCount();
+    }
+    return values;
+  }
+
+  @Override
+  public long[] getNotEnabledCounts() {
+    long[] values = new long[transitions.length];
+    for (int t = 0; t < values.length; t++) {
+      values[t] = transitions[t].getNotEnabledCount();
+    }
+    return values;
+  }
+
+  @Override
+  public long[] getDeniedCounts() {
+    long[] values = new long[transitions.length];
+    for (int t = 0; t < values.length; t++) {
+      values[t] = transitions[t].getDeniedCount();
+    }
+    return values;
+  }
+
+  @Override
+  public long[] getMeanWaitNanos() {
+    long[] values = new long[transitions.length];
+    for (int t = 0; t < values.length; t++) {
+      values[t] = mean(transitions[t].getWaitNanos(), transitions[t].getLockAcquisitions());
+    }
+    return values;
+  }
+
+  @Override
+  public long[] getMeanHoldNanos() {
+    long[] values = new long[transitions.length];
+    for (int t = 0; t < values.length; t++) {
+      values[t] = mean(transitions[t].getHoldNanos(), transitions[t].getLockAcquisitions());
+    }
+    return values;
+  }
+
+  @Override
+  public long[] getLatencyP50Nanos() {
+    return latencyPercentiles(50);
+  }
+
+  @Override
+  public long[] getLatencyP99Nanos() {
+    return latencyPercentiles(99);
+  }
+
+  @Override
+  public long[] getLatencyMaxNanos() {
+    return latencyPercentiles(100);
+  }
+
+  private long[] latencyPercentiles(double percentile) {
+    long[] values = new long[transitions.length];
+    for (int t = 0; t < values.length; t++) {
+      values[t] = transitions[t].getLatency().getValueAtPercentile(percentile);
+    }
+    return values;
+  }
+
+  private static long mean(long total, long count) {
+    return count == 0 ? 0 : total / count;
+  }
+
+  @Override
+  public String[] getSegmentNames() {
+    return segments.stream().map(SegmentMetrics::getSegmentName).toArray(String[]::new);
+  }
+
+  @Override
+  public long[] getSegmentRunCounts() {
+    return segments.stream().mapToLong(SegmentMetrics::getRunCount).toArray();
+  }
+
+  @Override
+  public long[] getSegmentBusyMillis() {
+    return segments.stream().mapToLong(s -> s.getBusyNanos() / 1_000_000L).toArray();
+  }
+
+  @Override
+  public long[] getSegmentIdleMillis() {
+    return segments.stream().mapToLong(s -> s.getIdleNanos() / 1_000_000L).toArray();
+  }
+
+  @Override
+  public String[] getGauges() {
+    return gauges.entrySet().stream()
+        .map(entry -> entry.getKey() + "=" + entry.getValue().getAsLong())
+        .toArray(String[]::new);
+  }
+
+  /**
+   * Formats the current values as a table, one line per transition and per
+   * segment. Times are in microseconds unless stated otherwise.
+   *
+   * @return a multi-line report.
+   */
+  @Override
+  public String snapshot() {
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("Metrics at %d ms%n", (System.nanoTime() - createdAt) / 1_000_000L));
+    out.append(String.format("%5s %9s %11s %9s %9s %9s %9s %9s %9s%n",
+        "", "fired", "notEnabled", "denied", "wait", "hold", "p50", "p99", "max"));
+    for (TransitionMetrics metrics : transitions) {
+      long[] counts = metrics.getLatency().getCounts();
+      long acquisitions = metrics.getLockAcquisitions();
+      out.append(String.format("%5s %9d %11d %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+          "T" + metrics.getTransitionId(), metrics.getFiredCount(), metrics.getNotEnabledCount(),
+          metrics.getDeniedCount(), micros(mean(metrics.getWaitNanos(), acquisitions)),
+          micros(mean(metrics.getHoldNanos(), acquisitions)),
+          micros(LatencyHistogram.valueAtPercentile(counts, 50)),
+          micros(LatencyHistogram.valueAtPercentile(counts, 99)),
+          micros(LatencyHistogram.valueAtPercentile(counts, 100))));
+    }
+    for (SegmentMetrics metrics : segments) {
+      out.append(String.format("%s: runs=%d busy=%d ms idle=%d ms%n", metrics.getSegmentName(),
+          metrics.getRunCount(), metrics.getBusyNanos() / 1_000_000L, metrics.getIdleNanos() / 1_000_000L));
+    }
+    String[] gaugeValues = getGauges();
+    if (gaugeValues.length > 0) {
+      out.append(String.join(" ", gaugeValues)).append(System.lineSeparator());
+    }
+    return out.toString();
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1_000.0;
+  }
+
+  /**
+   * Clears every counter and histogram (gauges are read live).
+   */
+  @Override
+  public void reset() {
+    for (TransitionMetrics metrics : transitions) {
+      metrics.reset();
+    }
+    for (SegmentMetrics metrics : segments) {
+      metrics.reset();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package metrics;
+
+/**
+ * JMX view of a MetricsRegistry (attributes are indexed by transition id or
+ * by segment registration order).
+ */
+public interface MetricsRegistryMBean {
+  int getTransitionCount();
+
+  long[] getFiredCounts();
+
+  long[] getNotEnabledCounts();
+
+  long[] getDeniedCounts();
+
+  long[] getMeanWaitNanos();
+
+  long[] getMeanHoldNanos();
+
+  long[] getLatencyP50Nanos();
+
+  long[] getLatencyP99Nanos();
+
+  long[] getLatencyMaxNanos();
+
+  String[] getSegmentNames();
+
+  long[] getSegmentRunCounts();
+
+  long[] getSegmentBusyMillis();
+
+  long[] getSegmentIdleMillis();
+
+  String[] getGauges();
+
+  String snapshot();
+
+  void reset();
+}
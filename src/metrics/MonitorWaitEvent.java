@@ -0,0 +1,67 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for the time a thread waited for the monitor: to acquire its
+ * lock, or parked on one of its conditions. Short waits are filtered by the
+ * threshold, which recordings can lower.
+ */
+@Name("petrinet.MonitorWait")
+@Label("Monitor Wait")
+@Category("Petri Net")
+@Description("A thread waited to acquire the monitor lock or on a monitor condition.")
+@Threshold("10 us")
+public class MonitorWaitEvent extends Event {
+  public static final String LOCK = "lock";
+  public static final String CONDITION = "condition";
+  private static final EventType TYPE = EventType.getEventType(MonitorWaitEvent.class);
+
+  @Label("Transition")
+  @Description("The transition being fired, or -1 for a segment thread.")
+  int transitionId;
+
+  @Label("Kind")
+  String kind;
+
+  /**
+   * Begins an event if a recording has this event type enabled, so that
+   * nothing is allocated otherwise.
+   *
+   * @return the begun event, or null if the event type is disabled.
+   */
+  public static MonitorWaitEvent start() {
+    if (!TYPE.isEnabled()) {
+      return null;
+    }
+    MonitorWaitEvent event = new MonitorWaitEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Ends the event and commits it if recording is on and it lasted longer
+   * than the threshold. Does nothing for a null event.
+   *
+   * @param event        the event returned by start, or null.
+   * @param transitionId the transition being fired, or -1.
+   * @param kind         LOCK or CONDITION.
+   */
+  public static void emit(MonitorWaitEvent event, int transitionId, String kind) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.transitionId = transitionId;
+      event.kind = kind;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package metrics;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ReentrantLock that reports its acquisitions, wait and hold times to
+ * LockProfiler, per call site. The hold time is attributed to the site of
+ * the outermost acquisition and excludes the time spent in Condition.await
+ * (which releases the lock). Only lock and unlock are profiled; tryLock and
+ * lockInterruptibly behave as in ReentrantLock.
+ */
+public class ProfiledLock extends ReentrantLock {
+  private static final long serialVersionUID = 1L;
+
+  private final String name;
+  // Site and time of the outermost acquisition. Only written and read by
+  // the thread holding the lock.
+  private LockProfiler.Site holderSite;
+  private long acquiredAt;
+
+  public ProfiledLock(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public void lock() {
+    LockProfiler.Site site = LockProfiler.callSite(name);
+    if (isHeldByCurrentThread()) {
+      super.lock();
+      site.recordReentrant();
+      return;
+    }
+    long start = System.nanoTime();
+    boolean contended = !super.tryLock();
+    if (contended) {
+      super.lock();
+    }
+    long now = System.nanoTime();
+    site.recordAcquire(now - start, contended);
+    holderSite = site;
+    acquiredAt = now;
+  }
+
+  @Override
+  public void unlock() {
+    if (getHoldCount() == 1 && holderSite != null) {
+      holderSite.recordHold(System.nanoTime() - acquiredAt);
+      holderSite = null;
+    }
+    super.unlock();
+  }
+
+  @Override
+  public Condition newCondition() {
+    return new ProfiledCondition(super.newCondition());
+  }
+
+  /**
+   * A condition of a ProfiledLock. Awaiting ends the current hold period and
+   * starts a new one once the lock is re-acquired.
+   */
+  private final class ProfiledCondition implements Condition {
+    private final Condition condition;
+
+    ProfiledCondition(Condition condition) {
+      this.condition = condition;
+    }
+
+    private long beforeAwait() {
+      if (holderSite != null) {
+        holderSite.recordHold(System.nanoTime() - acquiredAt);
+      }
+      return System.nanoTime();
+    }
+
+    private void afterAwait(LockProfiler.Site outer, LockProfiler.Site site, long start) {
+      long now = System.nanoTime();
+      site.recordAwait(now - start);
+      holderSite = outer;
+      acquiredAt = now;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+      LockProfiler.Site site = LockProfiler.callSite(name);
+      LockProfiler.Site outer = holderSite;
+      long start = beforeAwait();
+      try {
+        condition.await();
+      } finally {
+        afterAwait(outer, site, start);
+      }
+    }
+
+    @Override
+    public void awaitUninterruptibly() {
+      LockProfiler.Site site = LockProfiler.callSite(name);
+      LockProfiler.Site outer = holderSite;
+      long start = beforeAwait();
+      try {
+        condition.awaitUninterruptibly();
+      } finally {
+        afterAwait(outer, site, start);
+      }
+    }
+
+    @Override
+    public long awaitNanos(long nanosTimeout) throws InterruptedException {
+      LockProfiler.Site site = LockProfiler.callSite(name);
+      LockProfiler.Site outer = holderSite;
+      long start = beforeAwait();
+      try {
+        return condition.awaitNanos(nanosTimeout);
+      } finally {
+        afterAwait(outer, site, start);
+      }
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+      return awaitNanos(unit.toNanos(time)) > 0;
+    }
+
+    @Override
+    public boolean awaitUntil(Date deadline) throws InterruptedException {
+      LockProfiler.Site site = LockProfiler.callSite(name);
+      LockProfiler.Site outer = holderSite;
+      long start = beforeAwait();
+      try {
+        return condition.awaitUntil(deadline);
+      } finally {
+        afterAwait(outer, site, start);
+      }
+    }
+
+    @Override
+    public void signal() {
+      condition.signal();
+    }
+
+    @Override
+    public void signalAll() {
+      condition.signalAll();
+    }
+  }
+}
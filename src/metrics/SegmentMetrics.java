@@ -0,0 +1,64 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one segment: how many times it ran, and how long it spent
+ * running and idle (between the end of a run and the start of the next).
+ * A segment never runs twice at the same time, so the timestamps of the last
+ * run are written by one thread at a time.
+ */
+public class SegmentMetrics {
+  private final String segmentName;
+  private final LongAdder runs = new LongAdder();
+  private final LongAdder busyNanos = new LongAdder();
+  private final LongAdder idleNanos = new LongAdder();
+  // End of the last run, or creation time before the first run.
+  private volatile long lastEnd = System.nanoTime();
+
+  SegmentMetrics(String segmentName) {
+    this.segmentName = segmentName;
+  }
+
+  /**
+   * Records one run of the segment.
+   *
+   * @param start the System.nanoTime at which the run started.
+   * @param end   the System.nanoTime at which the run ended.
+   */
+  public void recordRun(long start, long end) {
+    runs.increment();
+    idleNanos.add(Math.max(0, start - lastEnd));
+    busyNanos.add(end - start);
+    lastEnd = end;
+  }
+
+  public String getSegmentName() {
+    return segmentName;
+  }
+
+  public long getRunCount() {
+    return runs.sum();
+  }
+
+  public long getBusyNanos() {
+    return busyNanos.sum();
+  }
+
+  /**
+   * Returns the time the segment spent waiting before its runs (the current
+   * idle period is not included until the next run starts).
+   *
+   * @return the idle time, in nanoseconds.
+   */
+  public long getIdleNanos() {
+    return idleNanos.sum();
+  }
+
+  void reset() {
+    runs.reset();
+    busyNanos.reset();
+    idleNanos.reset();
+    lastEnd = System.nanoTime();
+  }
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a segment handed to the pool by the Scheduler.
+ */
+@Name("petrinet.SegmentScheduled")
+@Label("Segment Scheduled")
+@Category("Petri Net")
+@Description("A ready segment was submitted to the thread pool.")
+@StackTrace(false)
+public class SegmentScheduledEvent extends Event {
+  private static final EventType TYPE = EventType.getEventType(SegmentScheduledEvent.class);
+
+  @Label("Segment")
+  String segment;
+
+  @Label("Forked")
+  @Description("Submitted directly to the deque of the current pool worker instead of via the scheduler thread.")
+  boolean forked;
+
+  /**
+   * Commits the event if recording is on.
+   *
+   * @param segment the segment name.
+   * @param forked  whether it was forked on the current worker.
+   */
+  public static void emit(String segment, boolean forked) {
+    if (!TYPE.isEnabled()) {
+      return;
+    }
+    SegmentScheduledEvent event = new SegmentScheduledEvent();
+    if (event.shouldCommit()) {
+      event.segment = segment;
+      event.forked = forked;
+      event.commit();
+    }
+  }
+}
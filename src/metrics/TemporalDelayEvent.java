@@ -0,0 +1,65 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event spanning the sleep of a temporal transition until its firing
+ * window opens.
+ */
+@Name("petrinet.TemporalDelay")
+@Label("Temporal Delay")
+@Category("Petri Net")
+@Description("A thread slept until the firing window of a temporal transition opened.")
+@StackTrace(false)
+public class TemporalDelayEvent extends Event {
+  private static final EventType TYPE = EventType.getEventType(TemporalDelayEvent.class);
+
+  @Label("Transition")
+  int transitionId;
+
+  @Label("Requested")
+  @Timespan(Timespan.NANOSECONDS)
+  long requestedNanos;
+
+  /**
+   * Begins an event if a recording has this event type enabled, so that
+   * nothing is allocated otherwise.
+   *
+   * @return the begun event, or null if the event type is disabled.
+   */
+  public static TemporalDelayEvent start() {
+    if (!TYPE.isEnabled()) {
+      return null;
+    }
+    TemporalDelayEvent event = new TemporalDelayEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Ends the event and commits it if recording is on. Does nothing for a
+   * null event.
+   *
+   * @param event          the event returned by start, or null.
+   * @param transitionId   the temporal transition.
+   * @param requestedNanos the time the thread asked to sleep.
+   */
+  public static void emit(TemporalDelayEvent event, int transitionId, long requestedNanos) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.transitionId = transitionId;
+      event.requestedNanos = requestedNanos;
+      event.commit();
+    }
+  }
+}
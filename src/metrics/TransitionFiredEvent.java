@@ -0,0 +1,63 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning a successful fireTransition call, from the call until
+ * the marking was updated (lock waits and temporal delays included).
+ */
+@Name("petrinet.TransitionFired")
+@Label("Transition Fired")
+@Category("Petri Net")
+@Description("A transition fired; the duration covers the whole fireTransition call.")
+@StackTrace(false)
+public class TransitionFiredEvent extends Event {
+  private static final EventType TYPE = EventType.getEventType(TransitionFiredEvent.class);
+
+  @Label("Transition")
+  int transitionId;
+
+  @Label("Segment")
+  String segment;
+
+  /**
+   * Begins an event if a recording has this event type enabled, so that
+   * nothing is allocated otherwise.
+   *
+   * @return the begun event, or null if the event type is disabled.
+   */
+  public static TransitionFiredEvent start() {
+    if (!TYPE.isEnabled()) {
+      return null;
+    }
+    TransitionFiredEvent event = new TransitionFiredEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Ends the event and commits it if recording is on. Does nothing for a
+   * null event.
+   *
+   * @param event        the event returned by start, or null.
+   * @param transitionId the transition that fired.
+   * @param segment      the segment holding the transition, or null.
+   */
+  public static void emit(TransitionFiredEvent event, int transitionId, String segment) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.transitionId = transitionId;
+      event.segment = segment;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one transition. Every counter is a LongAdder, so threads
+ * firing the same transition update separate cells.
+ */
+public class TransitionMetrics {
+  private final int transitionId;
+  private final LongAdder fired = new LongAdder();
+  // Attempts rejected because the transition was not enabled (tokens missing,
+  // firing window missed, simulation finished).
+  private final LongAdder notEnabled = new LongAdder();
+  // Attempts rejected by the Policy.
+  private final LongAdder denied = new LongAdder();
+  // Time spent acquiring the monitor (or place) locks, and holding them.
+  private final LongAdder lockAcquisitions = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder holdNanos = new LongAdder();
+  // Time from the call to fireTransition until the firing completed.
+  private final LatencyHistogram latency = new LatencyHistogram();
+
+  TransitionMetrics(int transitionId) {
+    this.transitionId = transitionId;
+  }
+
+  void recordFired(long latencyNanos) {
+    fired.increment();
+    latency.record(latencyNanos);
+  }
+
+  void recordRejected(boolean byPolicy) {
+    (byPolicy ? denied : notEnabled).increment();
+  }
+
+  void recordLock(long waitNanos, long holdNanos) {
+    lockAcquisitions.increment();
+    this.waitNanos.add(waitNanos);
+    this.holdNanos.add(holdNanos);
+  }
+
+  public int getTransitionId() {
+    return transitionId;
+  }
+
+  public long getFiredCount() {
+    return fired.sum();
+  }
+
+  public long getNotEnabledCount() {
+    return notEnabled.sum();
+  }
+
+  public long getDeniedCount() {
+    return denied.sum();
+  }
+
+  public long getLockAcquisitions() {
+    return lockAcquisitions.sum();
+  }
+
+  public long getWaitNanos() {
+    return waitNanos.sum();
+  }
+
+  public long getHoldNanos() {
+    return holdNanos.sum();
+  }
+
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  void reset() {
+    fired.reset();
+    notEnabled.reset();
+    denied.reset();
+    lockAcquisitions.reset();
+    waitNanos.reset();
+    holdNanos.reset();
+    latency.reset();
+  }
+}
@@ -0,0 +1,48 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a firing attempt that did not fire.
+ */
+@Name("petrinet.TransitionRejected")
+@Label("Transition Rejected")
+@Category("Petri Net")
+@Description("A firing attempt failed because the transition was not enabled or the policy denied it.")
+@StackTrace(false)
+public class TransitionRejectedEvent extends Event {
+  public static final String NOT_ENABLED = "not enabled";
+  public static final String DENIED = "denied by policy";
+  private static final EventType TYPE = EventType.getEventType(TransitionRejectedEvent.class);
+
+  @Label("Transition")
+  int transitionId;
+
+  @Label("Reason")
+  String reason;
+
+  /**
+   * Commits a rejection if recording is on.
+   *
+   * @param transitionId the transition.
+   * @param byPolicy     true if the policy denied it, false if it was not
+   *                     enabled.
+   */
+  public static void emit(int transitionId, boolean byPolicy) {
+    if (!TYPE.isEnabled()) {
+      return;
+    }
+    TransitionRejectedEvent event = new TransitionRejectedEvent();
+    if (event.shouldCommit()) {
+      event.transitionId = transitionId;
+      event.reason = byPolicy ? DENIED : NOT_ENABLED;
+      event.commit();
+    }
+  }
+}
@@ -1,7 +1,8 @@
 
 package monitor;
 
-import petrinet.Places;
+import java.util.concurrent.atomic.AtomicInteger;
+import petrinet.IncidenceMatrix;
 
 /**
  * Implements a balanced policy:
@@ -13,14 +14,35 @@ import petrinet.Places;
  */
 public class BalancedPolicy implements Policy {
   // Internal counters for analysis (you could also retrieve these from the Places
-  // if modeled there)
-  private int superiorCount = 0;
-  private int inferiorCount = 0;
-  private int confirmedCount = 0;
-  private int cancelledCount = 0;
+  // if modeled there). Atomic so that lock-free monitors can update them.
+  private final AtomicInteger superiorCount = new AtomicInteger();
+  private final AtomicInteger inferiorCount = new AtomicInteger();
+  private final AtomicInteger confirmedCount = new AtomicInteger();
+  private final AtomicInteger cancelledCount = new AtomicInteger();
 
   @Override
-  public boolean allowTransition(int transitionId, Places places) {
+  public boolean allowTransition(int transitionId) {
+    return allows(transitionId, superiorCount.get(), inferiorCount.get(), confirmedCount.get(),
+        cancelledCount.get());
+  }
+
+  /**
+   * Picks the allowed transition of the conflict set from one read of the
+   * counters. On a tie (equal counters) both T2 and T3 are allowed, and the
+   * lowest id (T2, or T6 for T6/T7) is chosen.
+   */
+  @Override
+  public int selectTransition(long[] enabled, long[] conflictSet) {
+    int superiorCount = this.superiorCount.get();
+    int inferiorCount = this.inferiorCount.get();
+    int confirmedCount = this.confirmedCount.get();
+    int cancelledCount = this.cancelledCount.get();
+    return IncidenceMatrix.firstMatch(enabled, conflictSet,
+        transitionId -> allows(transitionId, superiorCount, inferiorCount, confirmedCount, cancelledCount));
+  }
+
+  private static boolean allows(int transitionId, int superiorCount, int inferiorCount, int confirmedCount,
+      int cancelledCount) {
     // Transition 2: Superior reservations (associated with place P6)
     // Transition 3: Inferior reservations (associated with place P7)
     // Transition 6: Confirmation
@@ -39,31 +61,31 @@ public class BalancedPolicy implements Policy {
   }
 
   @Override
-  public void updateCounters(int transitionId, Places places) {
+  public void updateCounters(int transitionId) {
     if (transitionId == 2) {
-      superiorCount++;
+      superiorCount.incrementAndGet();
     } else if (transitionId == 3) {
-      inferiorCount++;
+      inferiorCount.incrementAndGet();
     } else if (transitionId == 6) {
-      confirmedCount++;
+      confirmedCount.incrementAndGet();
     } else if (transitionId == 7) {
-      cancelledCount++;
+      cancelledCount.incrementAndGet();
     }
   }
 
   public int getSuperiorCount() {
-    return superiorCount;
+    return superiorCount.get();
   }
 
   public int getInferiorCount() {
-    return inferiorCount;
+    return inferiorCount.get();
   }
 
   public int getConfirmedCount() {
-    return confirmedCount;
+    return confirmedCount.get();
   }
 
   public int getCancelledCount() {
-    return cancelledCount;
+    return cancelledCount.get();
   }
 }
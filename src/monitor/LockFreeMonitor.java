@@ -0,0 +1,498 @@
+package monitor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import metrics.MetricsRegistry;
+import metrics.TransitionRejectedEvent;
+import petrinet.IncidenceMatrix;
+import petrinet.Places;
+import petrinet.Segment;
+import petrinet.Transition;
+import pool.PoolManager;
+import utils.Logger;
+import utils.TraceRecorder;
+
+/**
+ * A MonitorInterface implementation that fires transitions without locks.
+ *
+ * The whole marking is packed into a single AtomicLong, with a fixed-width
+ * bitfield per place. Each field has one extra guard bit on top, so that the
+ * enabling test of a transition is a single subtraction over the whole word:
+ * ((M | G) - Pre) & G == G holds iff every field of M is at least the field of
+ * Pre. Firing is a compare-and-set of M to M - Pre + Post.
+ *
+ * The bits above the place fields hold a pending bit and a wrapping sequence
+ * number. A firing whose decision depends on more than the marking (the
+ * policy of a conflict set, the T0 limit, a temporal window) or that must
+ * update state outside the word (policy counters, T0 counter, sensitization
+ * times, the trace) only proceeds while no other such firing is pending. Its
+ * compare-and-set also sets the pending bit and bumps the sequence, so the
+ * decision is atomic with the firing: any bookkeeping done in the meantime
+ * makes the compare-and-set fail and the decision is taken again. The pending
+ * bit is cleared once the bookkeeping is done. Other firings never wait.
+ *
+ * This only fits small bounded nets (such as the one built by PetriNet).
+ * Metrics are limited to firings and rejections: there is no lock to profile.
+ */
+public class LockFreeMonitor implements MonitorInterface {
+  private static final Logger logger = Logger.getInstance();
+
+  private final Map<Integer, Transition> transitions;
+  private final IncidenceMatrix matrix;
+  private final Policy policy;
+
+  // The packed marking, pending bit and sequence number.
+  private final AtomicLong marking;
+  // Bits per place, including the guard bit.
+  private final int fieldWidth;
+  // Guard bits of all fields.
+  private final long guardBits;
+  // Set while a firing does its bookkeeping.
+  private final long pendingBit;
+  // Lowest bit of the sequence number, or 0 if there is no room for it.
+  private final long sequenceUnit;
+  // Packed pre and post vectors of each transition, indexed by transition id.
+  private final long[] pre;
+  private final long[] post;
+  private final boolean[] known;
+  // For each transition, the temporal transitions whose enabling it may change.
+  private final int[][] temporalAffected;
+  // Transitions sharing an input place with another transition, and their
+  // conflict set (as an id list and as a bitmask).
+  private final boolean[] conflicting;
+  private final int[][] conflictMembers;
+  private final long[][] conflictSets;
+  // When each transition was last sensitized, written during bookkeeping.
+  private final AtomicLongArray sensitizedAt;
+  // The sensitization at which each temporal transition missed its beta
+  // bound: it is not sensitized again until it is re-enabled.
+  private final AtomicLongArray missedAt;
+
+  // Number of T0 firings, written during bookkeeping.
+  private volatile int t0Counter = 0;
+  // Number of T0 firings after which T0 is disabled.
+  private final int t0Limit;
+  private final Object invariantLock = new Object();
+  // Number of firings of each transition.
+  private final AtomicLongArray firingCounts;
+
+  private volatile SegmentDispatcher dispatcher;
+  private volatile TraceRecorder traceRecorder;
+  private volatile MetricsRegistry metrics;
+
+  /**
+   * Builds a lock-free monitor sized after the largest initial marking of a
+   * place.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the active Policy object to enforce rules.
+   */
+  public LockFreeMonitor(Places places, Map<Integer, Transition> transitions, Policy policy) {
+    this(places, transitions, policy, Monitor.DEFAULT_T0_LIMIT);
+  }
+
+  /**
+   * Builds a lock-free monitor sized after the largest initial marking of a
+   * place, that finishes after the given number of T0 firings.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the active Policy object to enforce rules.
+   * @param t0Limit     the number of T0 firings after which T0 is disabled.
+   */
+  public LockFreeMonitor(Places places, Map<Integer, Transition> transitions, Policy policy, int t0Limit) {
+    this(places, transitions, policy, t0Limit, maxInitialTokens(places));
+  }
+
+  /**
+   * Builds a lock-free monitor.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the active Policy object to enforce rules.
+   * @param t0Limit     the number of T0 firings after which T0 is disabled.
+   * @param maxTokens   the maximum number of tokens any place may hold.
+   * @throws IllegalArgumentException if the marking and the pending bit do
+   *         not fit in 64 bits.
+   */
+  public LockFreeMonitor(Places places, Map<Integer, Transition> transitions, Policy policy, int t0Limit,
+      int maxTokens) {
+    this.transitions = transitions;
+    this.policy = policy;
+    this.t0Limit = t0Limit;
+
+    int placeCount = places.getPlaceCount();
+    int width = 33 - Integer.numberOfLeadingZeros(Math.max(maxTokens, 1));
+    int used = placeCount * width;
+    if (used >= 64) {
+      throw new IllegalArgumentException("A marking of " + placeCount + " places with up to " + maxTokens
+          + " tokens does not fit in a single long with a pending bit.");
+    }
+    this.fieldWidth = width;
+    this.pendingBit = 1L << used;
+    this.sequenceUnit = used < 63 ? 1L << (used + 1) : 0;
+
+    long guards = 0;
+    long initial = 0;
+    for (int p = 0; p < placeCount; p++) {
+      guards |= 1L << (p * width + width - 1);
+      initial += field(p, places.getTokenCount(p));
+    }
+    this.guardBits = guards;
+    if ((initial & guards) != 0) {
+      throw new IllegalArgumentException("Initial marking exceeds " + maxTokens + " tokens per place.");
+    }
+    this.marking = new AtomicLong(initial);
+    // From now on the marking only changes here.
+    places.seal();
+
+    matrix = new IncidenceMatrix(placeCount, transitions);
+    int size = matrix.getTransitionCount();
+    pre = new long[size];
+    post = new long[size];
+    known = new boolean[size];
+    firingCounts = new AtomicLongArray(size);
+    for (Transition transition : transitions.values()) {
+      int t = transition.getId();
+      known[t] = true;
+      pre[t] = pack(transition.getPrePlaces(), transition.getPreWeights());
+      post[t] = pack(transition.getPostPlaces(), transition.getPostWeights());
+    }
+
+    temporalAffected = new int[size][];
+    conflicting = new boolean[size];
+    conflictMembers = new int[size][];
+    conflictSets = new long[size][];
+    for (int t = 0; t < size; t++) {
+      temporalAffected[t] = Arrays.stream(matrix.getAffected(t)).filter(this::isTemporal).toArray();
+      conflictSets[t] = matrix.getConflictSet(t);
+      conflictMembers[t] = members(conflictSets[t]);
+      conflicting[t] = conflictMembers[t].length > 1;
+    }
+    sensitizedAt = new AtomicLongArray(size);
+    long now = System.nanoTime();
+    missedAt = new AtomicLongArray(size);
+    for (int t = 0; t < size; t++) {
+      sensitizedAt.set(t, now);
+      missedAt.set(t, Long.MIN_VALUE);
+    }
+    logger.info("Lock-free monitor created with policy: " + policy.getClass().getSimpleName()
+        + " (" + width + " bits per place)");
+  }
+
+  private static int maxInitialTokens(Places places) {
+    int max = 0;
+    for (int p = 0; p < places.getPlaceCount(); p++) {
+      max = Math.max(max, places.getTokenCount(p));
+    }
+    return max;
+  }
+
+  private static int[] members(long[] set) {
+    int[] ids = new int[Arrays.stream(set).mapToInt(Long::bitCount).sum()];
+    int i = 0;
+    for (int w = 0; w < set.length; w++) {
+      for (long bits = set[w]; bits != 0; bits &= bits - 1) {
+        ids[i++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    return ids;
+  }
+
+  private boolean isTemporal(int transitionId) {
+    Transition transition = transitions.get(transitionId);
+    return transition != null && transition.isTemporal();
+  }
+
+  private long field(int placeId, long tokens) {
+    return tokens << (placeId * fieldWidth);
+  }
+
+  private long pack(int[] placeIds, int[] weights) {
+    long packed = 0;
+    for (int i = 0; i < placeIds.length; i++) {
+      packed += field(placeIds[i], weights[i]);
+    }
+    if ((packed & guardBits) != 0) {
+      throw new IllegalArgumentException("Arc weight does not fit in the bitfield of a place.");
+    }
+    return packed;
+  }
+
+  private boolean isEnabled(long m, int transitionId) {
+    return (((m | guardBits) - pre[transitionId]) & guardBits) == guardBits;
+  }
+
+  // Results of evaluate other than a positive waiting time, as in the Monitor.
+  private static final long READY = 0;
+  private static final long NOT_ENABLED = -1;
+  private static final long DENIED = -2;
+
+  /**
+   * Attempts to fire the specified transition with a compare-and-set on the
+   * packed marking. The enabling test, policy decision, T0 limit and firing
+   * window are evaluated again on every retry, against the word being
+   * replaced. A temporal transition whose window has not opened yet sleeps
+   * until it opens and tries again.
+   *
+   * @param transitionId the identifier of the transition to fire.
+   * @return true if the transition was successfully fired; false otherwise.
+   */
+  @Override
+  public boolean fireTransition(int transitionId) {
+    if (transitionId < 0 || transitionId >= known.length || !known[transitionId]) {
+      logger.error("Transition {} not found.", transitionId);
+      return false;
+    }
+    MetricsRegistry metrics = this.metrics;
+    long start = metrics != null ? System.nanoTime() : 0;
+    while (true) {
+      long current = marking.get();
+      if (!isEnabled(current, transitionId)) {
+        return reject(metrics, transitionId, NOT_ENABLED);
+      }
+      long next = current - pre[transitionId] + post[transitionId];
+      if ((next & guardBits) != 0) {
+        logger.error("Transition {} would exceed the capacity of a place.", transitionId);
+        return reject(metrics, transitionId, NOT_ENABLED);
+      }
+      boolean bookkeeping = needsBookkeeping(transitionId, current, next);
+      if (bookkeeping) {
+        if ((current & pendingBit) != 0) {
+          // Another firing is updating the state the decision depends on.
+          Thread.onSpinWait();
+          continue;
+        }
+        long status = evaluate(transitionId, current);
+        if (status < 0) {
+          return reject(metrics, transitionId, status);
+        }
+        if (status > 0) {
+          try {
+            Thread.sleep(status / 1_000_000L, (int) (status % 1_000_000L));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Transition {} firing was interrupted.", transitionId);
+            return false;
+          }
+          continue;
+        }
+        if (!marking.compareAndSet(current, next + pendingBit + sequenceUnit)) {
+          continue;
+        }
+        doBookkeeping(transitionId, current, next);
+      } else if (!marking.compareAndSet(current, next)) {
+        continue;
+      }
+      break;
+    }
+
+    firingCounts.incrementAndGet(transitionId);
+    if (metrics != null) {
+      metrics.recordFired(transitionId, System.nanoTime() - start);
+    }
+    if (transitionId == 0 && t0Counter >= t0Limit) {
+      synchronized (invariantLock) {
+        invariantLock.notifyAll();
+      }
+    }
+    SegmentDispatcher segments = dispatcher;
+    if (segments != null) {
+      segments.notifySegments(transitionId);
+    }
+    return true;
+  }
+
+  private boolean reject(MetricsRegistry metrics, int transitionId, long status) {
+    if (metrics != null) {
+      metrics.recordRejected(transitionId, status == DENIED);
+    }
+    TransitionRejectedEvent.emit(transitionId, status == DENIED);
+    return false;
+  }
+
+  /**
+   * Checks whether firing from current to next needs the pending bit: the
+   * decision reads state outside the word, or the firing writes some.
+   */
+  private boolean needsBookkeeping(int transitionId, long current, long next) {
+    if (conflicting[transitionId] || transitionId == 0 || isTemporal(transitionId) || traceRecorder != null) {
+      return true;
+    }
+    for (int u : temporalAffected[transitionId]) {
+      if (!isEnabled(current, u) && isEnabled(next, u)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks the policy, T0 limit and firing window of an enabled transition
+   * against the given word, which must have the pending bit clear.
+   *
+   * @return READY, NOT_ENABLED, DENIED, or the nanoseconds left before the
+   *         firing window of the (temporal) transition opens.
+   */
+  private long evaluate(int transitionId, long current) {
+    if (transitionId == 0 && t0Counter >= t0Limit) {
+      return NOT_ENABLED;
+    }
+    if (conflicting[transitionId] && !isSelected(transitionId, current)) {
+      return DENIED;
+    }
+    Transition transition = transitions.get(transitionId);
+    if (transition.isTemporal()) {
+      long sensitized = sensitizedAt.get(transitionId);
+      if (missedAt.get(transitionId) == sensitized) {
+        return NOT_ENABLED;
+      }
+      long elapsed = System.nanoTime() - sensitized;
+      long alpha = transition.getDelay() * 1_000_000L;
+      if (elapsed < alpha) {
+        return alpha - elapsed;
+      }
+      if (transition.getMaxDelay() != Long.MAX_VALUE && elapsed > transition.getMaxDelay() * 1_000_000L) {
+        // Logged once per sensitization, even if several threads see it.
+        if (missedAt.getAndSet(transitionId, sensitized) != sensitized) {
+          logger.warn("Transition {} missed its firing window.", transitionId);
+        }
+        return NOT_ENABLED;
+      }
+    }
+    return READY;
+  }
+
+  /**
+   * Checks whether a transition missed its window since it was last
+   * sensitized.
+   */
+  private boolean isMissed(int transitionId) {
+    return missedAt.get(transitionId) == sensitizedAt.get(transitionId);
+  }
+
+  /**
+   * Checks whether the policy selects this transition among the transitions
+   * of its conflict set enabled in the given word.
+   */
+  private boolean isSelected(int transitionId, long m) {
+    long[] enabled = new long[conflictSets[transitionId].length];
+    for (int u : conflictMembers[transitionId]) {
+      if (isEnabled(m, u) && !isMissed(u)) {
+        enabled[u >>> 6] |= 1L << u;
+      }
+    }
+    return policy.selectTransition(enabled, conflictSets[transitionId]) == transitionId;
+  }
+
+  /**
+   * Updates the state outside the word after a firing that set the pending
+   * bit, then clears it.
+   */
+  private void doBookkeeping(int transitionId, long current, long next) {
+    try {
+      if (conflicting[transitionId]) {
+        policy.updateCounters(transitionId);
+      }
+      if (transitionId == 0) {
+        t0Counter++;
+      }
+      long now = System.nanoTime();
+      for (int u : temporalAffected[transitionId]) {
+        // The fired transition itself counts as newly sensitized.
+        if ((!isEnabled(current, u) || u == transitionId) && isEnabled(next, u)) {
+          sensitizedAt.set(u, now);
+        }
+      }
+      TraceRecorder recorder = traceRecorder;
+      if (recorder != null) {
+        recorder.record(transitionId);
+      }
+    } finally {
+      marking.getAndAdd(-pendingBit);
+    }
+  }
+
+  @Override
+  public boolean isEnabled(int transitionId) {
+    return transitionId >= 0 && transitionId < known.length && known[transitionId]
+        && isEnabled(marking.get(), transitionId);
+  }
+
+  @Override
+  public boolean isReady(long[] mask) {
+    long m = marking.get();
+    return IncidenceMatrix.firstMatch(mask, mask,
+        transitionId -> transitionId < known.length && known[transitionId] && isEnabled(m, transitionId)
+            && !isMissed(transitionId)
+            && !(transitionId == 0 && t0Counter >= t0Limit)
+            && (!conflicting[transitionId] || isSelected(transitionId, m))) >= 0;
+  }
+
+  @Override
+  public int getTokenCount(int placeId) {
+    long mask = (1L << (fieldWidth - 1)) - 1;
+    return (int) ((marking.get() >>> (placeId * fieldWidth)) & mask);
+  }
+
+  /**
+   * Returns how many times T0 has fired (a firing counts once its
+   * compare-and-set succeeded).
+   *
+   * @return the T0 firing counter.
+   */
+  @Override
+  public int getT0Counter() {
+    return t0Counter;
+  }
+
+  @Override
+  public int getT0Limit() {
+    return t0Limit;
+  }
+
+  @Override
+  public Object getInvariantLock() {
+    return invariantLock;
+  }
+
+  @Override
+  public long getFiringCount(int transitionId) {
+    return firingCounts.get(transitionId);
+  }
+
+  @Override
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  @Override
+  public void setTraceRecorder(TraceRecorder traceRecorder) {
+    this.traceRecorder = traceRecorder;
+  }
+
+  @Override
+  public void setMetrics(MetricsRegistry metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void startScheduler(List<Segment> segments, PoolManager poolManager) {
+    SegmentDispatcher segmentDispatcher = new SegmentDispatcher(matrix, segments);
+    dispatcher = segmentDispatcher;
+    segmentDispatcher.start(poolManager);
+  }
+
+  @Override
+  public void stopScheduler() {
+    SegmentDispatcher segments = dispatcher;
+    if (segments != null) {
+      segments.stop();
+    }
+  }
+}
@@ -1,11 +1,24 @@
 package monitor;
 
+import analysis.NetInvariants;
+import analysis.PInvariantChecker;
+import petrinet.IncidenceMatrix;
 import petrinet.Places;
 import petrinet.Transition;
 import utils.Logger;
+import utils.TraceRecorder;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import metrics.MetricsRegistry;
+import metrics.MonitorWaitEvent;
+import metrics.TemporalDelayEvent;
+import metrics.TransitionFiredEvent;
+import metrics.TransitionRejectedEvent;
 import pool.PoolManager;
+import pool.PoolMode;
 import petrinet.Segment;
 
 /**
@@ -13,27 +26,77 @@ import petrinet.Segment;
  * It checks that transitions are enabled, consults the active Policy,
  * fires the transition, and updates counters.
  * 
- * Additionally, the Monitor now manages the Scheduler thread.
+ * Threads that want to block until a transition can fire park on a
+ * condition queue of their own transition; after each firing at most one of
+ * them is woken up (a waiter whose transition became fireable). Segments that
+ * became ready are handed to the SegmentDispatcher, which runs them on the
+ * Scheduler or, in the THREAD_PER_SEGMENT pool mode, wakes up their threads.
  */
 public class Monitor implements MonitorInterface {
 
   private final Places places;
   // A map of transition id to Transition object.
   private final Map<Integer, Transition> transitions;
+  // Compiled pre/post incidence matrices used on the firing path.
+  private final IncidenceMatrix matrix;
+  // Enabled set, one bit per transition id. Guarded by the monitor lock and
+  // updated incrementally by each firing.
+  private final long[] enabled;
+  // The monitor lock. It is the same lock Places uses, so firing, the enabled
+  // set and the condition queues below are all guarded by one lock.
+  private final ReentrantLock lock;
+  // One condition queue per transition, for threads in fireTransitionBlocking.
+  private final Condition[] queues;
+  // Number of threads parked on each queue, and the set of non-empty queues.
+  private final int[] waiters;
+  private final long[] waiting;
+  // Number of threads on each queue that are already in a timed wait for the
+  // firing window of a temporal transition.
+  private final int[] timedWaiters;
+  // Sensitization timestamp (System.nanoTime) of each transition, used to open
+  // the [alpha, beta] window of temporal transitions. Guarded like enabled.
+  private final long[] sensitizedAt;
+  // Temporal transitions that stayed enabled past their beta bound, with the
+  // sensitization each miss was recorded for: such a transition is not
+  // sensitized again until it is re-enabled. Guarded like enabled.
+  private final long[] missed;
+  private final long[] missedAt;
+  private int missedCount = 0;
+  // Scratch copy of the enabled set without the missed transitions.
+  private final long[] sensitized;
   // The active policy (could be BalancedPolicy or PriorityPolicy).
   private final Policy policy;
+  // Structural conflict set of each transition, passed to the policy to pick
+  // the one transition of the set that may fire.
+  private final long[][] conflictSets;
+  // Checks the P-invariants of the net after each firing, or null if they
+  // could not be computed.
+  private final PInvariantChecker invariantChecker;
   private static final Logger logger = Logger.getInstance();
 
+  // Default number of T0 firings after which the simulation is finished.
+  public static final int DEFAULT_T0_LIMIT = 187;
+  // Number of T0 firings after which the simulation is finished.
+  private final int t0Limit;
   // Counter for how many times T0 has fired.
   private int t0Counter = 0;
-  // Lock object used to signal when the T0 counter reaches 187.
+  // Number of firings of each transition.
+  private final long[] firingCounts;
+  // Lock object used to signal when the T0 counter reaches the limit.
   private final Object invariantLock = new Object();
   // Flag to indicate that no further T0 transitions should be fired.
   private boolean simulationFinished = false;
 
-  // For Scheduler management:
-  private Thread schedulerThread;
-  private Scheduler scheduler;
+  // Runs the segments (Scheduler or segment threads), or null until started.
+  private volatile SegmentDispatcher dispatcher;
+  // Binary trace of the firings, or null when not tracing.
+  private volatile TraceRecorder traceRecorder;
+  // Runtime metrics, or null when not collected.
+  private volatile MetricsRegistry metrics;
+
+  // Whether the segments were stopped, so that blocked firings return false.
+  // Guarded by the lock.
+  private boolean stopRequested = false;
 
   /**
    * Constructs a Monitor with the given Places, Transitions, and Policy.
@@ -43,83 +106,506 @@ public class Monitor implements MonitorInterface {
    * @param policy      the active Policy object to enforce rules.
    */
   public Monitor(Places places, Map<Integer, Transition> transitions, Policy policy) {
+    this(places, transitions, policy, DEFAULT_T0_LIMIT);
+  }
+
+  /**
+   * Constructs a Monitor that finishes after the given number of T0 firings.
+   *
+   * @param places      the shared Places object.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the active Policy object to enforce rules.
+   * @param t0Limit     the number of T0 firings after which T0 is disabled.
+   */
+  public Monitor(Places places, Map<Integer, Transition> transitions, Policy policy, int t0Limit) {
     this.places = places;
+    this.lock = places.getLock();
+    this.t0Limit = t0Limit;
     this.transitions = transitions;
+    this.matrix = new IncidenceMatrix(places.getPlaceCount(), transitions);
+    this.enabled = new long[matrix.wordCount()];
+    places.computeEnabled(matrix, enabled);
+    this.sensitizedAt = new long[matrix.getTransitionCount()];
+    Arrays.fill(sensitizedAt, System.nanoTime());
+    this.missed = new long[matrix.wordCount()];
+    this.missedAt = new long[matrix.getTransitionCount()];
+    this.sensitized = new long[matrix.wordCount()];
+    this.queues = new Condition[matrix.getTransitionCount()];
+    for (int t = 0; t < queues.length; t++) {
+      queues[t] = lock.newCondition();
+    }
+    this.waiters = new int[matrix.getTransitionCount()];
+    this.timedWaiters = new int[matrix.getTransitionCount()];
+    this.waiting = new long[matrix.wordCount()];
+    this.firingCounts = new long[matrix.getTransitionCount()];
+    this.conflictSets = new long[matrix.getTransitionCount()][];
+    for (int t = 0; t < conflictSets.length; t++) {
+      conflictSets[t] = matrix.getConflictSet(t);
+    }
     this.policy = policy;
+    this.invariantChecker = createInvariantChecker(places, transitions);
+    // From now on the marking only changes through fire, which keeps the
+    // enabled set and the invariant sums up to date.
+    places.seal();
     logger.info("Monitor created with policy: " + policy.getClass().getSimpleName());
   }
 
+  private static PInvariantChecker createInvariantChecker(Places places, Map<Integer, Transition> transitions) {
+    try {
+      return new PInvariantChecker(NetInvariants.compute(places, transitions), places, transitions);
+    } catch (IllegalStateException e) {
+      logger.error("Could not compute the net invariants, they will not be checked: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Returns the P- and T-invariants of the net, or null if they could not be
+   * computed.
+   *
+   * @return the invariants checked after each firing.
+   */
+  public NetInvariants getInvariants() {
+    return invariantChecker != null ? invariantChecker.getInvariants() : null;
+  }
+
   /**
-   * Attempts to fire the specified transition.
-   * This method is synchronized to ensure safe concurrent access.
+   * Attempts to fire the specified transition without blocking.
+   * The firing itself happens while holding the monitor lock. A temporal
+   * transition that is enabled but whose firing window has not opened yet
+   * releases the monitor, sleeps until the window opens and then re-enters to
+   * check again, so other transitions can fire in the meantime.
+   *
+   * The attempt is reported to the metrics registry, if any, and as JFR
+   * events (which cost nothing unless a recording is on).
    *
    * @param transitionId the identifier of the transition to fire.
    * @return true if the transition was successfully fired; false otherwise.
    */
   @Override
-  public synchronized boolean fireTransition(int transitionId) {
+  public boolean fireTransition(int transitionId) {
+    MetricsRegistry metrics = this.metrics;
+    long start = metrics != null ? System.nanoTime() : 0;
+    TransitionFiredEvent firedEvent = TransitionFiredEvent.start();
+    try {
+      while (true) {
+        long status;
+        boolean fired = false;
+        long requested = metrics != null ? System.nanoTime() : 0;
+        MonitorWaitEvent waitEvent = MonitorWaitEvent.start();
+        lock.lock();
+        MonitorWaitEvent.emit(waitEvent, transitionId, MonitorWaitEvent.LOCK);
+        long acquired = metrics != null ? System.nanoTime() : 0;
+        try {
+          status = evaluate(transitionId);
+          if (status == READY) {
+            fired = fire(transitionId);
+          }
+        } finally {
+          lock.unlock();
+          if (metrics != null) {
+            metrics.recordLock(transitionId, acquired - requested, System.nanoTime() - acquired);
+          }
+        }
+        if (status == READY || status < 0) {
+          if (fired) {
+            notifySegments(transitionId);
+          }
+          reportOutcome(firedEvent, metrics, transitionId, fired, status, start);
+          return fired;
+        }
+        // Wait outside the monitor until the firing window opens.
+        TemporalDelayEvent delayEvent = TemporalDelayEvent.start();
+        Thread.sleep(status / 1_000_000L, (int) (status % 1_000_000L));
+        TemporalDelayEvent.emit(delayEvent, transitionId, status);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Transition {} firing was interrupted.", transitionId);
+      return false;
+    }
+  }
+
+  /**
+   * Fires the specified transition, blocking until it is enabled, allowed by
+   * the policy and (if temporal) inside its firing window.
+   * The calling thread parks on the condition queue of this transition and is
+   * signalled only when the transition can actually fire. Each time it has
+   * to wait because the transition is not enabled or denied, a rejected
+   * attempt is counted in the metrics.
+   *
+   * @param transitionId the identifier of the transition to fire.
+   * @return true once the transition has fired; false if it does not exist,
+   *         the simulation finished, stopScheduler was called or the thread
+   *         was interrupted.
+   */
+  public boolean fireTransitionBlocking(int transitionId) {
+    if (!transitions.containsKey(transitionId)) {
+      logger.error("Transition {} not found.", transitionId);
+      return false;
+    }
+    MetricsRegistry metrics = this.metrics;
+    long start = metrics != null ? System.nanoTime() : 0;
+    TransitionFiredEvent firedEvent = TransitionFiredEvent.start();
+    MonitorWaitEvent lockEvent = MonitorWaitEvent.start();
+    boolean fired = false;
+    lock.lock();
+    MonitorWaitEvent.emit(lockEvent, transitionId, MonitorWaitEvent.LOCK);
+    try {
+      if (waiters[transitionId]++ == 0) {
+        waiting[transitionId >>> 6] |= 1L << transitionId;
+      }
+      try {
+        boolean woken = false;
+        while (true) {
+          if ((transitionId == 0 && simulationFinished) || stopRequested) {
+            return false;
+          }
+          long status = evaluate(transitionId);
+          if (status == READY) {
+            fired = fire(transitionId);
+            reportOutcome(firedEvent, metrics, transitionId, fired, status, start);
+            return fired;
+          }
+          if (woken) {
+            // Another thread got here first: pass the signal on.
+            signalNext(transitionId);
+          }
+          MonitorWaitEvent waitEvent = MonitorWaitEvent.start();
+          if (status < 0) {
+            if (metrics != null) {
+              metrics.recordRejected(transitionId, status == DENIED);
+            }
+            TransitionRejectedEvent.emit(transitionId, status == DENIED);
+            queues[transitionId].await();
+          } else {
+            // Enabled but early: wake up by ourselves when the window opens.
+            timedWaiters[transitionId]++;
+            try {
+              queues[transitionId].awaitNanos(status);
+            } finally {
+              timedWaiters[transitionId]--;
+            }
+          }
+          MonitorWaitEvent.emit(waitEvent, transitionId, MonitorWaitEvent.CONDITION);
+          woken = true;
+        }
+      } finally {
+        if (--waiters[transitionId] == 0) {
+          waiting[transitionId >>> 6] &= ~(1L << transitionId);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Transition {} firing was interrupted.", transitionId);
+      return false;
+    } finally {
+      lock.unlock();
+      if (fired) {
+        notifySegments(transitionId);
+      }
+    }
+  }
+
+  // Results of evaluate other than a positive waiting time: the transition
+  // can fire, it is not enabled (or is missing, past its window, or T0 after
+  // the simulation finished), or the policy denied it.
+  private static final long READY = 0;
+  private static final long NOT_ENABLED = -1;
+  private static final long DENIED = -2;
+
+  /**
+   * Checks whether the transition can fire now. Must hold the lock.
+   *
+   * @param transitionId the identifier of the transition to check.
+   * @return READY, NOT_ENABLED, DENIED, or the nanoseconds left before the firing window
+   *         of the (temporal) transition opens.
+   */
+  private long evaluate(int transitionId) {
     // If the simulation is finished, do not allow further T0 firings.
     if (transitionId == 0 && simulationFinished) {
-      return false;
+      return NOT_ENABLED;
     }
 
     Transition transition = transitions.get(transitionId);
     if (transition == null) {
-      logger.error("Transition " + transitionId + " not found.");
-      return false;
+      logger.error("Transition {} not found.", transitionId);
+      return NOT_ENABLED;
     }
 
-    if (!transition.isEnabled(places)) {
+    if ((enabled[transitionId >>> 6] & (1L << transitionId)) == 0) {
       // Transition is not enabled (tokens missing).
-      return false;
+      return NOT_ENABLED;
+    }
+    if (isMissed(transitionId)) {
+      return NOT_ENABLED;
     }
 
-    // Consult the policy before firing.
-    if (!policy.allowTransition(transitionId, places)) {
-      return false;
+    // Consult the policy before firing: among the enabled transitions of the
+    // conflict set, only the one it selects may fire.
+    if (!isSelected(transitionId)) {
+      return DENIED;
     }
 
+    if (transition.isTemporal()) {
+      long elapsed = System.nanoTime() - sensitizedAt[transitionId];
+      long alpha = transition.getDelay() * 1_000_000L;
+      if (elapsed < alpha) {
+        return alpha - elapsed;
+      }
+      if (transition.getMaxDelay() != Long.MAX_VALUE && elapsed > transition.getMaxDelay() * 1_000_000L) {
+        recordMiss(transitionId);
+        return NOT_ENABLED;
+      }
+    }
+    return READY;
+  }
+
+  /**
+   * Fires a transition that evaluate reported as READY, updates the counters
+   * and wakes up at most one thread. Must hold the lock; the caller notifies
+   * the segments once it released it.
+   *
+   * @param transitionId the identifier of the transition to fire.
+   * @return true if the transition was fired.
+   */
+  private boolean fire(int transitionId) {
     try {
-      transition.fire(places);
+      // Enabling check, token update and enabled-set update in a single step.
+      if (!places.fire(matrix, transitionId, enabled, sensitizedAt)) {
+        return false;
+      }
+      logger.info("Transition {} fired successfully.", transitionId);
+      recordFiring(transitionId);
+      firingCounts[transitionId]++;
       // Update policy counters after successful firing.
-      policy.updateCounters(transitionId, places);
+      policy.updateCounters(transitionId);
 
-      if (!places.checkInvariants()) {
-        logger.error("Invariants violated after firing transition " + transitionId + ".");
-        return false;
+      // Only the invariants holding the places of the transition can change.
+      // The firing has happened either way, so a violation is logged and the
+      // bookkeeping below still runs (otherwise a violation on T0 would leave
+      // the T0 counter, and Main waiting on it, behind).
+      if (invariantChecker != null && !invariantChecker.check(transitionId)) {
+        logger.error("Invariants violated after firing transition {}.", transitionId);
       }
 
       // When T0 fires, increment the counter.
       if (transitionId == 0) {
         t0Counter++;
-        // If we have reached 187 firings, mark simulation as finished
+        // If we have reached the limit, mark simulation as finished
         // and notify waiting threads.
-        if (t0Counter >= 187) {
+        if (t0Counter >= t0Limit) {
           simulationFinished = true;
+          queues[0].signalAll();
           synchronized (invariantLock) {
             invariantLock.notifyAll();
           }
         }
       }
 
+      signalNext(-1);
       return true;
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      logger.error("Transition " + transitionId + " firing was interrupted.");
-      return false;
     } catch (Exception e) {
       logger.error("Error firing transition " + transitionId + ": " + e.getMessage());
       return false;
     }
   }
 
+  /**
+   * Reports the result of a firing attempt that is over to the metrics
+   * registry (if any) and as a JFR event.
+   *
+   * @param firedEvent the event begun when the attempt started, or null.
+   * @param fired      whether the transition fired.
+   * @param status     the last result of evaluate.
+   * @param start      the System.nanoTime at which the attempt started.
+   */
+  private void reportOutcome(TransitionFiredEvent firedEvent, MetricsRegistry metrics, int transitionId,
+      boolean fired, long status, long start) {
+    if (fired) {
+      if (metrics != null) {
+        metrics.recordFired(transitionId, System.nanoTime() - start);
+      }
+      TransitionFiredEvent.emit(firedEvent, transitionId, segmentNameOf(transitionId));
+    } else {
+      if (metrics != null) {
+        metrics.recordRejected(transitionId, status == DENIED);
+      }
+      TransitionRejectedEvent.emit(transitionId, status == DENIED);
+    }
+  }
+
+  /**
+   * Returns the name of the segment holding a transition, or null if the
+   * segments are not known yet.
+   *
+   * @param transitionId the transition id.
+   * @return the segment name.
+   */
+  private String segmentNameOf(int transitionId) {
+    SegmentDispatcher segments = dispatcher;
+    return segments != null ? segments.segmentNameOf(transitionId) : null;
+  }
+
+  @Override
+  public void setMetrics(MetricsRegistry metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Appends a firing to the trace, if one is being recorded.
+   *
+   * @param transitionId the transition that fired.
+   */
+  private void recordFiring(int transitionId) {
+    TraceRecorder recorder = traceRecorder;
+    if (recorder != null) {
+      recorder.record(transitionId);
+    }
+  }
+
+  @Override
+  public void setTraceRecorder(TraceRecorder traceRecorder) {
+    this.traceRecorder = traceRecorder;
+  }
+
+  /**
+   * Hands the segments that became ready after a firing to the Scheduler or
+   * to their threads (see SegmentDispatcher). Must not hold the lock: a
+   * segment thread checks readiness, which takes the lock, while holding
+   * the lock of the dispatcher.
+   *
+   * @param transitionId the transition that fired.
+   */
+  private void notifySegments(int transitionId) {
+    SegmentDispatcher segments = dispatcher;
+    if (segments != null) {
+      segments.notifySegments(transitionId);
+    }
+  }
+
+  /**
+   * Wakes up one thread parked on the queue of a transition that can fire now,
+   * after the state of the net changed. Must hold the lock. The scheduler is
+   * not woken up here: it waits on its ready queue (see notifySegments).
+   *
+   * Threads parked untimed on a temporal transition that just became enabled
+   * are also woken up, so that they can switch to a timed wait for its window.
+   *
+   * @param except a transition whose queue must not be signalled, or -1.
+   */
+  private void signalNext(int except) {
+    IncidenceMatrix.firstMatch(waiting, enabled, transitionId -> transitionId != except && signalWaiter(transitionId));
+  }
+
+  /**
+   * Signals the queue of a waited-on enabled transition if it can fire now, or
+   * if its window opened for threads parked untimed. Must hold the lock.
+   *
+   * @return true if the transition can fire now.
+   */
+  private boolean signalWaiter(int transitionId) {
+    long status = evaluate(transitionId);
+    if (status == READY || (status > 0 && timedWaiters[transitionId] < waiters[transitionId])) {
+      queues[transitionId].signal();
+    }
+    return status == READY;
+  }
+
+  /**
+   * Checks whether the policy selects this enabled transition among the
+   * enabled transitions of its conflict set. Must hold the lock.
+   */
+  private boolean isSelected(int transitionId) {
+    return policy.selectTransition(sensitizedSet(), conflictSets[transitionId]) == transitionId;
+  }
+
+  /**
+   * Logs that a temporal transition missed its firing window, once per
+   * sensitization, and stops treating it as sensitized. Must hold the lock.
+   */
+  private void recordMiss(int transitionId) {
+    logger.warn("Transition {} missed its firing window.", transitionId);
+    missed[transitionId >>> 6] |= 1L << transitionId;
+    missedAt[transitionId] = sensitizedAt[transitionId];
+    missedCount++;
+  }
+
+  /**
+   * Checks whether a transition missed its window since it was last
+   * sensitized. Must hold the lock.
+   */
+  private boolean isMissed(int transitionId) {
+    return (missed[transitionId >>> 6] & (1L << transitionId)) != 0
+        && missedAt[transitionId] == sensitizedAt[transitionId];
+  }
+
+  /**
+   * Returns the enabled set without the transitions that missed their window.
+   * Must hold the lock.
+   */
+  private long[] sensitizedSet() {
+    if (missedCount == 0) {
+      return enabled;
+    }
+    // Forget the misses of the transitions sensitized again since.
+    IncidenceMatrix.firstMatch(missed, missed, transitionId -> {
+      if (missedAt[transitionId] != sensitizedAt[transitionId]) {
+        missed[transitionId >>> 6] &= ~(1L << transitionId);
+        missedCount--;
+      }
+      return false;
+    });
+    if (missedCount == 0) {
+      return enabled;
+    }
+    for (int w = 0; w < enabled.length; w++) {
+      sensitized[w] = enabled[w] & ~missed[w];
+    }
+    return sensitized;
+  }
+
+  @Override
+  public boolean isEnabled(int transitionId) {
+    lock.lock();
+    try {
+      return (enabled[transitionId >>> 6] & (1L << transitionId)) != 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isReady(long[] mask) {
+    lock.lock();
+    try {
+      // Only the enabled transitions of the set are submitted to the policy,
+      // and a transition the policy did not select in its conflict set does
+      // not make the segment ready.
+      return IncidenceMatrix.firstMatch(enabled, mask, this::isSelected) >= 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int getTokenCount(int placeId) {
+    return places.getTokenCount(placeId);
+  }
+
   /**
    * Returns the count of how many times the closing transition (T0) has fired.
    *
    * @return the T0 firing counter.
    */
-  public synchronized int getT0Counter() {
-    return t0Counter;
+  @Override
+  public int getT0Counter() {
+    lock.lock();
+    try {
+      return t0Counter;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
@@ -127,40 +613,89 @@ public class Monitor implements MonitorInterface {
    *
    * @return the invariantLock.
    */
+  @Override
   public Object getInvariantLock() {
     return invariantLock;
   }
 
+  /**
+   * Returns the number of T0 firings after which the simulation is finished.
+   *
+   * @return the T0 limit.
+   */
+  @Override
+  public int getT0Limit() {
+    return t0Limit;
+  }
+
+  /**
+   * Returns how many times a transition has fired.
+   *
+   * @param transitionId the transition id.
+   * @return the number of firings.
+   */
+  @Override
+  public long getFiringCount(int transitionId) {
+    lock.lock();
+    try {
+      return firingCounts[transitionId];
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
   public Policy getPolicy() {
     return policy;
   }
 
   /**
-   * Starts the scheduler thread with the provided segments and pool manager.
+   * Returns the compiled incidence matrices of the net.
+   *
+   * @return the IncidenceMatrix used by this monitor.
+   */
+  public IncidenceMatrix getMatrix() {
+    return matrix;
+  }
+
+  /**
+   * Starts the scheduler thread with the provided segments and pool manager,
+   * or, in the THREAD_PER_SEGMENT mode, one thread per segment.
    *
    * @param segments    the list of segments to be scheduled.
    * @param poolManager the thread pool manager.
    */
+  @Override
   public void startScheduler(List<Segment> segments, PoolManager poolManager) {
-    scheduler = new Scheduler(segments, poolManager);
-    schedulerThread = new Thread(scheduler, "SchedulerThread");
-    schedulerThread.start();
-    logger.info("Scheduler thread started by Monitor.");
+    lock.lock();
+    try {
+      stopRequested = false;
+    } finally {
+      lock.unlock();
+    }
+    SegmentDispatcher segmentDispatcher = new SegmentDispatcher(matrix, segments);
+    dispatcher = segmentDispatcher;
+    segmentDispatcher.start(poolManager);
   }
 
   /**
-   * Stops the scheduler thread gracefully.
+   * Stops the scheduler thread (or the segment threads) gracefully. Threads
+   * blocked in fireTransitionBlocking are woken up and return false.
    */
+  @Override
   public void stopScheduler() {
-    if (scheduler != null) {
-      scheduler.stop();
-      try {
-        schedulerThread.join();
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        logger.error("Scheduler thread interruption during stop: " + e.getMessage());
+    lock.lock();
+    try {
+      stopRequested = true;
+      for (Condition queue : queues) {
+        queue.signalAll();
       }
-      logger.info("Scheduler thread stopped.");
+    } finally {
+      lock.unlock();
+    }
+    SegmentDispatcher segments = dispatcher;
+    if (segments != null) {
+      segments.stop();
     }
   }
 }
\ No newline at end of file
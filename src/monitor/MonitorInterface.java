@@ -1,9 +1,18 @@
 
 package monitor;
 
+import java.util.List;
+
+import metrics.MetricsRegistry;
+import petrinet.Segment;
+import pool.PoolManager;
+import utils.TraceRecorder;
+
 /**
  * Interface for the Monitor.
- * The monitor exposes a single method to fire a transition.
+ * The monitor exposes a method to fire a transition, plus read-only queries
+ * on its enabled set so that segments can test readiness without re-reading
+ * tokens, and the lifecycle of the segments that run on it.
  */
 public interface MonitorInterface {
   /**
@@ -13,4 +22,93 @@ public interface MonitorInterface {
    * @return true if the transition was successfully fired, false otherwise.
    */
   boolean fireTransition(int transition);
+
+  /**
+   * Checks whether the transition is currently enabled.
+   *
+   * @param transition the identifier of the transition.
+   * @return true if the transition has the tokens it needs, false otherwise.
+   */
+  boolean isEnabled(int transition);
+
+  /**
+   * Checks whether any transition of the given set is enabled and allowed by
+   * the policy.
+   *
+   * @param mask a transition set, one bit per transition id (bit t of word t / 64).
+   * @return true if at least one transition of the set could fire now.
+   */
+  boolean isReady(long[] mask);
+
+  /**
+   * Returns the current number of tokens in a place.
+   *
+   * @param placeId the place id.
+   * @return the token count.
+   */
+  int getTokenCount(int placeId);
+
+  /**
+   * Returns how many times a transition has fired.
+   *
+   * @param transitionId the transition id.
+   * @return the number of firings.
+   */
+  long getFiringCount(int transitionId);
+
+  /**
+   * Returns how many times the closing transition (T0) has fired.
+   *
+   * @return the T0 firing counter.
+   */
+  int getT0Counter();
+
+  /**
+   * Returns the number of T0 firings after which the simulation is finished.
+   *
+   * @return the T0 limit.
+   */
+  int getT0Limit();
+
+  /**
+   * Returns the object notified once the T0 limit is reached.
+   *
+   * @return the invariant lock.
+   */
+  Object getInvariantLock();
+
+  /**
+   * Returns the policy that resolves the conflicts.
+   *
+   * @return the policy.
+   */
+  Policy getPolicy();
+
+  /**
+   * Sets the recorder that receives every firing, or null to stop tracing.
+   *
+   * @param traceRecorder the trace recorder.
+   */
+  void setTraceRecorder(TraceRecorder traceRecorder);
+
+  /**
+   * Sets the registry that receives the metrics of every firing attempt, or
+   * null to stop collecting them.
+   *
+   * @param metrics the metrics registry.
+   */
+  void setMetrics(MetricsRegistry metrics);
+
+  /**
+   * Starts running the segments on the given pool.
+   *
+   * @param segments    the segments of the net.
+   * @param poolManager the thread pool manager.
+   */
+  void startScheduler(List<Segment> segments, PoolManager poolManager);
+
+  /**
+   * Stops running the segments.
+   */
+  void stopScheduler();
 }
@@ -0,0 +1,40 @@
+package monitor;
+
+/**
+ * Monitor implementations PetriNet can build.
+ */
+public enum MonitorType {
+  /**
+   * Monitor: a single lock over the whole net, with blocking firing.
+   */
+  COARSE,
+  /**
+   * StripedMonitor: one lock per place.
+   */
+  STRIPED,
+  /**
+   * LockFreeMonitor: the marking packed into a single AtomicLong.
+   */
+  LOCK_FREE;
+
+  /**
+   * Parses the name used by -Dpetri.monitor and the experiment grids.
+   *
+   * @param name coarse, striped or lockfree (case-insensitive), or null for
+   *             coarse.
+   * @return the monitor type.
+   * @throws IllegalArgumentException if the name is unknown.
+   */
+  public static MonitorType fromName(String name) {
+    if (name == null || "coarse".equalsIgnoreCase(name)) {
+      return COARSE;
+    }
+    if ("striped".equalsIgnoreCase(name)) {
+      return STRIPED;
+    }
+    if ("lockfree".equalsIgnoreCase(name)) {
+      return LOCK_FREE;
+    }
+    throw new IllegalArgumentException("Unknown monitor " + name + " (expected coarse, striped or lockfree).");
+  }
+}
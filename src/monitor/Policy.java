@@ -1,7 +1,7 @@
 
 package monitor;
 
-import petrinet.Places;
+import petrinet.IncidenceMatrix;
 
 /**
  * Interface for conflict resolution and priority policies.
@@ -11,16 +11,32 @@ public interface Policy {
    * Checks whether a given transition is allowed to fire given the current state.
    * 
    * @param transitionId the id of the transition to check.
-   * @param places       the current state of the places.
    * @return true if the transition is allowed; false otherwise.
    */
-  boolean allowTransition(int transitionId, Places places);
+  boolean allowTransition(int transitionId);
 
   /**
    * Updates internal counters or state after a transition is fired.
    * 
    * @param transitionId the id of the transition that was fired.
-   * @param places       the current state of the places.
    */
-  void updateCounters(int transitionId, Places places);
+  void updateCounters(int transitionId);
+
+  /**
+   * Chooses the single transition to fire among the enabled transitions of a
+   * structural conflict set (e.g. T2/T3, which share p3), so that the others
+   * are neither scheduled nor attempted. Transitions outside any conflict are
+   * passed as a set of one.
+   *
+   * The default implementation returns the lowest id allowed by
+   * allowTransition.
+   *
+   * @param enabled     the enabled set, one bit per transition id.
+   * @param conflictSet the transitions of the conflict set, one bit per id.
+   * @return the transition to fire, or -1 if no enabled transition of the set
+   *         is allowed.
+   */
+  default int selectTransition(long[] enabled, long[] conflictSet) {
+    return IncidenceMatrix.firstMatch(enabled, conflictSet, this::allowTransition);
+  }
 }
@@ -1,7 +1,8 @@
 
 package monitor;
 
-import petrinet.Places;
+import java.util.concurrent.atomic.AtomicInteger;
+import petrinet.IncidenceMatrix;
 
 /**
  * Implements a priority policy:
@@ -11,71 +12,86 @@ import petrinet.Places;
  * of confirmations.
  */
 public class PriorityPolicy implements Policy {
-  private int superiorCount = 0;
-  private int inferiorCount = 0;
-  private int confirmedCount = 0;
-  private int cancelledCount = 0;
+  private final AtomicInteger superiorCount = new AtomicInteger();
+  private final AtomicInteger inferiorCount = new AtomicInteger();
+  private final AtomicInteger confirmedCount = new AtomicInteger();
+  private final AtomicInteger cancelledCount = new AtomicInteger();
 
   @Override
-  public boolean allowTransition(int transitionId, Places places) {
-    if (transitionId == 2) { // Superior reservations
-      int total = superiorCount + inferiorCount;
-      if (total == 0)
-        return true;
-      double ratio = (double) superiorCount / total;
-      // Allow if the ratio is still less than 75%
-      return ratio < 0.75;
-    } else if (transitionId == 3) { // Inferior reservations
-      int total = superiorCount + inferiorCount;
-      if (total == 0)
-        return true;
-      double ratio = (double) superiorCount / total;
-      // Allow inferior reservations only if the superior ratio is already at least
-      // 75%
-      return ratio >= 0.75;
-    } else if (transitionId == 6) { // Confirmation
-      int total = confirmedCount + cancelledCount;
+  public boolean allowTransition(int transitionId) {
+    return allows(transitionId, superiorCount.get(), inferiorCount.get(), confirmedCount.get(),
+        cancelledCount.get());
+  }
+
+  /**
+   * Picks the allowed transition of the conflict set from one read of the
+   * counters. Once a reservation has been made exactly one of T2/T3 (and of
+   * T6/T7) is allowed; before that both are, and the lowest id is chosen.
+   */
+  @Override
+  public int selectTransition(long[] enabled, long[] conflictSet) {
+    int superiorCount = this.superiorCount.get();
+    int inferiorCount = this.inferiorCount.get();
+    int confirmedCount = this.confirmedCount.get();
+    int cancelledCount = this.cancelledCount.get();
+    return IncidenceMatrix.firstMatch(enabled, conflictSet,
+        transitionId -> allows(transitionId, superiorCount, inferiorCount, confirmedCount, cancelledCount));
+  }
+
+  /**
+   * The ratios are compared with integer arithmetic:
+   * superior / total < 3/4 is superior * 4 < total * 3, and
+   * confirmed / total < 4/5 is confirmed * 5 < total * 4.
+   */
+  private static boolean allows(int transitionId, int superiorCount, int inferiorCount, int confirmedCount,
+      int cancelledCount) {
+    if (transitionId == 2 || transitionId == 3) {
+      long total = (long) superiorCount + inferiorCount;
       if (total == 0)
         return true;
-      double ratio = (double) confirmedCount / total;
-      return ratio < 0.8;
-    } else if (transitionId == 7) { // Cancellation
-      int total = confirmedCount + cancelledCount;
+      // Superior reservations while the superior ratio is under 75%, inferior
+      // ones only once it is at least 75%.
+      boolean underTarget = superiorCount * 4L < total * 3;
+      return transitionId == 2 ? underTarget : !underTarget;
+    } else if (transitionId == 6 || transitionId == 7) {
+      long total = (long) confirmedCount + cancelledCount;
       if (total == 0)
         return true;
-      double ratio = (double) confirmedCount / total;
-      return ratio >= 0.8;
+      // Confirmations while the confirmed ratio is under 80%, cancellations
+      // only once it is at least 80%.
+      boolean underTarget = confirmedCount * 5L < total * 4;
+      return transitionId == 6 ? underTarget : !underTarget;
     }
     return true;
   }
 
   @Override
-  public void updateCounters(int transitionId, Places places) {
+  public void updateCounters(int transitionId) {
     if (transitionId == 2) {
-      superiorCount++;
+      superiorCount.incrementAndGet();
     } else if (transitionId == 3) {
-      inferiorCount++;
+      inferiorCount.incrementAndGet();
     } else if (transitionId == 6) {
-      confirmedCount++;
+      confirmedCount.incrementAndGet();
     } else if (transitionId == 7) {
-      cancelledCount++;
+      cancelledCount.incrementAndGet();
     }
   }
 
   // Optionally, add getters for analysis.
   public int getSuperiorCount() {
-    return superiorCount;
+    return superiorCount.get();
   }
 
   public int getInferiorCount() {
-    return inferiorCount;
+    return inferiorCount.get();
   }
 
   public int getConfirmedCount() {
-    return confirmedCount;
+    return confirmedCount.get();
   }
 
   public int getCancelledCount() {
-    return cancelledCount;
+    return cancelledCount.get();
   }
 }
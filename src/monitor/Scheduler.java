@@ -2,85 +2,115 @@
 package monitor;
 
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import metrics.LockProfiler;
+import metrics.SegmentScheduledEvent;
 import pool.PoolManager;
 import petrinet.Segment;
 import utils.Logger;
-import utils.TransitionNotifier;
 
 /**
- * Scheduler is a dedicated thread that continuously monitors all segments
- * and submits them to the thread pool for execution when they have enabled
- * transitions.
- * This implementation uses a ReentrantLock and Condition for efficient waiting.
+ * Scheduler is a dedicated thread that submits segments to the thread pool
+ * when they have enabled transitions.
+ * It is event-driven: the Monitor (after a firing) and the segments (when they
+ * finish a run) push ready segments into a ready queue, and the scheduler
+ * blocks on that queue. A segment is queued at most once at a time, guarded
+ * by its atomic state flag, so the queue is bounded by the number of segments
+ * and no segment is ever submitted twice. stop() queues a marker that ends
+ * the loop, so a stop is never lost even if it comes before run().
  */
 public class Scheduler implements Runnable {
     private final List<Segment> segments;
     private final PoolManager poolManager;
+    // The ready segments, then STOP once the scheduler is stopped.
+    private final BlockingQueue<Runnable> readyQueue;
+    private static final Runnable STOP = () -> { };
     private volatile boolean running = true;
+    // Number of tasks submitted to the pool.
+    private long submittedTasks = 0;
     private static final Logger logger = Logger.getInstance();
 
     public Scheduler(List<Segment> segments, PoolManager poolManager) {
         this.segments = segments;
         this.poolManager = poolManager;
+        // One slot per segment plus one for STOP.
+        this.readyQueue = new ArrayBlockingQueue<>(segments.size() + 1);
+        for (Segment segment : segments) {
+            segment.setReadyListener(this::enqueue);
+        }
     }
 
     /**
-     * Checks if any segment is ready (i.e. has at least one enabled transition).
+     * Queues a segment for execution unless it is already queued or running.
+     *
+     * @param segment the segment that has an enabled and allowed transition.
      */
-    private boolean anySegmentIsReady() {
-        for (Segment segment : segments) {
-            if (segment.canBeScheduled()) {
-                return true;
+    public void enqueue(Segment segment) {
+        if (segment.markQueued()) {
+            if (poolManager.isLocalWorker()) {
+                // Re-enabled by a firing on a pool worker: fork it onto that
+                // worker's deque instead of going through the scheduler.
+                poolManager.submitTask(segment);
+                SegmentScheduledEvent.emit(segment.getSegmentName(), true);
+            } else {
+                // Cannot fail: each segment occupies at most one slot.
+                readyQueue.offer(segment);
             }
         }
-        return false;
     }
 
     @Override
     public void run() {
         logger.info("Scheduler started.");
+        // Queue the segments that are ready in the initial marking.
+        for (Segment segment : segments) {
+            if (segment.canBeScheduled()) {
+                enqueue(segment);
+            }
+        }
         while (running) {
-            boolean scheduled = false;
-            // Check each segment to see if it can be scheduled.
-            for (Segment segment : segments) {
-                if (segment.canBeScheduled()) {
-                    // logger.info("Scheduler submitting segment: " + segment.getSegmentName());
-                    poolManager.submitTask(segment);
-                    scheduled = true;
+            try {
+                Runnable task = takeReady();
+                if (task == STOP) {
+                    break;
                 }
-            }
-            if (!scheduled) {
-                // Use our ReentrantLock and Condition to wait until a change occurs.
-                TransitionNotifier.lock.lock();
-                try {
-                    // Double-check the condition once the lock is acquired.
-                    if (!anySegmentIsReady()) {
-                        try {
-                            // logger.debug("Scheduler awaiting signal on transitionsEnabled condition.");
-                            TransitionNotifier.transitionsEnabled.await();
-                        } catch (InterruptedException e) {
-                            logger.warn("Scheduler interrupted during await.");
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                } finally {
-                    TransitionNotifier.lock.unlock();
+                Segment segment = (Segment) task;
+                // logger.info("Scheduler submitting segment: " + segment.getSegmentName());
+                poolManager.submitTask(segment);
+                SegmentScheduledEvent.emit(segment.getSegmentName(), false);
+                submittedTasks++;
+            } catch (InterruptedException e) {
+                if (running) {
+                    logger.warn("Scheduler interrupted while waiting for ready segments.");
                 }
             }
         }
-        logger.info("Scheduler stopped.");
+        logger.info("Scheduler stopped after " + submittedTasks + " task submissions.");
     }
 
     /**
-     * Stops the scheduler gracefully and signals any waiting thread.
+     * Takes the next ready segment, reporting the wait to the lock profiler
+     * when profiling is enabled.
      */
-    public void stop() {
-        running = false;
-        TransitionNotifier.lock.lock();
+    private Runnable takeReady() throws InterruptedException {
+        if (!LockProfiler.isEnabled()) {
+            return readyQueue.take();
+        }
+        long start = System.nanoTime();
         try {
-            TransitionNotifier.transitionsEnabled.signalAll();
+            return readyQueue.take();
         } finally {
-            TransitionNotifier.lock.unlock();
+            LockProfiler.recordWait("readyQueue: Scheduler.run", System.nanoTime() - start);
         }
     }
+
+    /**
+     * Stops the scheduler gracefully, waking it up if it is waiting. Can be
+     * called before the scheduler thread starts running.
+     */
+    public void stop() {
+        running = false;
+        readyQueue.offer(STOP);
+    }
 }
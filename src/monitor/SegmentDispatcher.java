@@ -0,0 +1,229 @@
+package monitor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import metrics.LockProfiler;
+import metrics.MonitorWaitEvent;
+import petrinet.IncidenceMatrix;
+import petrinet.Segment;
+import pool.PoolManager;
+import pool.PoolMode;
+import utils.Logger;
+
+/**
+ * Runs the segments of a net for a monitor: it hands the segments that
+ * became ready after a firing to the Scheduler's ready queue or, in the
+ * THREAD_PER_SEGMENT pool mode, wakes up the long-lived thread of each
+ * segment, which runs the segment whenever it is ready and otherwise waits
+ * on a condition of its own.
+ *
+ * Only the segments holding a transition affected by a firing are checked
+ * (structurally conflicting transitions, whose policy decision may have
+ * changed, share an input place and so are affected too).
+ */
+final class SegmentDispatcher {
+  private static final Logger logger = Logger.getInstance();
+
+  // For each transition, the segments that may become ready when it fires.
+  private final Segment[][] segmentsToWake;
+  // For each transition, the name of the segment holding it (or null), for
+  // the JFR events.
+  private final String[] segmentNames;
+  private final List<Segment> segments;
+
+  // What to do with a segment that became ready: queue it on the Scheduler,
+  // or wake up its thread. Null until started.
+  private volatile Consumer<Segment> readyHandler;
+  private Scheduler scheduler;
+  private Thread schedulerThread;
+
+  // For thread-per-segment mode: the condition each segment thread waits on,
+  // and whether they keep running, guarded by lock.
+  private final ReentrantLock lock = LockProfiler.newLock("segments");
+  private final Map<Segment, Condition> segmentConditions = new IdentityHashMap<>();
+  private boolean segmentThreadsRunning = false;
+
+  /**
+   * Prepares the dispatch tables of the segments.
+   *
+   * @param matrix   the compiled net.
+   * @param segments the segments to run.
+   */
+  SegmentDispatcher(IncidenceMatrix matrix, List<Segment> segments) {
+    this.segments = segments;
+    int transitionCount = matrix.getTransitionCount();
+    segmentNames = new String[transitionCount];
+    segmentsToWake = new Segment[transitionCount][];
+    for (int t = 0; t < transitionCount; t++) {
+      List<Segment> candidates = new ArrayList<>();
+      int[] affected = matrix.getAffected(t);
+      for (Segment segment : segments) {
+        if (holds(segment, t) && segmentNames[t] == null) {
+          segmentNames[t] = segment.getSegmentName();
+        }
+        for (int u : affected) {
+          if (holds(segment, u)) {
+            candidates.add(segment);
+            break;
+          }
+        }
+      }
+      segmentsToWake[t] = candidates.toArray(new Segment[0]);
+    }
+  }
+
+  private static boolean holds(Segment segment, int transitionId) {
+    long[] mask = segment.getTransitionMask();
+    return (transitionId >>> 6) < mask.length && (mask[transitionId >>> 6] & (1L << transitionId)) != 0;
+  }
+
+  /**
+   * Returns the name of the segment holding a transition, or null.
+   *
+   * @param transitionId the transition id.
+   * @return the segment name.
+   */
+  String segmentNameOf(int transitionId) {
+    return transitionId >= 0 && transitionId < segmentNames.length ? segmentNames[transitionId] : null;
+  }
+
+  /**
+   * Starts running the segments: a Scheduler thread feeding the pool, or
+   * one thread per segment in the THREAD_PER_SEGMENT mode.
+   *
+   * @param poolManager the thread pool manager.
+   */
+  void start(PoolManager poolManager) {
+    if (poolManager.getMode() == PoolMode.THREAD_PER_SEGMENT) {
+      startSegmentThreads(poolManager);
+      return;
+    }
+    scheduler = new Scheduler(segments, poolManager);
+    readyHandler = scheduler::enqueue;
+    schedulerThread = new Thread(scheduler, "SchedulerThread");
+    schedulerThread.start();
+    logger.info("Scheduler thread started by Monitor.");
+  }
+
+  /**
+   * Starts one long-lived thread per segment. Each thread runs its segment
+   * whenever it is ready and otherwise waits on its condition, so no
+   * Scheduler thread or ready queue is involved.
+   */
+  private void startSegmentThreads(PoolManager poolManager) {
+    lock.lock();
+    try {
+      for (Segment segment : segments) {
+        segmentConditions.put(segment, lock.newCondition());
+        // The thread checks readiness again after every run.
+        segment.setReadyListener(s -> { });
+      }
+      segmentThreadsRunning = true;
+    } finally {
+      lock.unlock();
+    }
+    readyHandler = this::signalSegment;
+    for (Segment segment : segments) {
+      poolManager.startLoop(() -> awaitReady(segment), segment);
+    }
+    logger.info("Started " + segments.size() + " segment threads.");
+  }
+
+  /**
+   * Hands the segments that became ready after a firing to the Scheduler or
+   * to their threads. Must be called once the firing is visible to the
+   * readiness checks.
+   *
+   * @param transitionId the transition that fired.
+   */
+  void notifySegments(int transitionId) {
+    Consumer<Segment> handler = readyHandler;
+    if (handler == null) {
+      return;
+    }
+    for (Segment segment : segmentsToWake[transitionId]) {
+      if (segment.canBeScheduled()) {
+        handler.accept(segment);
+      }
+    }
+  }
+
+  /**
+   * Wakes up the thread of a segment (thread-per-segment mode).
+   */
+  private void signalSegment(Segment segment) {
+    lock.lock();
+    try {
+      segmentConditions.get(segment).signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Blocks the thread of a segment until the segment has a transition that is
+   * enabled and allowed by the policy (thread-per-segment mode).
+   *
+   * @param segment the segment owned by the calling thread.
+   * @return true if the segment is ready, false if the threads were stopped.
+   */
+  private boolean awaitReady(Segment segment) {
+    lock.lock();
+    try {
+      Condition ready = segmentConditions.get(segment);
+      // A firing that makes the segment ready signals this condition under
+      // the lock, after the firing is visible, so a firing between the check
+      // and the await is never missed.
+      while (segmentThreadsRunning && !segment.canBeScheduled()) {
+        MonitorWaitEvent waitEvent = MonitorWaitEvent.start();
+        ready.await();
+        MonitorWaitEvent.emit(waitEvent, -1, MonitorWaitEvent.CONDITION);
+      }
+      return segmentThreadsRunning;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the scheduler thread (or the segment threads) gracefully.
+   */
+  void stop() {
+    readyHandler = null;
+    boolean stopped = false;
+    lock.lock();
+    try {
+      if (segmentThreadsRunning) {
+        segmentThreadsRunning = false;
+        for (Condition ready : segmentConditions.values()) {
+          ready.signal();
+        }
+        stopped = true;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (stopped) {
+      logger.info("Segment threads stopped.");
+    }
+    if (scheduler != null) {
+      scheduler.stop();
+      try {
+        schedulerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.error("Scheduler thread interruption during stop: " + e.getMessage());
+      }
+      logger.info("Scheduler thread stopped.");
+    }
+  }
+}
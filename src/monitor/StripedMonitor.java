@@ -0,0 +1,522 @@
+package monitor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import metrics.LockProfiler;
+import metrics.MetricsRegistry;
+import metrics.MonitorWaitEvent;
+import metrics.TemporalDelayEvent;
+import metrics.TransitionFiredEvent;
+import metrics.TransitionRejectedEvent;
+import petrinet.IncidenceMatrix;
+import petrinet.Places;
+import petrinet.Segment;
+import petrinet.Transition;
+import pool.PoolManager;
+import utils.Logger;
+import utils.TraceRecorder;
+
+/**
+ * A fine-grained monitor where each place has its own lock.
+ *
+ * The marking lives only here: the Places given to the constructor hold the
+ * initial marking and are sealed. A transition locks its places in ascending
+ * place id order (so two firings can never deadlock), checks and updates the
+ * marking, and releases them. Transitions with disjoint places, such as T5 in
+ * SegmentB and T9 in SegmentD, therefore fire in parallel.
+ *
+ * Besides its pre- and post-set, a transition also locks the input places of
+ * the temporal transitions it may enable, whose sensitization time it
+ * records, and, if it is in structural conflict (T2/T3, T6/T7), the input
+ * places of its conflict set, so that the policy chooses among a stable
+ * enabled set. The policy decision, firing and counter update of conflicting
+ * transitions are done under an extra policy lock, always taken last.
+ *
+ * Temporal transitions follow the same [alpha, beta] window as in the
+ * Monitor: an early attempt releases the locks, sleeps until the window opens
+ * and checks again. Blocking firing is not provided, so in the
+ * THREAD_PER_SEGMENT pool mode each segment thread waits until its segment is
+ * ready.
+ */
+public class StripedMonitor implements MonitorInterface {
+  private static final Logger logger = Logger.getInstance();
+
+  private final Map<Integer, Transition> transitions;
+  private final IncidenceMatrix matrix;
+  private final Policy policy;
+
+  // Token count of each place, guarded by the lock of that place.
+  private final int[] marking;
+  private final ReentrantLock[] placeLocks;
+  // For each transition, its input places, sorted (to check enabling).
+  private final int[][] inputOrder;
+  // For each transition, every place it locks to fire, sorted.
+  private final int[][] lockOrder;
+  // For each transition, the temporal transitions whose enabling it may change.
+  private final int[][] temporalAffected;
+  // Transitions sharing an input place with another transition, and their
+  // conflict set (as an id list and as a bitmask).
+  private final boolean[] conflicting;
+  private final int[][] conflictMembers;
+  private final long[][] conflictSets;
+  private final ReentrantLock policyLock = LockProfiler.newLock("policy");
+
+  // When each transition was last sensitized, guarded by the locks of its
+  // input places.
+  private final long[] sensitizedAt;
+  // The sensitization at which each temporal transition missed its beta
+  // bound: it is not sensitized again until it is re-enabled. Guarded like
+  // sensitizedAt.
+  private final long[] missedAt;
+
+  // Number of T0 firings, written under the locks of T0.
+  private volatile int t0Counter = 0;
+  // Number of T0 firings after which T0 is disabled.
+  private final int t0Limit;
+  private final Object invariantLock = new Object();
+  // Number of firings of each transition.
+  private final AtomicLongArray firingCounts;
+
+  // Number of firings in progress, and the maximum reached.
+  private final AtomicInteger activeFirings = new AtomicInteger();
+  private final AtomicInteger maxConcurrentFirings = new AtomicInteger();
+
+  private volatile SegmentDispatcher dispatcher;
+  private volatile TraceRecorder traceRecorder;
+  private volatile MetricsRegistry metrics;
+
+  /**
+   * Constructs a StripedMonitor with the given Places, Transitions, and Policy.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the active Policy object to enforce rules.
+   */
+  public StripedMonitor(Places places, Map<Integer, Transition> transitions, Policy policy) {
+    this(places, transitions, policy, Monitor.DEFAULT_T0_LIMIT);
+  }
+
+  /**
+   * Constructs a StripedMonitor that finishes after the given number of T0
+   * firings.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the active Policy object to enforce rules.
+   * @param t0Limit     the number of T0 firings after which T0 is disabled.
+   */
+  public StripedMonitor(Places places, Map<Integer, Transition> transitions, Policy policy, int t0Limit) {
+    this.transitions = transitions;
+    this.t0Limit = t0Limit;
+    this.policy = policy;
+
+    int placeCount = places.getPlaceCount();
+    matrix = new IncidenceMatrix(placeCount, transitions);
+    marking = new int[placeCount];
+    placeLocks = new ReentrantLock[placeCount];
+    for (int p = 0; p < placeCount; p++) {
+      marking[p] = places.getTokenCount(p);
+      placeLocks[p] = LockProfiler.newLock("place" + p);
+    }
+    // From now on the marking only changes here.
+    places.seal();
+
+    int size = matrix.getTransitionCount();
+    firingCounts = new AtomicLongArray(size);
+    sensitizedAt = new long[size];
+    Arrays.fill(sensitizedAt, System.nanoTime());
+    missedAt = new long[size];
+    Arrays.fill(missedAt, Long.MIN_VALUE);
+    inputOrder = new int[size][0];
+    lockOrder = new int[size][0];
+    temporalAffected = new int[size][0];
+    conflicting = new boolean[size];
+    conflictMembers = new int[size][0];
+    conflictSets = new long[size][];
+    for (int t = 0; t < size; t++) {
+      conflictSets[t] = matrix.getConflictSet(t);
+      conflictMembers[t] = members(conflictSets[t]);
+      conflicting[t] = conflictMembers[t].length > 1;
+    }
+    for (Transition transition : transitions.values()) {
+      int t = transition.getId();
+      TreeSet<Integer> inputs = new TreeSet<>();
+      addInputs(inputs, t);
+      inputOrder[t] = toArray(inputs);
+
+      TreeSet<Integer> order = new TreeSet<>(inputs);
+      for (int p : transition.getPostPlaces()) {
+        order.add(p);
+      }
+      TreeSet<Integer> temporal = new TreeSet<>();
+      for (int u : matrix.getAffected(t)) {
+        Transition affected = transitions.get(u);
+        if (affected != null && affected.isTemporal()) {
+          temporal.add(u);
+          addInputs(order, u);
+        }
+      }
+      temporalAffected[t] = toArray(temporal);
+      if (conflicting[t]) {
+        for (int u : conflictMembers[t]) {
+          addInputs(order, u);
+        }
+      }
+      lockOrder[t] = toArray(order);
+    }
+    logger.info("Striped monitor created with " + placeCount + " place locks.");
+  }
+
+  private void addInputs(TreeSet<Integer> order, int transitionId) {
+    Transition transition = transitions.get(transitionId);
+    if (transition != null) {
+      for (int p : transition.getPrePlaces()) {
+        order.add(p);
+      }
+    }
+  }
+
+  private static int[] toArray(TreeSet<Integer> set) {
+    return set.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static int[] members(long[] set) {
+    int[] ids = new int[Arrays.stream(set).mapToInt(Long::bitCount).sum()];
+    int i = 0;
+    for (int w = 0; w < set.length; w++) {
+      for (long bits = set[w]; bits != 0; bits &= bits - 1) {
+        ids[i++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    return ids;
+  }
+
+  // Results of evaluate other than a positive waiting time, as in the Monitor.
+  private static final long READY = 0;
+  private static final long NOT_ENABLED = -1;
+  private static final long DENIED = -2;
+
+  /**
+   * Attempts to fire the specified transition, locking only its places.
+   * A temporal transition whose firing window has not opened yet releases
+   * the locks, sleeps until it opens and checks again.
+   *
+   * @param transitionId the identifier of the transition to fire.
+   * @return true if the transition was successfully fired; false otherwise.
+   */
+  @Override
+  public boolean fireTransition(int transitionId) {
+    MetricsRegistry metrics = this.metrics;
+    long start = metrics != null ? System.nanoTime() : 0;
+    TransitionFiredEvent firedEvent = TransitionFiredEvent.start();
+    if (transitions.get(transitionId) == null) {
+      logger.error("Transition {} not found.", transitionId);
+      return false;
+    }
+    try {
+      while (true) {
+        long status;
+        boolean fired = false;
+        int[] order = lockOrder[transitionId];
+        long requested = metrics != null ? System.nanoTime() : 0;
+        MonitorWaitEvent waitEvent = MonitorWaitEvent.start();
+        for (int p : order) {
+          placeLocks[p].lock();
+        }
+        MonitorWaitEvent.emit(waitEvent, transitionId, MonitorWaitEvent.LOCK);
+        long acquired = metrics != null ? System.nanoTime() : 0;
+        int active = activeFirings.incrementAndGet();
+        maxConcurrentFirings.updateAndGet(max -> Math.max(max, active));
+        try {
+          if (conflicting[transitionId]) {
+            policyLock.lock();
+            try {
+              status = evaluate(transitionId);
+              if (status == READY) {
+                fire(transitionId);
+                policy.updateCounters(transitionId);
+                fired = true;
+              }
+            } finally {
+              policyLock.unlock();
+            }
+          } else {
+            status = evaluate(transitionId);
+            if (status == READY) {
+              fire(transitionId);
+              fired = true;
+            }
+          }
+        } finally {
+          activeFirings.decrementAndGet();
+          for (int i = order.length - 1; i >= 0; i--) {
+            placeLocks[order[i]].unlock();
+          }
+          if (metrics != null) {
+            metrics.recordLock(transitionId, acquired - requested, System.nanoTime() - acquired);
+          }
+        }
+
+        if (fired) {
+          firingCounts.incrementAndGet(transitionId);
+          if (metrics != null) {
+            metrics.recordFired(transitionId, System.nanoTime() - start);
+          }
+          TransitionFiredEvent.emit(firedEvent, transitionId, segmentNameOf(transitionId));
+          if (transitionId == 0 && t0Counter >= t0Limit) {
+            synchronized (invariantLock) {
+              invariantLock.notifyAll();
+            }
+          }
+          // Queue the segments that became ready; the firing is complete, so
+          // the readiness checks see it.
+          notifySegments(transitionId);
+          return true;
+        }
+        if (status < 0) {
+          if (metrics != null) {
+            metrics.recordRejected(transitionId, status == DENIED);
+          }
+          TransitionRejectedEvent.emit(transitionId, status == DENIED);
+          return false;
+        }
+        // Wait without any lock until the firing window opens.
+        TemporalDelayEvent delayEvent = TemporalDelayEvent.start();
+        Thread.sleep(status / 1_000_000L, (int) (status % 1_000_000L));
+        TemporalDelayEvent.emit(delayEvent, transitionId, status);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Transition {} firing was interrupted.", transitionId);
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether the transition can fire now. Must hold its locks, and the
+   * policy lock if it is conflicting.
+   *
+   * @return READY, NOT_ENABLED, DENIED, or the nanoseconds left before the
+   *         firing window of the (temporal) transition opens.
+   */
+  private long evaluate(int transitionId) {
+    if (transitionId == 0 && t0Counter >= t0Limit) {
+      return NOT_ENABLED;
+    }
+    if (!matrix.isEnabled(transitionId, marking) || isMissed(transitionId)) {
+      return NOT_ENABLED;
+    }
+    if (conflicting[transitionId] && !isSelected(transitionId)) {
+      return DENIED;
+    }
+    Transition transition = transitions.get(transitionId);
+    if (transition.isTemporal()) {
+      long elapsed = System.nanoTime() - sensitizedAt[transitionId];
+      long alpha = transition.getDelay() * 1_000_000L;
+      if (elapsed < alpha) {
+        return alpha - elapsed;
+      }
+      if (transition.getMaxDelay() != Long.MAX_VALUE && elapsed > transition.getMaxDelay() * 1_000_000L) {
+        // Logged once per sensitization.
+        logger.warn("Transition {} missed its firing window.", transitionId);
+        missedAt[transitionId] = sensitizedAt[transitionId];
+        return NOT_ENABLED;
+      }
+    }
+    return READY;
+  }
+
+  /**
+   * Checks whether the policy selects this transition among the enabled
+   * transitions of its conflict set. Must hold the input places of the set.
+   */
+  private boolean isSelected(int transitionId) {
+    long[] enabled = new long[conflictSets[transitionId].length];
+    for (int u : conflictMembers[transitionId]) {
+      if (matrix.isEnabled(u, marking) && !isMissed(u)) {
+        enabled[u >>> 6] |= 1L << u;
+      }
+    }
+    return policy.selectTransition(enabled, conflictSets[transitionId]) == transitionId;
+  }
+
+  /**
+   * Checks whether a transition missed its window since it was last
+   * sensitized. Must hold its input places.
+   */
+  private boolean isMissed(int transitionId) {
+    return missedAt[transitionId] == sensitizedAt[transitionId];
+  }
+
+  /**
+   * Applies a firing that evaluate reported as READY, records when the
+   * temporal transitions it enables were sensitized and traces it. Must hold
+   * its locks.
+   */
+  private void fire(int transitionId) {
+    int[] temporal = temporalAffected[transitionId];
+    boolean[] wasEnabled = new boolean[temporal.length];
+    for (int i = 0; i < temporal.length; i++) {
+      wasEnabled[i] = matrix.isEnabled(temporal[i], marking);
+    }
+    matrix.fire(transitionId, marking);
+    long now = System.nanoTime();
+    for (int i = 0; i < temporal.length; i++) {
+      int u = temporal[i];
+      // The fired transition itself counts as newly sensitized.
+      if ((!wasEnabled[i] || u == transitionId) && matrix.isEnabled(u, marking)) {
+        sensitizedAt[u] = now;
+      }
+    }
+    if (transitionId == 0) {
+      t0Counter++;
+    }
+    // While the places are still locked, so that two firings sharing a place
+    // are traced in the order they happened.
+    recordFiring(transitionId);
+  }
+
+  /**
+   * Checks whether the transition is enabled, locking its input places.
+   */
+  @Override
+  public boolean isEnabled(int transitionId) {
+    if (transitionId < 0 || transitionId >= inputOrder.length) {
+      return false;
+    }
+    int[] order = inputOrder[transitionId];
+    for (int p : order) {
+      placeLocks[p].lock();
+    }
+    try {
+      return matrix.isEnabled(transitionId, marking);
+    } finally {
+      for (int i = order.length - 1; i >= 0; i--) {
+        placeLocks[order[i]].unlock();
+      }
+    }
+  }
+
+  @Override
+  public boolean isReady(long[] mask) {
+    return IncidenceMatrix.firstMatch(mask, mask,
+        transitionId -> transitionId < lockOrder.length && canFire(transitionId)) >= 0;
+  }
+
+  /**
+   * Checks whether the transition is enabled and allowed by the policy,
+   * locking its places.
+   */
+  private boolean canFire(int transitionId) {
+    if (transitionId == 0 && t0Counter >= t0Limit) {
+      return false;
+    }
+    int[] order = lockOrder[transitionId];
+    for (int p : order) {
+      placeLocks[p].lock();
+    }
+    try {
+      return matrix.isEnabled(transitionId, marking) && !isMissed(transitionId)
+          && (!conflicting[transitionId] || isSelected(transitionId));
+    } finally {
+      for (int i = order.length - 1; i >= 0; i--) {
+        placeLocks[order[i]].unlock();
+      }
+    }
+  }
+
+  @Override
+  public int getTokenCount(int placeId) {
+    placeLocks[placeId].lock();
+    try {
+      return marking[placeId];
+    } finally {
+      placeLocks[placeId].unlock();
+    }
+  }
+
+  @Override
+  public int getT0Counter() {
+    return t0Counter;
+  }
+
+  @Override
+  public int getT0Limit() {
+    return t0Limit;
+  }
+
+  @Override
+  public Object getInvariantLock() {
+    return invariantLock;
+  }
+
+  @Override
+  public long getFiringCount(int transitionId) {
+    return firingCounts.get(transitionId);
+  }
+
+  @Override
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Returns the maximum number of transitions that were firing at the same
+   * time (holding their place locks).
+   *
+   * @return the maximum number of concurrent firings.
+   */
+  public int getMaxConcurrentFirings() {
+    return maxConcurrentFirings.get();
+  }
+
+  @Override
+  public void setTraceRecorder(TraceRecorder traceRecorder) {
+    this.traceRecorder = traceRecorder;
+  }
+
+  @Override
+  public void setMetrics(MetricsRegistry metrics) {
+    this.metrics = metrics;
+  }
+
+  private void recordFiring(int transitionId) {
+    TraceRecorder recorder = traceRecorder;
+    if (recorder != null) {
+      recorder.record(transitionId);
+    }
+  }
+
+  private String segmentNameOf(int transitionId) {
+    SegmentDispatcher segments = dispatcher;
+    return segments != null ? segments.segmentNameOf(transitionId) : null;
+  }
+
+  private void notifySegments(int transitionId) {
+    SegmentDispatcher segments = dispatcher;
+    if (segments != null) {
+      segments.notifySegments(transitionId);
+    }
+  }
+
+  @Override
+  public void startScheduler(List<Segment> segments, PoolManager poolManager) {
+    SegmentDispatcher segmentDispatcher = new SegmentDispatcher(matrix, segments);
+    dispatcher = segmentDispatcher;
+    segmentDispatcher.start(poolManager);
+  }
+
+  @Override
+  public void stopScheduler() {
+    SegmentDispatcher segments = dispatcher;
+    if (segments != null) {
+      segments.stop();
+    }
+  }
+}
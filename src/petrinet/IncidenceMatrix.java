@@ -0,0 +1,317 @@
+package petrinet;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Compiled representation of the structure of a Petri net.
+ * The pre and post incidence matrices are stored in CSR (compressed sparse
+ * row) form: for transition t, its input arcs are the entries
+ * [preStart[t], preStart[t + 1]) of prePlace/preWeight, and likewise for the
+ * output arcs.
+ *
+ * Enabling and firing operate directly on a primitive int[] marking, so the
+ * hot path neither boxes nor allocates.
+ */
+public class IncidenceMatrix {
+    private final int placeCount;
+    private final int transitionCount;
+
+    private final int[] preStart;
+    private final int[] prePlace;
+    private final int[] preWeight;
+
+    private final int[] postStart;
+    private final int[] postPlace;
+    private final int[] postWeight;
+
+    // For each transition t, the transitions whose enabling may change when t
+    // fires (those with an input place in the pre- or post-set of t), in CSR form.
+    private final int[] affectedStart;
+    private final int[] affected;
+
+    // Structural conflict sets: transitions sharing an input place, closed
+    // transitively, so that every transition belongs to exactly one set.
+    // conflictSetOf[t] indexes conflictSets, one bitmask per set.
+    private final int[] conflictSetOf;
+    private final long[][] conflictSets;
+
+    /**
+     * Compiles the given transitions into CSR incidence matrices.
+     * Transition ids are used directly as row indexes, so they are expected to
+     * be dense (0..n-1).
+     *
+     * @param placeCount  the number of places (place ids are 0..placeCount-1).
+     * @param transitions a mapping from transition IDs to Transition objects.
+     */
+    public IncidenceMatrix(int placeCount, Map<Integer, Transition> transitions) {
+        int maxId = -1;
+        int preArcs = 0;
+        int postArcs = 0;
+        for (Transition transition : transitions.values()) {
+            maxId = Math.max(maxId, transition.getId());
+            preArcs += transition.getPrePlaces().length;
+            postArcs += transition.getPostPlaces().length;
+        }
+        this.placeCount = placeCount;
+        this.transitionCount = maxId + 1;
+
+        preStart = new int[transitionCount + 1];
+        prePlace = new int[preArcs];
+        preWeight = new int[preArcs];
+        postStart = new int[transitionCount + 1];
+        postPlace = new int[postArcs];
+        postWeight = new int[postArcs];
+
+        // Rows are laid out in transition id order.
+        int pre = 0;
+        int post = 0;
+        for (int t = 0; t < transitionCount; t++) {
+            preStart[t] = pre;
+            postStart[t] = post;
+            Transition transition = transitions.get(t);
+            if (transition == null) {
+                continue;
+            }
+            int[] places = transition.getPrePlaces();
+            int[] weights = transition.getPreWeights();
+            for (int i = 0; i < places.length; i++, pre++) {
+                checkPlace(places[i]);
+                prePlace[pre] = places[i];
+                preWeight[pre] = weights[i];
+            }
+            places = transition.getPostPlaces();
+            weights = transition.getPostWeights();
+            for (int i = 0; i < places.length; i++, post++) {
+                checkPlace(places[i]);
+                postPlace[post] = places[i];
+                postWeight[post] = weights[i];
+            }
+        }
+        preStart[transitionCount] = pre;
+        postStart[transitionCount] = post;
+
+        // Invert the pre matrix: for each place, the transitions consuming from it.
+        int[] consumerStart = new int[placeCount + 1];
+        for (int i = 0; i < pre; i++) {
+            consumerStart[prePlace[i] + 1]++;
+        }
+        for (int p = 0; p < placeCount; p++) {
+            consumerStart[p + 1] += consumerStart[p];
+        }
+        int[] consumers = new int[pre];
+        int[] fill = consumerStart.clone();
+        for (int t = 0; t < transitionCount; t++) {
+            for (int i = preStart[t]; i < preStart[t + 1]; i++) {
+                consumers[fill[prePlace[i]]++] = t;
+            }
+        }
+
+        affectedStart = new int[transitionCount + 1];
+        int[] buffer = new int[16];
+        int count = 0;
+        // Marks the last row each transition was added to, to avoid duplicates.
+        int[] seen = new int[transitionCount];
+        Arrays.fill(seen, -1);
+        for (int t = 0; t < transitionCount; t++) {
+            affectedStart[t] = count;
+            for (int pass = 0; pass < 2; pass++) {
+                int[] start = pass == 0 ? preStart : postStart;
+                int[] place = pass == 0 ? prePlace : postPlace;
+                for (int i = start[t]; i < start[t + 1]; i++) {
+                    int p = place[i];
+                    for (int j = consumerStart[p]; j < consumerStart[p + 1]; j++) {
+                        int u = consumers[j];
+                        if (seen[u] != t) {
+                            seen[u] = t;
+                            if (count == buffer.length) {
+                                buffer = Arrays.copyOf(buffer, count * 2);
+                            }
+                            buffer[count++] = u;
+                        }
+                    }
+                }
+            }
+        }
+        affectedStart[transitionCount] = count;
+        affected = Arrays.copyOf(buffer, count);
+
+        // Union-find over the consumers of each place.
+        int[] parent = new int[transitionCount];
+        for (int t = 0; t < transitionCount; t++) {
+            parent[t] = t;
+        }
+        for (int p = 0; p < placeCount; p++) {
+            for (int j = consumerStart[p] + 1; j < consumerStart[p + 1]; j++) {
+                int a = find(parent, consumers[consumerStart[p]]);
+                int b = find(parent, consumers[j]);
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        conflictSetOf = new int[transitionCount];
+        int[] setOfRoot = new int[transitionCount];
+        int sets = 0;
+        for (int t = 0; t < transitionCount; t++) {
+            int root = find(parent, t);
+            // Roots are the lowest id of their set, so they are met first.
+            conflictSetOf[t] = root == t ? (setOfRoot[t] = sets++) : setOfRoot[root];
+        }
+        conflictSets = new long[sets][wordCount()];
+        for (int t = 0; t < transitionCount; t++) {
+            conflictSets[conflictSetOf[t]][t >>> 6] |= 1L << t;
+        }
+    }
+
+    private static int find(int[] parent, int t) {
+        while (parent[t] != t) {
+            parent[t] = parent[parent[t]];
+            t = parent[t];
+        }
+        return t;
+    }
+
+    private void checkPlace(int placeId) {
+        if (placeId < 0 || placeId >= placeCount) {
+            throw new IllegalArgumentException("Arc references unknown place " + placeId);
+        }
+    }
+
+    public int getPlaceCount() {
+        return placeCount;
+    }
+
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Checks whether transition t is enabled in the given marking.
+     *
+     * @param t       the transition id.
+     * @param marking the token count of each place.
+     * @return true if every input place holds at least the arc weight.
+     */
+    public boolean isEnabled(int t, int[] marking) {
+        for (int i = preStart[t], end = preStart[t + 1]; i < end; i++) {
+            if (marking[prePlace[i]] < preWeight[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recomputes the enabled bit of every transition in the marking.
+     *
+     * @param marking the token count of each place.
+     * @param enabled the enabled set, one bit per transition id.
+     */
+    public void computeEnabled(int[] marking, long[] enabled) {
+        Arrays.fill(enabled, 0L);
+        for (int t = 0; t < transitionCount; t++) {
+            if (isEnabled(t, marking)) {
+                enabled[t >>> 6] |= 1L << t;
+            }
+        }
+    }
+
+    /**
+     * Updates the enabled set after transition t has fired, recording the
+     * sensitization time of every transition that became enabled. Only the
+     * transitions sharing an input place with the pre- or post-set of t are
+     * re-evaluated. The fired transition itself counts as newly sensitized if
+     * it is still enabled.
+     *
+     * @param t            the transition that fired.
+     * @param marking      the token count of each place after the firing.
+     * @param enabled      the enabled set, one bit per transition id.
+     * @param sensitizedAt the sensitization timestamp of each transition.
+     * @param now          the timestamp to record.
+     */
+    public void updateEnabled(int t, int[] marking, long[] enabled, long[] sensitizedAt, long now) {
+        for (int i = affectedStart[t], end = affectedStart[t + 1]; i < end; i++) {
+            int u = affected[i];
+            long bit = 1L << u;
+            if (isEnabled(u, marking)) {
+                if ((enabled[u >>> 6] & bit) == 0 || u == t) {
+                    sensitizedAt[u] = now;
+                }
+                enabled[u >>> 6] |= bit;
+            } else {
+                enabled[u >>> 6] &= ~bit;
+            }
+        }
+    }
+
+    /**
+     * Returns the transitions whose enabling may change when t fires.
+     *
+     * @param t the transition id.
+     * @return a new array with the affected transition ids.
+     */
+    public int[] getAffected(int t) {
+        return Arrays.copyOfRange(affected, affectedStart[t], affectedStart[t + 1]);
+    }
+
+    /**
+     * Returns the structural conflict set of t: the transitions that share an
+     * input place with t, directly or through other transitions of the set
+     * (e.g. T2 and T3, which both consume from p3). A transition in no
+     * conflict is alone in its set.
+     *
+     * @param t the transition id.
+     * @return a new bitmask over transition ids.
+     */
+    public long[] getConflictSet(int t) {
+        return conflictSets[conflictSetOf[t]].clone();
+    }
+
+    /**
+     * Returns the lowest transition id in both sets that matches the
+     * predicate, testing them in increasing order and stopping at the first
+     * match (e.g. the enabled transitions of a conflict set that the policy
+     * allows).
+     *
+     * @param first     a transition set, one bit per transition id.
+     * @param second    another transition set.
+     * @param predicate the test applied to each transition of both sets.
+     * @return the first matching transition id, or -1 if none matches.
+     */
+    public static int firstMatch(long[] first, long[] second, IntPredicate predicate) {
+        for (int w = 0, words = Math.min(first.length, second.length); w < words; w++) {
+            long candidates = first[w] & second[w];
+            while (candidates != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(candidates);
+                if (predicate.test(t)) {
+                    return t;
+                }
+                candidates &= candidates - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of long words needed for a set of transitions.
+     */
+    public int wordCount() {
+        return (transitionCount + 63) >>> 6;
+    }
+
+    /**
+     * Applies the firing of transition t to the marking (M' = M - Pre + Post).
+     * The caller is responsible for checking that t is enabled.
+     *
+     * @param t       the transition id.
+     * @param marking the token count of each place, updated in place.
+     */
+    public void fire(int t, int[] marking) {
+        for (int i = preStart[t], end = preStart[t + 1]; i < end; i++) {
+            marking[prePlace[i]] -= preWeight[i];
+        }
+        for (int i = postStart[t], end = postStart[t + 1]; i < end; i++) {
+            marking[postPlace[i]] += postWeight[i];
+        }
+    }
+}
@@ -1,43 +1,95 @@
 
 package petrinet;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import metrics.LockProfiler;
 import utils.Logger;
-import utils.TransitionNotifier;
 
 /**
  * Represents the set of places in the Petri net.
  * Manages token counts and provides methods for token manipulation.
  * 
- * This version uses the ReentrantLock from TransitionNotifier for all
- * synchronization,
+ * This version uses a single ReentrantLock per net for all synchronization,
  * avoiding the deadlock that occurred by mixing intrinsic (synchronized) locks
- * and explicit locks.
+ * and explicit locks. The lock belongs to this instance (the Monitor shares
+ * it), so independent nets can run in parallel in the same JVM. Token
+ * changes do not signal anyone: the Monitor decides which single thread to
+ * wake up after each firing.
+ *
+ * Places and tokens are added by hand only while the net is being built.
+ * Once a monitor takes over the marking (see seal), it only changes through
+ * fire, so the monitor's enabled set and sensitization times never go stale.
  */
 public class Places {
-    // Map to store tokens for each place (placeId -> token count)
-    private final Map<Integer, Integer> tokens;
+    // Token count of each place, indexed by place id.
+    private int[] tokens;
+    // Number of places added so far (highest place id + 1).
+    private int placeCount;
+    // Set once a monitor owns the marking; guarded by lock.
+    private boolean sealed;
+    // Guards the tokens; also the monitor lock of the net. Profiled when run
+    // with -Dpetri.lockprofile=true.
+    private final ReentrantLock lock = LockProfiler.newLock("net");
     private static final Logger logger = Logger.getInstance();
 
     public Places() {
-        tokens = new HashMap<>();
+        tokens = new int[16];
+        placeCount = 0;
         logger.info("Places object created.");
     }
 
+    /**
+     * Returns the lock guarding this marking, which the Monitor uses as its
+     * monitor lock.
+     *
+     * @return the lock of the net.
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Hands the marking over to a monitor: from now on addPlace, addTokens
+     * and removeTokens throw, and tokens only move through fire.
+     */
+    public void seal() {
+        lock.lock();
+        try {
+            sealed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throws if a monitor owns the marking. Must hold the lock.
+     */
+    private void checkNotSealed() {
+        if (sealed) {
+            throw new IllegalStateException("The marking belongs to a monitor: fire transitions through it.");
+        }
+    }
+
     /**
      * Adds a new place with an initial token count.
      *
      * @param placeId       the identifier for the place
      * @param initialTokens the initial number of tokens in this place
+     * @throws IllegalStateException if a monitor owns the marking
      */
     public void addPlace(int placeId, int initialTokens) {
-        TransitionNotifier.lock.lock();
+        lock.lock();
         try {
-            tokens.put(placeId, initialTokens);
+            checkNotSealed();
+            if (placeId >= tokens.length) {
+                tokens = Arrays.copyOf(tokens, Math.max(placeId + 1, tokens.length * 2));
+            }
+            tokens[placeId] = initialTokens;
+            placeCount = Math.max(placeCount, placeId + 1);
             logger.info("Added place " + placeId + " with initial tokens: " + initialTokens);
         } finally {
-            TransitionNotifier.lock.unlock();
+            lock.unlock();
         }
     }
 
@@ -48,11 +100,11 @@ public class Places {
      * @return the number of tokens in the place
      */
     public int getTokenCount(int placeId) {
-        TransitionNotifier.lock.lock();
+        lock.lock();
         try {
-            return tokens.getOrDefault(placeId, 0);
+            return getTokenCountWithoutLock(placeId);
         } finally {
-            TransitionNotifier.lock.unlock();
+            lock.unlock();
         }
     }
 
@@ -61,19 +113,19 @@ public class Places {
      *
      * @param placeId the identifier for the place
      * @param count   number of tokens to add
+     * @throws IllegalStateException if a monitor owns the marking
      */
     public void addTokens(int placeId, int count) {
-        TransitionNotifier.lock.lock();
+        lock.lock();
         try {
+            checkNotSealed();
             int current = getTokenCountWithoutLock(placeId);
             int newCount = current + count;
-            tokens.put(placeId, newCount);
+            tokens[placeId] = newCount;
             // logger.info("Added " + count + " tokens to place " + placeId + ". New count:
             // " + newCount);
-            // Signal that the token state has changed.
-            TransitionNotifier.transitionsEnabled.signalAll();
         } finally {
-            TransitionNotifier.lock.unlock();
+            lock.unlock();
         }
     }
 
@@ -82,10 +134,12 @@ public class Places {
      *
      * @param placeId the identifier for the place
      * @param count   number of tokens to remove
+     * @throws IllegalStateException if a monitor owns the marking
      */
     public void removeTokens(int placeId, int count) {
-        TransitionNotifier.lock.lock();
+        lock.lock();
         try {
+            checkNotSealed();
             int current = getTokenCountWithoutLock(placeId);
             if (current < count) {
                 logger.error(
@@ -94,13 +148,11 @@ public class Places {
                         ". Required: " + count + ", available: " + current);
             }
             int newCount = current - count;
-            tokens.put(placeId, newCount);
+            tokens[placeId] = newCount;
             // logger.info("Removed " + count + " tokens from place " + placeId + ". New
             // count: " + newCount);
-            // Signal that the token state has changed.
-            TransitionNotifier.transitionsEnabled.signalAll();
         } finally {
-            TransitionNotifier.lock.unlock();
+            lock.unlock();
         }
     }
 
@@ -109,7 +161,96 @@ public class Places {
      * This method should only be called when the lock is already held.
      */
     private int getTokenCountWithoutLock(int placeId) {
-        return tokens.getOrDefault(placeId, 0);
+        return placeId < placeCount ? tokens[placeId] : 0;
+    }
+
+    /**
+     * Returns the number of places (highest place id + 1).
+     */
+    public int getPlaceCount() {
+        lock.lock();
+        try {
+            return placeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the places hold at least the given number of tokens.
+     *
+     * @param placeIds the places to check
+     * @param counts   the required tokens for each place
+     * @return true if every place holds enough tokens
+     */
+    public boolean hasTokens(int[] placeIds, int[] counts) {
+        lock.lock();
+        try {
+            for (int i = 0; i < placeIds.length; i++) {
+                if (getTokenCountWithoutLock(placeIds[i]) < counts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a transition of the compiled net is enabled.
+     *
+     * @param matrix       the compiled net
+     * @param transitionId the transition to check
+     * @return true if the transition is enabled in the current marking
+     */
+    public boolean isEnabled(IncidenceMatrix matrix, int transitionId) {
+        lock.lock();
+        try {
+            return matrix.isEnabled(transitionId, tokens);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fires a transition of the compiled net if it is enabled, updating the
+     * caller's enabled set and the sensitization time of the transitions that
+     * became enabled, all under a single lock acquisition.
+     *
+     * @param matrix       the compiled net
+     * @param transitionId the transition to fire
+     * @param enabled      the enabled set to keep up to date
+     * @param sensitizedAt the sensitization timestamp (System.nanoTime) of each transition
+     * @return true if the transition was enabled and has been fired
+     */
+    public boolean fire(IncidenceMatrix matrix, int transitionId, long[] enabled, long[] sensitizedAt) {
+        lock.lock();
+        try {
+            if (!matrix.isEnabled(transitionId, tokens)) {
+                return false;
+            }
+            matrix.fire(transitionId, tokens);
+            matrix.updateEnabled(transitionId, tokens, enabled, sensitizedAt, System.nanoTime());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Computes the enabled set of the compiled net in the current marking.
+     *
+     * @param matrix  the compiled net
+     * @param enabled the enabled set to fill, one bit per transition id
+     */
+    public void computeEnabled(IncidenceMatrix matrix, long[] enabled) {
+        lock.lock();
+        try {
+            matrix.computeEnabled(tokens, enabled);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -118,18 +259,18 @@ public class Places {
      * @return true if all invariants are satisfied, false otherwise.
      */
     public boolean checkInvariants() {
-        TransitionNotifier.lock.lock();
+        lock.lock();
         try {
-            for (Map.Entry<Integer, Integer> entry : tokens.entrySet()) {
-                if (entry.getValue() < 0) {
-                    logger.error("Invariant violation: Place " + entry.getKey() + " has negative tokens: "
-                            + entry.getValue());
+            for (int placeId = 0; placeId < placeCount; placeId++) {
+                if (tokens[placeId] < 0) {
+                    logger.error("Invariant violation: Place " + placeId + " has negative tokens: "
+                            + tokens[placeId]);
                     return false;
                 }
             }
             return true;
         } finally {
-            TransitionNotifier.lock.unlock();
+            lock.unlock();
         }
     }
 }
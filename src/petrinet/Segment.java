@@ -1,9 +1,11 @@
 
 package petrinet;
 
+import metrics.SegmentMetrics;
 import monitor.MonitorInterface;
-import monitor.Monitor;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import utils.Logger;
 
 /**
@@ -16,8 +18,17 @@ public class Segment implements Runnable {
     private final List<Transition> transitions;
     private final MonitorInterface monitor;
     private final Places places;
-    // Flag to prevent concurrent execution of the same segment.
-    private volatile boolean isRunning = false;
+    // The transitions of this segment as a bitmask over transition ids.
+    private final long[] transitionMask;
+    // Scheduling state, to prevent queueing or running the same segment twice.
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int RUNNING = 2;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    // Called when the segment becomes ready again after a run.
+    private volatile Consumer<Segment> readyListener = segment -> { };
+    // Run count and busy/idle time, or null when metrics are not collected.
+    private volatile SegmentMetrics metrics;
 
     private static final Logger logger = Logger.getInstance();
 
@@ -26,27 +37,38 @@ public class Segment implements Runnable {
         this.transitions = transitions;
         this.monitor = monitor;
         this.places = places;
+        this.transitionMask = buildMask(transitions);
         logger.info(segmentName + " initialized with " + transitions.size() + " transitions.");
     }
 
+    private static long[] buildMask(List<Transition> transitions) {
+        int maxId = 0;
+        for (Transition transition : transitions) {
+            maxId = Math.max(maxId, transition.getId());
+        }
+        long[] mask = new long[(maxId >>> 6) + 1];
+        for (Transition transition : transitions) {
+            mask[transition.getId() >>> 6] |= 1L << transition.getId();
+        }
+        return mask;
+    }
+
     /**
      * Checks whether this segment has at least one transition that is both enabled
      * (i.e., has the required tokens) and allowed by the policy.
+     * This is a bitmask AND against the monitor's enabled set.
      *
      * @return true if at least one transition is ready to be fired; false otherwise.
      */
     private boolean hasEnabledAndAllowedTransition() {
-        // Cast the monitor to our concrete Monitor to access the policy.
-        if (monitor instanceof Monitor) {
-            Monitor concreteMonitor = (Monitor) monitor;
-            for (Transition transition : transitions) {
-                if (transition.isEnabled(places) &&
-                    concreteMonitor.getPolicy().allowTransition(transition.getId(), places)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return monitor.isReady(transitionMask);
+    }
+
+    /**
+     * Returns the transitions of this segment as a bitmask over transition ids.
+     */
+    public long[] getTransitionMask() {
+        return transitionMask;
     }
 
     /**
@@ -56,8 +78,36 @@ public class Segment implements Runnable {
      *
      * @return true if the segment can be scheduled; false otherwise.
      */
-    public synchronized boolean canBeScheduled() {
-        return !isRunning && hasEnabledAndAllowedTransition();
+    public boolean canBeScheduled() {
+        return state.get() != RUNNING && hasEnabledAndAllowedTransition();
+    }
+
+    /**
+     * Marks this segment as queued for execution.
+     *
+     * @return true if the segment was idle; false if it is already queued or running.
+     */
+    public boolean markQueued() {
+        return state.compareAndSet(IDLE, QUEUED);
+    }
+
+    /**
+     * Sets the callback used to report that this segment is ready again after
+     * a run (typically Scheduler.enqueue).
+     *
+     * @param readyListener the callback.
+     */
+    public void setReadyListener(Consumer<Segment> readyListener) {
+        this.readyListener = readyListener;
+    }
+
+    /**
+     * Sets the counters updated by every run, or null to stop collecting them.
+     *
+     * @param metrics the segment metrics (see MetricsRegistry.registerSegment).
+     */
+    public void setMetrics(SegmentMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
@@ -74,24 +124,25 @@ public class Segment implements Runnable {
     @Override
     public void run() {
         // Set the running flag to prevent concurrent execution.
-        synchronized (this) {
-            if (isRunning) {
-                return;
-            }
-            isRunning = true;
+        if (!state.compareAndSet(QUEUED, RUNNING) && !state.compareAndSet(IDLE, RUNNING)) {
+            return;
         }
-        boolean firedAnyTransition = false;
+        SegmentMetrics runMetrics = metrics;
+        long start = runMetrics != null ? System.nanoTime() : 0;
         for (Transition transition : transitions) {
-            if (transition.isEnabled(places)) {
-                boolean fired = monitor.fireTransition(transition.getId());
-                if (fired) {
-                    firedAnyTransition = true;
-                }
+            if (monitor.isEnabled(transition.getId())) {
+                monitor.fireTransition(transition.getId());
             }
         }
+        if (runMetrics != null) {
+            runMetrics.recordRun(start, System.nanoTime());
+        }
         // Clear the running flag.
-        synchronized (this) {
-            isRunning = false;
+        state.set(IDLE);
+        // Firings that happened while we were running could not queue us, so
+        // check again whether we are ready.
+        if (hasEnabledAndAllowedTransition()) {
+            readyListener.accept(this);
         }
     }
 }
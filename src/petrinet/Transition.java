@@ -1,6 +1,7 @@
 package petrinet;
 
 import java.util.Map;
+import java.util.TreeMap;
 import utils.Logger;
 
 /**
@@ -9,10 +10,15 @@ import utils.Logger;
  */
 public class Transition {
     private final int id;
-    private final Map<Integer, Integer> preconditions; // Required tokens: placeId -> tokens required
-    private final Map<Integer, Integer> postconditions; // Tokens to add: placeId -> tokens to add
+    // Required tokens, as parallel arrays sorted by place id.
+    private final int[] prePlaces;
+    private final int[] preWeights;
+    // Tokens to add, as parallel arrays sorted by place id.
+    private final int[] postPlaces;
+    private final int[] postWeights;
     private final boolean isTemporal;
-    private final long delay; // delay in milliseconds for temporal transitions
+    private final long delay; // delay in milliseconds for temporal transitions (alpha)
+    private final long maxDelay; // end of the firing window in milliseconds (beta)
 
     // Logger instance for tracing events in Transition
     private static final Logger logger = Logger.getInstance();
@@ -26,7 +32,7 @@ public class Transition {
      */
     public Transition(int id, Map<Integer, Integer> preconditions, Map<Integer, Integer> postconditions) {
         this(id, preconditions, postconditions, false, 0);
-        logger.info("Transition " + id + " created (non-temporal).");
+        logger.info("Transition {} created (non-temporal).", id);
     }
 
     /**
@@ -40,18 +46,72 @@ public class Transition {
      */
     public Transition(int id, Map<Integer, Integer> preconditions, Map<Integer, Integer> postconditions,
             boolean isTemporal, long delay) {
+        this(id, preconditions, postconditions, isTemporal, delay, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for temporal transitions with a bounded firing window.
+     * Once sensitized, the transition may fire between delay and maxDelay
+     * milliseconds later.
+     *
+     * @param id             transition identifier
+     * @param preconditions  map of preconditions (placeId -> required tokens)
+     * @param postconditions map of postconditions (placeId -> tokens to add)
+     * @param isTemporal     indicates if the transition is temporal
+     * @param delay          start of the firing window (alpha), in milliseconds
+     * @param maxDelay       end of the firing window (beta), in milliseconds
+     */
+    public Transition(int id, Map<Integer, Integer> preconditions, Map<Integer, Integer> postconditions,
+            boolean isTemporal, long delay, long maxDelay) {
         this.id = id;
-        this.preconditions = preconditions;
-        this.postconditions = postconditions;
+        this.prePlaces = keys(preconditions);
+        this.preWeights = values(preconditions);
+        this.postPlaces = keys(postconditions);
+        this.postWeights = values(postconditions);
         this.isTemporal = isTemporal;
         this.delay = delay;
+        this.maxDelay = maxDelay;
         if (isTemporal) {
             logger.info("Transition " + id + " created (temporal) with delay " + delay + " ms.");
         } else {
-            logger.info("Transition " + id + " created (non-temporal).");
+            logger.info("Transition {} created (non-temporal).", id);
         }
     }
 
+    /**
+     * Constructor for transitions whose arcs are already compiled into
+     * parallel arrays (for example by the PNML loader). The place ids must be
+     * sorted in ascending order.
+     *
+     * @param id          transition identifier
+     * @param prePlaces   input places, sorted
+     * @param preWeights  tokens required from each input place
+     * @param postPlaces  output places, sorted
+     * @param postWeights tokens added to each output place
+     * @param isTemporal  indicates if the transition is temporal
+     * @param delay       start of the firing window (alpha), in milliseconds
+     * @param maxDelay    end of the firing window (beta), in milliseconds
+     */
+    public Transition(int id, int[] prePlaces, int[] preWeights, int[] postPlaces, int[] postWeights,
+            boolean isTemporal, long delay, long maxDelay) {
+        this.id = id;
+        this.prePlaces = prePlaces;
+        this.preWeights = preWeights;
+        this.postPlaces = postPlaces;
+        this.postWeights = postWeights;
+        this.isTemporal = isTemporal;
+        this.delay = delay;
+        this.maxDelay = maxDelay;
+    }
+
+    private static int[] keys(Map<Integer, Integer> arcs) {
+        return new TreeMap<>(arcs).keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] values(Map<Integer, Integer> arcs) {
+        return new TreeMap<>(arcs).values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
     public int getId() {
         return id;
     }
@@ -64,6 +124,38 @@ public class Transition {
         return delay;
     }
 
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Returns the input places of this transition, sorted by place id.
+     */
+    public int[] getPrePlaces() {
+        return prePlaces;
+    }
+
+    /**
+     * Returns the tokens required from each input place (see getPrePlaces).
+     */
+    public int[] getPreWeights() {
+        return preWeights;
+    }
+
+    /**
+     * Returns the output places of this transition, sorted by place id.
+     */
+    public int[] getPostPlaces() {
+        return postPlaces;
+    }
+
+    /**
+     * Returns the tokens added to each output place (see getPostPlaces).
+     */
+    public int[] getPostWeights() {
+        return postWeights;
+    }
+
     /**
      * Checks if the transition is enabled based on the current state of places.
      *
@@ -71,37 +163,24 @@ public class Transition {
      * @return true if all preconditions are met, false otherwise.
      */
     public boolean isEnabled(Places places) {
-        boolean enabled = true;
-        for (Map.Entry<Integer, Integer> entry : preconditions.entrySet()) {
-            int placeId = entry.getKey();
-            int requiredTokens = entry.getValue();
-            if (places.getTokenCount(placeId) < requiredTokens) {
-                enabled = false;
-                // Removed per-iteration debug logging to reduce log volume.
-                // logger.debug("Transition " + id + " is not enabled because place " + placeId
-                // +
-                // " has insufficient tokens.");
-                break;
-            }
-        }
-        // Removed logging here as well to avoid frequent logs in loop.
-        // if (enabled) {
-        // logger.debug("Transition " + id + " is enabled.");
-        // }
-        return enabled;
+        return places.hasTokens(prePlaces, preWeights);
     }
 
     /**
      * Fires the transition: applies preconditions and postconditions to the Places.
+     * Only for a marking no monitor owns yet (see Places.seal); once a monitor
+     * runs the net, transitions fire through it.
      *
      * @param places the Places object to update.
      * @throws InterruptedException if the thread is interrupted during a temporal
      *                              delay.
+     * @throws IllegalStateException if the transition is not enabled or a
+     *                               monitor owns the marking.
      */
     public void fire(Places places) throws InterruptedException {
         // logger.info("Attempting to fire Transition " + id);
         if (!isEnabled(places)) {
-            // logger.error("Transition " + id + " is not enabled and cannot be fired.");
+            // logger.error("Transition {} is not enabled and cannot be fired.", id);
             throw new IllegalStateException("Transition " + id + " is not enabled.");
         }
         if (isTemporal) {
@@ -110,23 +189,13 @@ public class Transition {
             Thread.sleep(delay);
         }
         // Remove tokens from input places (preconditions)
-        for (Map.Entry<Integer, Integer> entry : preconditions.entrySet()) {
-            int placeId = entry.getKey();
-            int tokensToRemove = entry.getValue();
-            // Removing logging in the inner loop to reduce frequency.
-            // logger.debug("Transition " + id + " removing " + tokensToRemove + " tokens
-            // from place " + placeId);
-            places.removeTokens(placeId, tokensToRemove);
+        for (int i = 0; i < prePlaces.length; i++) {
+            places.removeTokens(prePlaces[i], preWeights[i]);
         }
         // Add tokens to output places (postconditions)
-        for (Map.Entry<Integer, Integer> entry : postconditions.entrySet()) {
-            int placeId = entry.getKey();
-            int tokensToAdd = entry.getValue();
-            // Removing logging in the inner loop.
-            // logger.debug("Transition " + id + " adding " + tokensToAdd + " tokens to
-            // place " + placeId);
-            places.addTokens(placeId, tokensToAdd);
+        for (int i = 0; i < postPlaces.length; i++) {
+            places.addTokens(postPlaces[i], postWeights[i]);
         }
-        logger.info("Transition " + id + " fired successfully.");
+        logger.info("Transition {} fired successfully.", id);
     }
 }
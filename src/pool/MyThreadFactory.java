@@ -1,13 +1,16 @@
 package pool;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Custom ThreadFactory to create threads with a specific naming convention
  * and track the maximum number of concurrently active threads.
+ * It also creates ForkJoinPool workers, with the same naming and tracking.
  */
-public class MyThreadFactory implements ThreadFactory {
+public class MyThreadFactory implements ThreadFactory, ForkJoinPool.ForkJoinWorkerThreadFactory {
     private final String baseName;
     private final AtomicInteger threadCount = new AtomicInteger(0);
     // Counter for currently active threads.
@@ -52,6 +55,37 @@ public class MyThreadFactory implements ThreadFactory {
         return thread;
     }
 
+    /**
+     * Creates a ForkJoinPool worker with a custom name, tracking it as active
+     * while it runs.
+     *
+     * @param pool the pool the worker belongs to.
+     * @return a new worker thread.
+     */
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = new ForkJoinWorkerThread(pool) {
+            @Override
+            protected void onStart() {
+                super.onStart();
+                int active = currentActiveThreads.incrementAndGet();
+                maxActiveThreads.updateAndGet(max -> Math.max(max, active));
+            }
+
+            @Override
+            protected void onTermination(Throwable exception) {
+                currentActiveThreads.decrementAndGet();
+                super.onTermination(exception);
+            }
+        };
+        worker.setName(baseName + "-" + threadCount.incrementAndGet());
+        return worker;
+    }
+
+    public String getBaseName() {
+        return baseName;
+    }
+
     /**
      * Returns the maximum number of threads that were active simultaneously.
      *
@@ -1,18 +1,33 @@
 package pool;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * PoolManager encapsulates the management of a thread pool.
  * It is responsible for task submission and pool shutdown.
  * Additionally, it allows measuring actual concurrency (maximum number of tasks running simultaneously).
+ * The backend is either a fixed pool with a shared queue or a work-stealing
+ * ForkJoinPool (see PoolMode).
  */
 public class PoolManager {
+  // Default bound of the task queue.
+  public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
   private final ExecutorService executorService;
-  
+  // The same pool as executorService in FORK_JOIN mode, null otherwise.
+  private final ForkJoinPool forkJoinPool;
+  private final PoolMode mode;
+
   // Counter for currently running tasks.
   private final AtomicInteger currentRunningTasks = new AtomicInteger(0);
   // Maximum number of tasks running simultaneously.
@@ -26,7 +41,129 @@ public class PoolManager {
    * @param threadFactory the custom ThreadFactory to use for creating threads.
    */
   public PoolManager(int maxThreads, MyThreadFactory threadFactory) {
-    executorService = Executors.newFixedThreadPool(maxThreads, threadFactory);
+    this(maxThreads, threadFactory, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Initializes the thread pool with a bounded task queue. When the queue is
+   * full, submitTask blocks until there is room.
+   *
+   * @param maxThreads    the maximum number of concurrent threads allowed.
+   * @param threadFactory the custom ThreadFactory to use for creating threads.
+   * @param queueCapacity the maximum number of tasks waiting for a thread.
+   */
+  public PoolManager(int maxThreads, MyThreadFactory threadFactory, int queueCapacity) {
+    this(maxThreads, threadFactory, queueCapacity, PoolMode.FIXED);
+  }
+
+  /**
+   * Initializes the thread pool with the given backend. FIXED behaves like
+   * the other constructors; FORK_JOIN creates a work-stealing pool in async
+   * (FIFO) mode whose workers are created by the same factory, so the active
+   * thread metrics are kept either way.
+   *
+   * @param maxThreads    the maximum number of concurrent threads allowed.
+   * @param threadFactory the custom ThreadFactory to use for creating threads.
+   * @param queueCapacity the maximum number of queued tasks (FIXED only).
+   * @param mode          the execution backend.
+   */
+  public PoolManager(int maxThreads, MyThreadFactory threadFactory, int queueCapacity, PoolMode mode) {
+    this.mode = mode;
+    if (mode == PoolMode.FORK_JOIN) {
+      forkJoinPool = new ForkJoinPool(maxThreads, threadFactory, null, true);
+      executorService = forkJoinPool;
+    } else if (mode == PoolMode.THREAD_PER_SEGMENT) {
+      // maxThreads does not apply: every segment gets its own thread.
+      forkJoinPool = null;
+      ThreadFactory virtualFactory = virtualThreadFactory(threadFactory.getBaseName());
+      executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+          new SynchronousQueue<>(), virtualFactory != null ? virtualFactory : threadFactory);
+    } else {
+      forkJoinPool = null;
+      executorService = new ThreadPoolExecutor(maxThreads, maxThreads, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(queueCapacity), threadFactory, (task, executor) -> {
+            if (executor.isShutdown()) {
+              throw new RejectedExecutionException("Pool is shut down.");
+            }
+            try {
+              executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new RejectedExecutionException("Interrupted while waiting for room in the queue.", e);
+            }
+          });
+    }
+  }
+
+  /**
+   * Returns a factory of virtual threads if this JVM supports them (JDK 21+),
+   * looked up reflectively so the code still compiles and runs on older JDKs.
+   *
+   * @param baseName the base name for the threads.
+   * @return the factory, or null if virtual threads are not available.
+   */
+  private static ThreadFactory virtualThreadFactory(String baseName) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, baseName + "-", 1L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  public PoolMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Starts a long-lived loop (such as the thread of a segment) on its own
+   * thread: it waits for work and runs it, until the wait returns false.
+   * Only the runs count as running tasks, not the waits, so the maximum
+   * number of concurrently running tasks means the same as in the other
+   * modes. THREAD_PER_SEGMENT mode only.
+   *
+   * @param awaitWork blocks until there is work; false to end the loop.
+   * @param work      the work run each time.
+   */
+  public void startLoop(BooleanSupplier awaitWork, Runnable work) {
+    if (mode != PoolMode.THREAD_PER_SEGMENT) {
+      throw new IllegalStateException("Long-running loops need the THREAD_PER_SEGMENT mode.");
+    }
+    executorService.execute(() -> {
+      while (awaitWork.getAsBoolean()) {
+        runMeasured(work);
+      }
+    });
+  }
+
+  /**
+   * Runs a task in the calling thread, counting it as a running task.
+   *
+   * @param task the task to run.
+   */
+  public void runMeasured(Runnable task) {
+    // Increment the counter of running tasks.
+    int running = currentRunningTasks.incrementAndGet();
+    // Update the maximum if necessary.
+    maxConcurrentTasks.updateAndGet(max -> Math.max(max, running));
+    try {
+      task.run();
+    } finally {
+      // Decrement the counter when the task finishes.
+      currentRunningTasks.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns whether the calling thread is a worker of this pool that can
+   * take submitted tasks on its own local deque (FORK_JOIN mode only).
+   *
+   * @return true if submitTask from this thread stays on the current worker.
+   */
+  public boolean isLocalWorker() {
+    return forkJoinPool != null && ForkJoinTask.getPool() == forkJoinPool;
   }
 
   /**
@@ -36,18 +173,13 @@ public class PoolManager {
    * @param task the Runnable task to execute.
    */
   public void submitTask(Runnable task) {
-    executorService.submit(() -> {
-      // Increment the counter of running tasks.
-      int running = currentRunningTasks.incrementAndGet();
-      // Update the maximum if necessary.
-      maxConcurrentTasks.updateAndGet(max -> Math.max(max, running));
-      try {
-        task.run();
-      } finally {
-        // Decrement the counter when the task finishes.
-        currentRunningTasks.decrementAndGet();
-      }
-    });
+    Runnable measured = () -> runMeasured(task);
+    if (isLocalWorker()) {
+      // Keep the task on this worker's deque, hot in this core's cache.
+      ForkJoinTask.adapt(measured).fork();
+    } else {
+      executorService.execute(measured);
+    }
   }
 
   /**
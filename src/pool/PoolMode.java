@@ -0,0 +1,23 @@
+package pool;
+
+/**
+ * Execution backends supported by PoolManager.
+ */
+public enum PoolMode {
+  /**
+   * A fixed pool with a single shared, bounded FIFO queue.
+   */
+  FIXED,
+  /**
+   * A work-stealing ForkJoinPool in async mode. Tasks submitted from one of its
+   * workers go to that worker's local deque; idle workers steal.
+   */
+  FORK_JOIN,
+  /**
+   * One long-lived thread per segment, blocking until one of the transitions
+   * of its segment is enabled and allowed by the policy and then running the
+   * segment, with no Scheduler thread. Uses virtual threads when the JVM
+   * provides them (JDK 21+), platform threads otherwise.
+   */
+  THREAD_PER_SEGMENT
+}
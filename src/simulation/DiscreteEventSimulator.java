@@ -0,0 +1,338 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import monitor.Policy;
+import petrinet.IncidenceMatrix;
+import petrinet.Places;
+import petrinet.Transition;
+
+/**
+ * Runs a Petri net as a deterministic discrete-event simulation.
+ *
+ * Instead of sleeping, temporal transitions advance a virtual clock (in the
+ * unit of their delays, milliseconds). When a temporal transition becomes
+ * sensitized, its window opening (sensitization time + delay) is pushed on
+ * a priority queue of pending completions. At each step, one transition is
+ * fired among those that are enabled, allowed by the policy, and (if
+ * temporal) have their window open, chosen with a seeded random generator;
+ * when there is none, the clock jumps to the next pending completion.
+ *
+ * The firing rules are those of Monitor (enabling, policy selection within
+ * the conflict set and counter update, [alpha, beta] window from the
+ * sensitization time), so the policy makes the same decisions as in a
+ * threaded run, with no threads, locks or sleeps involved. In particular, a
+ * temporal transition held back past beta can no longer fire until it is
+ * sensitized again. Like Main, the simulation stops when T0 has fired the
+ * requested number of times.
+ */
+public class DiscreteEventSimulator {
+  private final IncidenceMatrix matrix;
+  private final Policy policy;
+  private final int transitionCount;
+
+  // Per transition: whether it is temporal, and its window [alpha, beta].
+  private final boolean[] temporal;
+  private final long[] alpha;
+  private final long[] beta;
+  // Transitions whose enabling may change when each transition fires.
+  private final int[][] affected;
+  // Structural conflict set of each transition (see Policy.selectTransition).
+  private final long[][] conflictSets;
+
+  private final int[] marking;
+  private final long[] enabled;
+  private final long[] sensitizedAt;
+  // Incremented whenever a transition is sensitized again, to discard the
+  // stale entries of the event queue.
+  private final int[] version;
+  private final EventQueue events = new EventQueue();
+  private final SplittableRandom random;
+
+  private long now = 0;
+  private long firings = 0;
+  private final long[] firingCounts;
+  private long missedWindows = 0;
+  // The version of the sensitization of each transition last counted as a
+  // missed window, so that each is counted once.
+  private final int[] missedVersion;
+  // Scratch list of the transitions that can fire at the current time.
+  private final int[] candidates;
+  private int candidateCount;
+
+  /**
+   * Builds a simulator over the given net. The marking is copied from places.
+   *
+   * @param places      the Places holding the initial marking.
+   * @param transitions a mapping from transition IDs to Transition objects.
+   * @param policy      the policy deciding between conflicting transitions.
+   * @param seed        the seed used to choose among fireable transitions.
+   */
+  public DiscreteEventSimulator(Places places, Map<Integer, Transition> transitions, Policy policy, long seed) {
+    this.matrix = new IncidenceMatrix(places.getPlaceCount(), transitions);
+    this.policy = policy;
+    this.transitionCount = matrix.getTransitionCount();
+    this.random = new SplittableRandom(seed);
+
+    temporal = new boolean[transitionCount];
+    alpha = new long[transitionCount];
+    beta = new long[transitionCount];
+    affected = new int[transitionCount][];
+    conflictSets = new long[transitionCount][];
+    for (int t = 0; t < transitionCount; t++) {
+      Transition transition = transitions.get(t);
+      if (transition != null && transition.isTemporal()) {
+        temporal[t] = true;
+        alpha[t] = transition.getDelay();
+        beta[t] = transition.getMaxDelay();
+      }
+      affected[t] = matrix.getAffected(t);
+      conflictSets[t] = matrix.getConflictSet(t);
+    }
+
+    marking = new int[places.getPlaceCount()];
+    for (int p = 0; p < marking.length; p++) {
+      marking[p] = places.getTokenCount(p);
+    }
+    enabled = new long[matrix.wordCount()];
+    sensitizedAt = new long[transitionCount];
+    version = new int[transitionCount];
+    firingCounts = new long[transitionCount];
+    candidates = new int[transitionCount];
+    missedVersion = new int[transitionCount];
+    Arrays.fill(missedVersion, -1);
+
+    matrix.computeEnabled(marking, enabled);
+    for (int t = 0; t < transitionCount; t++) {
+      if (isEnabled(t) && temporal[t]) {
+        events.push(alpha[t], t, version[t]);
+      }
+    }
+  }
+
+  private boolean isEnabled(int t) {
+    return (enabled[t >>> 6] & (1L << t)) != 0;
+  }
+
+  /**
+   * Runs until T0 has fired the given number of times, or no transition can
+   * fire any more.
+   *
+   * @param t0Firings the number of T0 firings to reach.
+   * @return true if the target was reached, false if the net got stuck.
+   */
+  public boolean run(long t0Firings) {
+    while (firingCounts.length == 0 || firingCounts[0] < t0Firings) {
+      if (!step()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fires one transition, advancing the clock first if nothing can fire now.
+   *
+   * @return false if no transition can fire at this or any later time.
+   */
+  public boolean step() {
+    while (true) {
+      int count = collectCandidates();
+      if (count > 0) {
+        fire(candidates[count == 1 ? 0 : random.nextInt(count)]);
+        return true;
+      }
+      if (!advanceClock()) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Collects the transitions that are enabled, allowed and within their
+   * window at the current time. A temporal transition past its beta bound
+   * is skipped, as the Monitor refuses it.
+   */
+  private int collectCandidates() {
+    candidateCount = 0;
+    IncidenceMatrix.firstMatch(enabled, enabled, this::collect);
+    return candidateCount;
+  }
+
+  /**
+   * Adds an enabled transition to the candidates if it can fire now.
+   *
+   * @return always false, so that every enabled transition is visited.
+   */
+  private boolean collect(int t) {
+    if (temporal[t] && now - sensitizedAt[t] < alpha[t]) {
+      return false;
+    }
+    if (temporal[t] && now - sensitizedAt[t] > beta[t]) {
+      if (missedVersion[t] != version[t]) {
+        missedVersion[t] = version[t];
+        missedWindows++;
+      }
+      return false;
+    }
+    if (policy.selectTransition(enabled, conflictSets[t]) == t) {
+      candidates[candidateCount++] = t;
+    }
+    return false;
+  }
+
+  /**
+   * Moves the clock to the next valid pending completion.
+   *
+   * @return false if there is none.
+   */
+  private boolean advanceClock() {
+    while (!events.isEmpty()) {
+      long time = events.peekTime();
+      int t = events.peekTransition();
+      int eventVersion = events.peekVersion();
+      events.pop();
+      if (eventVersion == version[t] && isEnabled(t) && time > now) {
+        now = time;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void fire(int t) {
+    matrix.fire(t, marking);
+    matrix.updateEnabled(t, marking, enabled, sensitizedAt, now);
+    policy.updateCounters(t);
+    firings++;
+    firingCounts[t]++;
+    // Schedule the window opening of the temporal transitions sensitized by
+    // this firing (updateEnabled stamped them with the current time).
+    for (int u : affected[t]) {
+      if (temporal[u] && isEnabled(u) && sensitizedAt[u] == now) {
+        version[u]++;
+        events.push(now + alpha[u], u, version[u]);
+      }
+    }
+  }
+
+  public long getTime() {
+    return now;
+  }
+
+  public long getFiringCount() {
+    return firings;
+  }
+
+  /**
+   * Returns how many times a transition has fired.
+   *
+   * @param transitionId the transition id.
+   * @return the number of firings.
+   */
+  public long getFiringCount(int transitionId) {
+    return firingCounts[transitionId];
+  }
+
+  /**
+   * Returns how many times a temporal transition reached its beta bound
+   * without firing (because the policy or a conflict held it back), which
+   * leaves it blocked until it is sensitized again.
+   *
+   * @return the number of missed windows.
+   */
+  public long getMissedWindows() {
+    return missedWindows;
+  }
+
+  public int getTokenCount(int placeId) {
+    return marking[placeId];
+  }
+
+  public int getPlaceCount() {
+    return marking.length;
+  }
+
+  /**
+   * A binary min-heap of (time, transition, version) entries, kept in
+   * parallel primitive arrays so that scheduling does not allocate.
+   */
+  private static final class EventQueue {
+    private long[] times = new long[64];
+    private int[] transitions = new int[64];
+    private int[] versions = new int[64];
+    private int size = 0;
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    long peekTime() {
+      return times[0];
+    }
+
+    int peekTransition() {
+      return transitions[0];
+    }
+
+    int peekVersion() {
+      return versions[0];
+    }
+
+    void push(long time, int transition, int version) {
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        transitions = Arrays.copyOf(transitions, size * 2);
+        versions = Arrays.copyOf(versions, size * 2);
+      }
+      int i = size++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (times[parent] <= time) {
+          break;
+        }
+        move(parent, i);
+        i = parent;
+      }
+      times[i] = time;
+      transitions[i] = transition;
+      versions[i] = version;
+    }
+
+    void pop() {
+      size--;
+      if (size == 0) {
+        return;
+      }
+      long time = times[size];
+      int transition = transitions[size];
+      int version = versions[size];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && times[child + 1] < times[child]) {
+          child++;
+        }
+        if (times[child] >= time) {
+          break;
+        }
+        move(child, i);
+        i = child;
+      }
+      times[i] = time;
+      transitions[i] = transition;
+      versions[i] = version;
+    }
+
+    private void move(int from, int to) {
+      times[to] = times[from];
+      transitions[to] = transitions[from];
+      versions[to] = versions[from];
+    }
+  }
+}
@@ -0,0 +1,496 @@
+package simulation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import monitor.BalancedPolicy;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.MonitorType;
+import monitor.Policy;
+import monitor.PriorityPolicy;
+import pool.MyThreadFactory;
+import pool.PoolManager;
+import utils.Logger;
+import utils.PetriNet;
+
+/**
+ * Headless batch runner for parameter sweeps.
+ *
+ * The grid is read from a properties file; every key takes a comma-separated
+ * list of values, and every combination is run the given number of times:
+ *
+ * <pre>
+ * # Policy names, or fully qualified Policy class names.
+ * policies=balanced,priority
+ * # Threaded monitor run, or DiscreteEventSimulator.
+ * modes=threads,des
+ * # Monitor implementation: coarse, striped or lockfree (threads mode only).
+ * monitors=coarse,striped
+ * # Threads of the PoolManager (threads mode only).
+ * poolSizes=2,4,8
+ * # T0 firings to reach, as in Main.
+ * invariants=187
+ * # Alpha (ms) of temporal transition T1.
+ * delay.1=5,10
+ * repetitions=5
+ * # Runs in parallel (default: all cores).
+ * parallelism=8
+ * # Per threaded run.
+ * timeoutSeconds=600
+ * # Optional PNML net.
+ * net=files/net.pnml
+ * </pre>
+ *
+ * Properties files only allow comments on lines of their own. The monitor
+ * and pool size do not apply to des runs, which are expanded once per
+ * remaining combination and reported with "-" for them.
+ *
+ * Runs are independent net instances (each with its own monitor lock) run
+ * in parallel. The per-run results are written to runs.csv, and the mean,
+ * standard deviation and 95% confidence interval (Student t) of each metric
+ * per configuration to results.csv and results.json.
+ *
+ * The clock column tells how elapsedMs (and the throughput derived from it)
+ * was measured: "wall" for threaded runs, "virtual" for des runs, whose
+ * elapsedMs is simulated time. wallMs is always real time.
+ *
+ * Usage: java simulation.ExperimentRunner grid.properties outputDir
+ */
+public class ExperimentRunner {
+  private static final Logger logger = Logger.getInstance();
+
+  // Two-sided 95% Student t critical values for 1..30 degrees of freedom.
+  private static final double[] T_95 = {
+      12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+      2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+      2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+  };
+
+  /**
+   * One point of the parameter grid.
+   */
+  public static final class Config {
+    final String policy;
+    final String mode;
+    final String monitor;
+    final int poolSize;
+    final int invariants;
+    final Map<Integer, Long> delays;
+
+    Config(String policy, String mode, String monitor, int poolSize, int invariants, Map<Integer, Long> delays) {
+      this.policy = policy;
+      this.mode = mode;
+      this.monitor = monitor;
+      this.poolSize = poolSize;
+      this.invariants = invariants;
+      this.delays = delays;
+    }
+
+    boolean isDes() {
+      return "des".equals(mode);
+    }
+
+    /**
+     * Returns the clock elapsedMs is measured with.
+     */
+    String clock() {
+      return isDes() ? "virtual" : "wall";
+    }
+
+    String delaysText() {
+      StringBuilder text = new StringBuilder();
+      for (Map.Entry<Integer, Long> delay : delays.entrySet()) {
+        text.append(text.length() == 0 ? "" : ";").append('T').append(delay.getKey()).append('=')
+            .append(delay.getValue());
+      }
+      return text.toString();
+    }
+  }
+
+  /**
+   * The metrics of one run, by name, in a fixed order.
+   */
+  public static final class RunResult {
+    final Config config;
+    final int repetition;
+    final boolean completed;
+    final Map<String, Double> metrics;
+
+    RunResult(Config config, int repetition, boolean completed, Map<String, Double> metrics) {
+      this.config = config;
+      this.repetition = repetition;
+      this.completed = completed;
+      this.metrics = metrics;
+    }
+  }
+
+  private final List<Config> grid;
+  private final int repetitions;
+  private final int parallelism;
+  private final long timeoutSeconds;
+  private final Path netFile;
+
+  /**
+   * Builds a runner from a grid description (see the class comment).
+   *
+   * @param properties the grid.
+   */
+  public ExperimentRunner(Properties properties) {
+    this.repetitions = Integer.parseInt(properties.getProperty("repetitions", "1").trim());
+    this.parallelism = Integer.parseInt(properties.getProperty("parallelism",
+        String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+    this.timeoutSeconds = Long.parseLong(properties.getProperty("timeoutSeconds", "600").trim());
+    String net = properties.getProperty("net");
+    this.netFile = net == null ? null : Paths.get(net.trim());
+
+    List<Map<Integer, Long>> delayGrid = new ArrayList<>();
+    delayGrid.add(new TreeMap<>());
+    for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+      if (!key.startsWith("delay.")) {
+        continue;
+      }
+      int transitionId = Integer.parseInt(key.substring("delay.".length()));
+      List<Map<Integer, Long>> expanded = new ArrayList<>();
+      for (Map<Integer, Long> delays : delayGrid) {
+        for (String value : list(properties, key, null)) {
+          Map<Integer, Long> next = new TreeMap<>(delays);
+          next.put(transitionId, Long.parseLong(value));
+          expanded.add(next);
+        }
+      }
+      delayGrid = expanded;
+    }
+
+    grid = new ArrayList<>();
+    for (String policy : list(properties, "policies", "balanced")) {
+      for (String mode : list(properties, "modes", "threads")) {
+        // The monitor and pool are not used by the simulator.
+        boolean des = "des".equals(mode);
+        for (String monitor : des ? List.of(NOT_APPLICABLE) : list(properties, "monitors", "coarse")) {
+          for (String poolSize : des ? List.of("0") : list(properties, "poolSizes", "4")) {
+            for (String invariants : list(properties, "invariants", String.valueOf(Monitor.DEFAULT_T0_LIMIT))) {
+              for (Map<Integer, Long> delays : delayGrid) {
+                grid.add(new Config(policy, mode, monitor, Integer.parseInt(poolSize),
+                    Integer.parseInt(invariants), delays));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Monitor of the des runs, which use none.
+  private static final String NOT_APPLICABLE = "-";
+
+  private static List<String> list(Properties properties, String key, String defaultValue) {
+    List<String> values = new ArrayList<>();
+    String raw = properties.getProperty(key, defaultValue);
+    for (String value : raw.split(",")) {
+      if (!value.trim().isEmpty()) {
+        values.add(value.trim());
+      }
+    }
+    return values;
+  }
+
+  public List<Config> getGrid() {
+    return grid;
+  }
+
+  /**
+   * Runs every configuration the given number of times, in parallel.
+   *
+   * @return the results, grouped by configuration in grid order.
+   * @throws InterruptedException if interrupted while waiting for the runs.
+   */
+  public List<RunResult> runAll() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+        new MyThreadFactory("ExperimentThread"));
+    List<Future<RunResult>> futures = new ArrayList<>();
+    for (Config config : grid) {
+      for (int r = 0; r < repetitions; r++) {
+        int repetition = r;
+        futures.add(executor.submit(() -> run(config, repetition)));
+      }
+    }
+    List<RunResult> results = new ArrayList<>();
+    try {
+      for (Future<RunResult> future : futures) {
+        results.add(future.get());
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Experiment run failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  private static Policy createPolicy(String name) throws ReflectiveOperationException {
+    if ("balanced".equalsIgnoreCase(name)) {
+      return new BalancedPolicy();
+    }
+    if ("priority".equalsIgnoreCase(name)) {
+      return new PriorityPolicy();
+    }
+    return (Policy) Class.forName(name).getDeclaredConstructor().newInstance();
+  }
+
+  /**
+   * Runs one configuration once.
+   */
+  private RunResult run(Config config, int repetition) throws Exception {
+    Policy policy = createPolicy(config.policy);
+    MonitorType monitorType = config.isDes() ? MonitorType.COARSE : MonitorType.fromName(config.monitor);
+    PetriNet net = new PetriNet(policy, monitorType, netFile, config.delays, config.invariants);
+    int transitionCount = net.getTransitions().size();
+    long[] counts = new long[transitionCount];
+    boolean completed;
+    double elapsedMs;
+    long start = System.nanoTime();
+
+    if (config.isDes()) {
+      DiscreteEventSimulator simulator = new DiscreteEventSimulator(net.getPlaces(), net.getTransitions(), policy,
+          repetition);
+      completed = simulator.run(config.invariants);
+      for (int t = 0; t < transitionCount; t++) {
+        counts[t] = simulator.getFiringCount(t);
+      }
+      // Virtual time (see the clock column).
+      elapsedMs = simulator.getTime();
+    } else {
+      MonitorInterface monitor = net.getMonitor();
+      PoolManager poolManager = new PoolManager(config.poolSize,
+          new MyThreadFactory("Run" + repetition + "Thread"), Math.max(1, net.getSegments().size()));
+      monitor.startScheduler(net.getSegments(), poolManager);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+      synchronized (monitor.getInvariantLock()) {
+        long left;
+        while (monitor.getT0Counter() < config.invariants && (left = deadline - System.nanoTime()) > 0) {
+          TimeUnit.NANOSECONDS.timedWait(monitor.getInvariantLock(), left);
+        }
+      }
+      completed = monitor.getT0Counter() >= config.invariants;
+      monitor.stopScheduler();
+      poolManager.shutdownNow();
+      elapsedMs = (System.nanoTime() - start) / 1e6;
+      for (int t = 0; t < transitionCount; t++) {
+        counts[t] = monitor.getFiringCount(t);
+      }
+    }
+    double wallMs = (System.nanoTime() - start) / 1e6;
+
+    Map<String, Double> metrics = new LinkedHashMap<>();
+    metrics.put("elapsedMs", elapsedMs);
+    metrics.put("wallMs", wallMs);
+    // Invariants started (T0 firings) per second.
+    long started = transitionCount > 0 ? counts[0] : 0;
+    metrics.put("throughput", elapsedMs > 0 ? started * 1000.0 / elapsedMs : 0.0);
+    metrics.put("superiorRatio", ratio(policy, true));
+    metrics.put("confirmedRatio", ratio(policy, false));
+    for (int t = 0; t < transitionCount; t++) {
+      metrics.put("T" + t, (double) counts[t]);
+    }
+    if (!completed) {
+      logger.warn("Run " + repetition + " of " + config.policy + "/" + config.mode + " did not complete.");
+    }
+    return new RunResult(config, repetition, completed, metrics);
+  }
+
+  /**
+   * Returns superior / (superior + inferior) or confirmed / (confirmed +
+   * cancelled) for the policies that count them, NaN otherwise.
+   */
+  private static double ratio(Policy policy, boolean reservations) {
+    int first;
+    int second;
+    if (policy instanceof BalancedPolicy) {
+      BalancedPolicy balanced = (BalancedPolicy) policy;
+      first = reservations ? balanced.getSuperiorCount() : balanced.getConfirmedCount();
+      second = reservations ? balanced.getInferiorCount() : balanced.getCancelledCount();
+    } else if (policy instanceof PriorityPolicy) {
+      PriorityPolicy priority = (PriorityPolicy) policy;
+      first = reservations ? priority.getSuperiorCount() : priority.getConfirmedCount();
+      second = reservations ? priority.getInferiorCount() : priority.getCancelledCount();
+    } else {
+      return Double.NaN;
+    }
+    return first + second == 0 ? Double.NaN : (double) first / (first + second);
+  }
+
+  /**
+   * Mean, standard deviation and 95% confidence half-width of a metric.
+   */
+  static double[] summarize(List<Double> values) {
+    int n = values.size();
+    double mean = 0;
+    for (double value : values) {
+      mean += value;
+    }
+    mean /= n;
+    double squares = 0;
+    for (double value : values) {
+      squares += (value - mean) * (value - mean);
+    }
+    double sd = n > 1 ? Math.sqrt(squares / (n - 1)) : 0.0;
+    double t = n < 2 ? 0.0 : n - 1 <= T_95.length ? T_95[n - 2] : 1.96;
+    return new double[] {mean, sd, n > 1 ? t * sd / Math.sqrt(n) : 0.0};
+  }
+
+  /**
+   * Writes runs.csv, results.csv and results.json to the directory.
+   *
+   * @param results   the results of runAll.
+   * @param directory the output directory; created if missing.
+   * @throws IOException if a file cannot be written.
+   */
+  public void write(List<RunResult> results, Path directory) throws IOException {
+    Files.createDirectories(directory);
+    if (results.isEmpty()) {
+      return;
+    }
+    List<String> metricNames = new ArrayList<>(results.get(0).metrics.keySet());
+
+    try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("runs.csv"))) {
+      out.write("policy,mode,monitor,poolSize,invariants,delays,clock,repetition,completed");
+      for (String metric : metricNames) {
+        out.write("," + metric);
+      }
+      out.newLine();
+      for (RunResult result : results) {
+        out.write(configCsv(result.config) + "," + result.repetition + "," + result.completed);
+        for (String metric : metricNames) {
+          out.write("," + result.metrics.get(metric));
+        }
+        out.newLine();
+      }
+    }
+
+    // Group the repetitions of each configuration (results are in grid order).
+    Map<Config, List<RunResult>> byConfig = new LinkedHashMap<>();
+    for (RunResult result : results) {
+      byConfig.computeIfAbsent(result.config, c -> new ArrayList<>()).add(result);
+    }
+
+    try (BufferedWriter csv = Files.newBufferedWriter(directory.resolve("results.csv"));
+        BufferedWriter json = Files.newBufferedWriter(directory.resolve("results.json"))) {
+      csv.write("policy,mode,monitor,poolSize,invariants,delays,clock,runs,completed");
+      for (String metric : metricNames) {
+        csv.write("," + metric + "Mean," + metric + "Sd," + metric + "Ci95");
+      }
+      csv.newLine();
+      json.write("[");
+      boolean firstConfig = true;
+      for (Map.Entry<Config, List<RunResult>> entry : byConfig.entrySet()) {
+        Config config = entry.getKey();
+        List<RunResult> runs = entry.getValue();
+        int completed = 0;
+        for (RunResult run : runs) {
+          completed += run.completed ? 1 : 0;
+        }
+        csv.write(configCsv(config) + "," + runs.size() + "," + completed);
+        json.write(firstConfig ? "\n" : ",\n");
+        firstConfig = false;
+        json.write("  {\"policy\": " + jsonString(config.policy) + ", \"mode\": " + jsonString(config.mode)
+            + ", \"monitor\": " + (config.isDes() ? "null" : jsonString(config.monitor))
+            + ", \"poolSize\": " + (config.isDes() ? "null" : String.valueOf(config.poolSize))
+            + ", \"invariants\": " + config.invariants + ", \"clock\": " + jsonString(config.clock())
+            + ", \"delays\": {");
+        boolean firstDelay = true;
+        for (Map.Entry<Integer, Long> delay : config.delays.entrySet()) {
+          json.write((firstDelay ? "" : ", ") + "\"T" + delay.getKey() + "\": " + delay.getValue());
+          firstDelay = false;
+        }
+        json.write("}, \"runs\": " + runs.size() + ", \"completed\": " + completed + ", \"metrics\": {");
+        boolean firstMetric = true;
+        for (String metric : metricNames) {
+          List<Double> values = new ArrayList<>();
+          for (RunResult run : runs) {
+            double value = run.metrics.get(metric);
+            if (!Double.isNaN(value)) {
+              values.add(value);
+            }
+          }
+          double[] summary = values.isEmpty() ? new double[] {Double.NaN, Double.NaN, Double.NaN}
+              : summarize(values);
+          csv.write("," + summary[0] + "," + summary[1] + "," + summary[2]);
+          json.write((firstMetric ? "" : ", ") + "\"" + metric + "\": {\"mean\": " + jsonNumber(summary[0])
+              + ", \"sd\": " + jsonNumber(summary[1]) + ", \"ci95\": " + jsonNumber(summary[2]) + "}");
+          firstMetric = false;
+        }
+        json.write("}}");
+        csv.newLine();
+      }
+      json.write("\n]\n");
+    }
+  }
+
+  private static String configCsv(Config config) {
+    return config.policy + "," + config.mode + "," + config.monitor + ","
+        + (config.isDes() ? NOT_APPLICABLE : String.valueOf(config.poolSize)) + "," + config.invariants + ","
+        + config.delaysText() + "," + config.clock();
+  }
+
+  /**
+   * Quotes a string for JSON, escaping quotes, backslashes and control
+   * characters (policy names may be arbitrary class names).
+   */
+  private static String jsonString(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static String jsonNumber(double value) {
+    return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length != 2) {
+      System.err.println("Usage: java simulation.ExperimentRunner grid.properties outputDir");
+      System.exit(1);
+    }
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+      properties.load(reader);
+    }
+    // Only warnings and errors: the runs would otherwise flood the log.
+    logger.setLevel(Logger.Level.WARN);
+    ExperimentRunner runner = new ExperimentRunner(properties);
+    System.out.println("Running " + runner.getGrid().size() + " configurations x " + runner.repetitions
+        + " repetitions on " + runner.parallelism + " threads.");
+    long start = System.currentTimeMillis();
+    List<RunResult> results = runner.runAll();
+    runner.write(results, Paths.get(args[1]));
+    System.out.println("Wrote " + results.size() + " runs to " + args[1] + " in "
+        + (System.currentTimeMillis() - start) + " ms.");
+    logger.close();
+  }
+}
@@ -4,29 +4,96 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /**
- * A simple, thread-safe Logger that writes log messages to a file.
+ * A thread-safe, asynchronous Logger that writes log messages to a file.
  * This Logger is implemented as a singleton to ensure a single point of
  * logging.
  *
+ * Logging threads only copy the event (level, thread, nanoTime, message or
+ * template and its int arguments) into a pre-allocated slot of a lock-free
+ * ring buffer. A background thread formats the events and writes them in
+ * batches, so no formatting or I/O happens in the caller (e.g. while holding
+ * the monitor lock). Messages below the current level are dropped before
+ * anything is built; use the parameterized or Supplier variants to avoid
+ * building the message at all.
+ *
+ * The level is read from the petri.log.level system property (DEBUG, INFO,
+ * WARN or ERROR; INFO by default).
+ *
  * Log entry format:
  * [YYYY-MM-DD HH:MM:SS] [Thread-Name] [LEVEL] Message
  */
 public class Logger {
+  /**
+   * Log levels, in increasing order of severity.
+   */
+  public enum Level {
+    DEBUG, INFO, WARN, ERROR
+  }
+
   // Singleton instance of the Logger.
-  private static Logger instance = null;
+  private static volatile Logger instance = null;
   // Lock object for thread-safe initialization.
   private static final Object lock = new Object();
 
+  // Number of slots in the ring buffer (a power of two).
+  private static final int CAPACITY = 8192;
+  private static final int MASK = CAPACITY - 1;
+  // How long the writer thread sleeps when the buffer is empty.
+  private static final long IDLE_PARK_NANOS = 1_000_000L;
+
   private PrintWriter writer;
   private final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+  private volatile Level level;
+
+  // The ring buffer. A slot with sequence s is free for the producer that
+  // claimed position s, and holds a published event for the consumer when its
+  // sequence is s + 1 (the usual bounded-queue sequence scheme).
+  private final Event[] ring = new Event[CAPACITY];
+  private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+  // Next position to claim by producers.
+  private final AtomicLong tail = new AtomicLong();
+  // Next position to consume; only used by the writer thread.
+  private long head = 0;
+
+  private final Thread writerThread;
+  private volatile boolean closed = false;
+
+  // Clock used to turn event nanoTimes into wall-clock timestamps.
+  private final long baseMillis = System.currentTimeMillis();
+  private final long baseNanos = System.nanoTime();
+  // Last formatted second, cached by the writer thread.
+  private long cachedSecond = Long.MIN_VALUE;
+  private String cachedTimestamp;
+  private final StringBuilder line = new StringBuilder(128);
+
+  /**
+   * A pre-allocated log event. Written by the producer that claimed its slot,
+   * then read by the writer thread.
+   */
+  private static final class Event {
+    Level level;
+    Thread thread;
+    long nanoTime;
+    // A plain message, or a template with {} placeholders when argCount > 0.
+    String text;
+    int argCount;
+    int arg0;
+    int arg1;
+  }
 
   /**
    * Private constructor to initialize the Logger.
-   * Clears the log file on initialization.
+   * Clears the log file on initialization and starts the writer thread.
    */
   private Logger() {
     try {
@@ -35,6 +102,28 @@ public class Logger {
     } catch (IOException e) {
       System.err.println("Failed to initialize Logger: " + e.getMessage());
     }
+    level = parseLevel(System.getProperty("petri.log.level"));
+    for (int i = 0; i < CAPACITY; i++) {
+      ring[i] = new Event();
+      sequences.set(i, i);
+    }
+    writerThread = new Thread(this::writeLoop, "LoggerThread");
+    writerThread.setDaemon(true);
+    writerThread.start();
+    // Flush pending events even if close() is never called.
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close, "LoggerShutdown"));
+  }
+
+  private static Level parseLevel(String name) {
+    if (name == null) {
+      return Level.INFO;
+    }
+    try {
+      return Level.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      System.err.println("Unknown log level " + name + ", using INFO.");
+      return Level.INFO;
+    }
   }
 
   /**
@@ -53,18 +142,74 @@ public class Logger {
     return instance;
   }
 
+  public Level getLevel() {
+    return level;
+  }
+
+  public void setLevel(Level level) {
+    this.level = level;
+  }
+
+  /**
+   * Returns whether messages of the given level are logged.
+   *
+   * @param level the level to check.
+   * @return true if the level is at or above the current level.
+   */
+  public boolean isEnabled(Level level) {
+    return level.compareTo(this.level) >= 0 && !closed;
+  }
+
   /**
    * Logs a message with the given level.
    *
-   * @param level   the log level (e.g., INFO, DEBUG, WARN, ERROR).
+   * @param level   the log level.
    * @param message the message to log.
    */
-  public synchronized void log(String level, String message) {
-    String timestamp = LocalDateTime.now().format(dtf);
-    // Log format: [timestamp] [Thread-Name] [LEVEL] Message
-    String logLine = String.format("[%s] [%s] [%s] %s", timestamp, Thread.currentThread().getName(), level, message);
-    writer.println(logLine);
-    writer.flush();
+  public void log(Level level, String message) {
+    if (isEnabled(level)) {
+      publish(level, message, 0, 0, 0);
+    }
+  }
+
+  /**
+   * Logs a message built from a template, replacing its first {} with arg.
+   *
+   * @param level    the log level.
+   * @param template the message template.
+   * @param arg      the argument.
+   */
+  public void log(Level level, String template, int arg) {
+    if (isEnabled(level)) {
+      publish(level, template, 1, arg, 0);
+    }
+  }
+
+  /**
+   * Logs a message built from a template, replacing its first two {} with
+   * the arguments.
+   *
+   * @param level    the log level.
+   * @param template the message template.
+   * @param arg0     the first argument.
+   * @param arg1     the second argument.
+   */
+  public void log(Level level, String template, int arg0, int arg1) {
+    if (isEnabled(level)) {
+      publish(level, template, 2, arg0, arg1);
+    }
+  }
+
+  /**
+   * Logs a message that is only built if the level is enabled.
+   *
+   * @param level   the log level.
+   * @param message supplies the message to log.
+   */
+  public void log(Level level, Supplier<String> message) {
+    if (isEnabled(level)) {
+      publish(level, message.get(), 0, 0, 0);
+    }
   }
 
   /**
@@ -73,7 +218,19 @@ public class Logger {
    * @param message the message to log.
    */
   public void info(String message) {
-    log("INFO", message);
+    log(Level.INFO, message);
+  }
+
+  public void info(String template, int arg) {
+    log(Level.INFO, template, arg);
+  }
+
+  public void info(String template, int arg0, int arg1) {
+    log(Level.INFO, template, arg0, arg1);
+  }
+
+  public void info(Supplier<String> message) {
+    log(Level.INFO, message);
   }
 
   /**
@@ -82,7 +239,19 @@ public class Logger {
    * @param message the message to log.
    */
   public void debug(String message) {
-    log("DEBUG", message);
+    log(Level.DEBUG, message);
+  }
+
+  public void debug(String template, int arg) {
+    log(Level.DEBUG, template, arg);
+  }
+
+  public void debug(String template, int arg0, int arg1) {
+    log(Level.DEBUG, template, arg0, arg1);
+  }
+
+  public void debug(Supplier<String> message) {
+    log(Level.DEBUG, message);
   }
 
   /**
@@ -91,7 +260,19 @@ public class Logger {
    * @param message the message to log.
    */
   public void warn(String message) {
-    log("WARN", message);
+    log(Level.WARN, message);
+  }
+
+  public void warn(String template, int arg) {
+    log(Level.WARN, template, arg);
+  }
+
+  public void warn(String template, int arg0, int arg1) {
+    log(Level.WARN, template, arg0, arg1);
+  }
+
+  public void warn(Supplier<String> message) {
+    log(Level.WARN, message);
   }
 
   /**
@@ -100,13 +281,149 @@ public class Logger {
    * @param message the message to log.
    */
   public void error(String message) {
-    log("ERROR", message);
+    log(Level.ERROR, message);
+  }
+
+  public void error(String template, int arg) {
+    log(Level.ERROR, template, arg);
+  }
+
+  public void error(String template, int arg0, int arg1) {
+    log(Level.ERROR, template, arg0, arg1);
+  }
+
+  public void error(Supplier<String> message) {
+    log(Level.ERROR, message);
+  }
+
+  /**
+   * Copies an event into the next slot of the ring buffer. If the buffer is
+   * full, waits for the writer thread to free the slot.
+   */
+  private void publish(Level level, String text, int argCount, int arg0, int arg1) {
+    long position = tail.getAndIncrement();
+    int index = (int) position & MASK;
+    int spins = 0;
+    while (sequences.get(index) != position) {
+      if (closed && !writerThread.isAlive()) {
+        // Nobody will free the slot any more; drop the message.
+        return;
+      }
+      if (++spins < 100) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(1_000L);
+      }
+    }
+    Event event = ring[index];
+    event.level = level;
+    event.thread = Thread.currentThread();
+    event.nanoTime = System.nanoTime();
+    event.text = text;
+    event.argCount = argCount;
+    event.arg0 = arg0;
+    event.arg1 = arg1;
+    // Publish the slot to the writer thread.
+    sequences.set(index, position + 1);
+  }
+
+  /**
+   * Body of the writer thread: drains the ring buffer in batches until the
+   * Logger is closed and every claimed slot has been written.
+   */
+  private void writeLoop() {
+    while (true) {
+      if (drain() > 0) {
+        continue;
+      }
+      if (closed && head == tail.get()) {
+        break;
+      }
+      LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+    }
   }
 
   /**
-   * Closes the Logger and releases any associated resources.
+   * Writes every published event and flushes once.
+   *
+   * @return the number of events written.
    */
-  public synchronized void close() {
+  private int drain() {
+    int count = 0;
+    while (true) {
+      int index = (int) head & MASK;
+      if (sequences.get(index) != head + 1) {
+        break;
+      }
+      Event event = ring[index];
+      if (writer != null) {
+        writer.println(format(event));
+      }
+      event.thread = null;
+      event.text = null;
+      // Hand the slot back to the producer that will claim it next lap.
+      sequences.lazySet(index, head + CAPACITY);
+      head++;
+      count++;
+    }
+    if (count > 0 && writer != null) {
+      writer.flush();
+    }
+    return count;
+  }
+
+  private String format(Event event) {
+    line.setLength(0);
+    // Log format: [timestamp] [Thread-Name] [LEVEL] Message
+    line.append('[').append(timestamp(event.nanoTime)).append("] [")
+        .append(event.thread.getName()).append("] [")
+        .append(event.level).append("] ");
+    String text = event.text;
+    if (event.argCount == 0) {
+      line.append(text);
+      return line.toString();
+    }
+    int from = 0;
+    for (int i = 0; i < event.argCount; i++) {
+      int at = text.indexOf("{}", from);
+      if (at < 0) {
+        break;
+      }
+      line.append(text, from, at).append(i == 0 ? event.arg0 : event.arg1);
+      from = at + 2;
+    }
+    line.append(text, from, text.length());
+    return line.toString();
+  }
+
+  private String timestamp(long nanoTime) {
+    long millis = baseMillis + (nanoTime - baseNanos) / 1_000_000L;
+    long second = Math.floorDiv(millis, 1000L);
+    if (second != cachedSecond) {
+      cachedSecond = second;
+      cachedTimestamp = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+          .format(dtf);
+    }
+    return cachedTimestamp;
+  }
+
+  /**
+   * Closes the Logger, writing every pending message, and releases any
+   * associated resources. Messages logged afterwards are dropped.
+   */
+  public void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
     if (writer != null) {
       writer.close();
     }
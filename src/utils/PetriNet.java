@@ -1,26 +1,37 @@
 package utils;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import monitor.LockFreeMonitor;
 import monitor.Monitor;
 import monitor.MonitorInterface;
+import monitor.MonitorType;
 import monitor.Policy;
+import monitor.StripedMonitor;
 import petrinet.Places;
 import petrinet.Segment;
 import petrinet.Transition;
 
 /**
  * PetriNet encapsulates the construction of a Petri net.
- * It creates Places, Transitions, Segments, and the Monitor.
+ * It creates Places, Transitions, Segments, and the Monitor, either for the
+ * built-in net or from a PNML file.
  */
 public class PetriNet {
     private Places places;
     private Map<Integer, Transition> transitions;
     private List<Segment> segments;
     private MonitorInterface monitor;
+    // Delays (alpha, in ms) replacing those of the temporal transitions.
+    private Map<Integer, Long> delayOverrides = Collections.emptyMap();
+    // Number of T0 firings after which the Monitor finishes.
+    private int t0Limit = Monitor.DEFAULT_T0_LIMIT;
 
     /**
      * Constructs a PetriNet using the specified Policy.
@@ -28,10 +39,103 @@ public class PetriNet {
      * @param policy the policy to be used by the Monitor.
      */
     public PetriNet(Policy policy) {
-        buildNet(policy);
+        this(policy, MonitorType.COARSE);
     }
 
-    private void buildNet(Policy policy) {
+    /**
+     * Constructs a PetriNet using the specified Policy.
+     *
+     * @param policy      the policy to be used by the Monitor.
+     * @param monitorType the monitor implementation to build.
+     */
+    public PetriNet(Policy policy, MonitorType monitorType) {
+        buildNet(policy, monitorType);
+    }
+
+    /**
+     * Constructs a PetriNet from a PNML file (see PnmlLoader) using the
+     * specified Policy.
+     *
+     * @param policy      the policy to be used by the Monitor.
+     * @param monitorType the monitor implementation to build.
+     * @param pnmlFile    the PNML file describing the net and its segments.
+     * @throws IOException if the file cannot be read or is not valid PNML.
+     */
+    public PetriNet(Policy policy, MonitorType monitorType, Path pnmlFile) throws IOException {
+        buildNet(policy, monitorType, PnmlLoader.load(pnmlFile));
+    }
+
+    /**
+     * Constructs a PetriNet with the given experiment parameters.
+     *
+     * @param policy      the policy to be used by the Monitor.
+     * @param monitorType the monitor implementation to build.
+     * @param pnmlFile    the PNML file describing the net, or null for the
+     *                    built-in net.
+     * @param delays      delays (in ms) replacing those of the given temporal
+     *                    transitions, by transition id.
+     * @param t0Limit     the number of T0 firings after which the Monitor
+     *                    finishes.
+     * @throws IOException if the file cannot be read or is not valid PNML.
+     */
+    public PetriNet(Policy policy, MonitorType monitorType, Path pnmlFile, Map<Integer, Long> delays, int t0Limit)
+            throws IOException {
+        this.delayOverrides = delays;
+        this.t0Limit = t0Limit;
+        if (pnmlFile == null) {
+            buildNet(policy, monitorType);
+        } else {
+            buildNet(policy, monitorType, PnmlLoader.load(pnmlFile));
+        }
+    }
+
+    /**
+     * Returns the delay of a temporal transition, unless it is overridden.
+     */
+    private long delayOf(int transitionId, long delay) {
+        Long override = delayOverrides.get(transitionId);
+        return override != null ? override : delay;
+    }
+
+    private MonitorInterface createMonitor(Policy policy, MonitorType monitorType) {
+        switch (monitorType) {
+            case STRIPED:
+                return new StripedMonitor(places, transitions, policy, t0Limit);
+            case LOCK_FREE:
+                return new LockFreeMonitor(places, transitions, policy, t0Limit);
+            default:
+                return new Monitor(places, transitions, policy, t0Limit);
+        }
+    }
+
+    private void buildNet(Policy policy, MonitorType monitorType, PnmlLoader.LoadedNet net) {
+        places = new Places();
+        for (int p = 0; p < net.getPlaceCount(); p++) {
+            places.addPlace(p, net.getInitialMarking(p));
+        }
+
+        transitions = new HashMap<>();
+        for (int t = 0; t < net.getTransitionCount(); t++) {
+            transitions.put(t, new Transition(t, net.getPrePlaces(t), net.getPreWeights(t),
+                    net.getPostPlaces(t), net.getPostWeights(t),
+                    net.isTimed(t), net.isTimed(t) ? delayOf(t, net.getDelay(t)) : net.getDelay(t),
+                    net.getMaxDelay(t)));
+        }
+
+        monitor = createMonitor(policy, monitorType);
+
+        segments = new ArrayList<>();
+        List<String> names = net.getSegmentNames();
+        for (int s = 0; s < names.size(); s++) {
+            List<Transition> members = new ArrayList<>();
+            for (int t : net.getSegmentTransitions().get(s)) {
+                members.add(transitions.get(t));
+            }
+            segments.add(new Segment(names.get(s), members, monitor, places));
+        }
+    }
+
+    private void buildNet(Policy policy, MonitorType monitorType) {
         // Initialize Places.
         // We create 15 places: p0 to p14.
         // p0 and p4 have max 5 tokens; p1, p6, p7, and p10 have max 1 token; others start with 0.
@@ -70,7 +174,7 @@ public class PetriNet {
         Map<Integer, Integer> postT1 = new HashMap<>();
         postT1.put(1, 1);
         postT1.put(3, 1);
-        Transition t1 = new Transition(1, preT1, postT1, true, 5);
+        Transition t1 = new Transition(1, preT1, postT1, true, delayOf(1, 5));
 
         // T2: takes from p3 and p6; sends 1 token to p5 and 1 token to p4.
         Map<Integer, Integer> preT2 = new HashMap<>();
@@ -96,7 +200,7 @@ public class PetriNet {
         Map<Integer, Integer> postT4 = new HashMap<>();
         postT4.put(7, 1);
         postT4.put(9, 1);
-        Transition t4 = new Transition(4, preT4, postT4, true, 50);
+        Transition t4 = new Transition(4, preT4, postT4, true, delayOf(4, 50));
 
         // T5: takes from p5; sends 1 token to p6 and 1 token to p9; 200ms delay.
         Map<Integer, Integer> preT5 = new HashMap<>();
@@ -104,7 +208,7 @@ public class PetriNet {
         Map<Integer, Integer> postT5 = new HashMap<>();
         postT5.put(6, 1);
         postT5.put(9, 1);
-        Transition t5 = new Transition(5, preT5, postT5, true, 5);
+        Transition t5 = new Transition(5, preT5, postT5, true, delayOf(5, 5));
 
         // T6: takes from p9 and p10; sends 1 token to p11.
         Map<Integer, Integer> preT6 = new HashMap<>();
@@ -128,14 +232,14 @@ public class PetriNet {
         Map<Integer, Integer> postT8 = new HashMap<>();
         postT8.put(10, 1);
         postT8.put(14, 1);
-        Transition t8 = new Transition(8, preT8, postT8, true, 50);
+        Transition t8 = new Transition(8, preT8, postT8, true, delayOf(8, 50));
 
         // T9: takes from p11; sends 1 token to p13; 100ms delay.
         Map<Integer, Integer> preT9 = new HashMap<>();
         preT9.put(11, 1);
         Map<Integer, Integer> postT9 = new HashMap<>();
         postT9.put(13, 1);
-        Transition t9 = new Transition(9, preT9, postT9, true, 5);
+        Transition t9 = new Transition(9, preT9, postT9, true, delayOf(9, 5));
 
         // T10: takes from p13; sends 1 token to p10 and 1 token to p14; 100ms delay.
         Map<Integer, Integer> preT10 = new HashMap<>();
@@ -143,7 +247,7 @@ public class PetriNet {
         Map<Integer, Integer> postT10 = new HashMap<>();
         postT10.put(10, 1);
         postT10.put(14, 1);
-        Transition t10 = new Transition(10, preT10, postT10, true, 5);
+        Transition t10 = new Transition(10, preT10, postT10, true, delayOf(10, 5));
 
         // T11: takes from p14; sends 1 token to p0; no delay.
         Map<Integer, Integer> preT11 = new HashMap<>();
@@ -167,7 +271,7 @@ public class PetriNet {
         transitions.put(t11.getId(), t11);
 
         // Create the Monitor using the provided policy.
-        monitor = new Monitor(places, transitions, policy);
+        monitor = createMonitor(policy, monitorType);
 
         // Create Segments according to the specification.
         segments = new ArrayList<>();
@@ -231,4 +335,11 @@ public class PetriNet {
     public MonitorInterface getMonitor() {
         return monitor;
     }
+
+    /**
+     * Returns the number of T0 firings after which the net stops.
+     */
+    public int getT0Limit() {
+        return t0Limit;
+    }
 }
\ No newline at end of file
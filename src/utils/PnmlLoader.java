@@ -0,0 +1,656 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming loader for PNML files as written by PIPE (such as
+ * files/Petri tp.xml).
+ *
+ * The file is read once with StAX, without building a DOM. Places,
+ * transitions and arcs go straight into primitive arrays, and the arcs are
+ * then bucketed into CSR pre/post rows per transition, sorted by place.
+ *
+ * Node ids of the form P&lt;n&gt; / T&lt;n&gt; keep their number as index (so
+ * T2 stays transition 2, which the policies rely on); any other ids are
+ * numbered in order of appearance.
+ *
+ * Besides standard PNML, a tool-specific section assigns transitions to
+ * segments and gives the timing of temporal transitions:
+ *
+ * <pre>
+ * &lt;toolspecific tool="TPFinal" version="1.0"&gt;
+ *   &lt;segment name="SegmentA" transitions="T0 T1"/&gt;
+ *   &lt;timing transition="T1" delay="5" maxDelay="100"/&gt;
+ * &lt;/toolspecific&gt;
+ * </pre>
+ *
+ * A timed transition without a timing entry falls back to its PIPE rate,
+ * rounded, as delay in milliseconds. PIPE's rate is the parameter of an
+ * exponential distribution (firings per time unit), not a delay, so no
+ * conversion would be exact: give such transitions a timing entry (a warning
+ * is logged). Without segment entries, each transition gets its own segment.
+ *
+ * Parallel arcs between the same place and transition are merged, their
+ * weights summed. Place capacities are not supported by the monitors, so a
+ * place with a capacity other than 0 (unbounded) is rejected rather than
+ * silently ignored.
+ */
+public class PnmlLoader {
+    public static final String TOOL_NAME = "TPFinal";
+
+    private static final Logger logger = Logger.getInstance();
+
+    /**
+     * The compact result of loading a PNML file.
+     */
+    public static class LoadedNet {
+        private final int placeCount;
+        private final int transitionCount;
+        private final int[] initialMarking;
+        private final int[] preStart;
+        private final int[] prePlace;
+        private final int[] preWeight;
+        private final int[] postStart;
+        private final int[] postPlace;
+        private final int[] postWeight;
+        private final boolean[] timed;
+        private final long[] delay;
+        private final long[] maxDelay;
+        private final List<String> segmentNames;
+        private final List<int[]> segmentTransitions;
+
+        LoadedNet(int placeCount, int transitionCount, int[] initialMarking,
+                int[] preStart, int[] prePlace, int[] preWeight,
+                int[] postStart, int[] postPlace, int[] postWeight,
+                boolean[] timed, long[] delay, long[] maxDelay,
+                List<String> segmentNames, List<int[]> segmentTransitions) {
+            this.placeCount = placeCount;
+            this.transitionCount = transitionCount;
+            this.initialMarking = initialMarking;
+            this.preStart = preStart;
+            this.prePlace = prePlace;
+            this.preWeight = preWeight;
+            this.postStart = postStart;
+            this.postPlace = postPlace;
+            this.postWeight = postWeight;
+            this.timed = timed;
+            this.delay = delay;
+            this.maxDelay = maxDelay;
+            this.segmentNames = segmentNames;
+            this.segmentTransitions = segmentTransitions;
+        }
+
+        public int getPlaceCount() {
+            return placeCount;
+        }
+
+        public int getTransitionCount() {
+            return transitionCount;
+        }
+
+        public int getInitialMarking(int placeId) {
+            return initialMarking[placeId];
+        }
+
+        public int[] getPrePlaces(int t) {
+            return Arrays.copyOfRange(prePlace, preStart[t], preStart[t + 1]);
+        }
+
+        public int[] getPreWeights(int t) {
+            return Arrays.copyOfRange(preWeight, preStart[t], preStart[t + 1]);
+        }
+
+        public int[] getPostPlaces(int t) {
+            return Arrays.copyOfRange(postPlace, postStart[t], postStart[t + 1]);
+        }
+
+        public int[] getPostWeights(int t) {
+            return Arrays.copyOfRange(postWeight, postStart[t], postStart[t + 1]);
+        }
+
+        public boolean isTimed(int t) {
+            return timed[t];
+        }
+
+        public long getDelay(int t) {
+            return delay[t];
+        }
+
+        public long getMaxDelay(int t) {
+            return maxDelay[t];
+        }
+
+        public List<String> getSegmentNames() {
+            return segmentNames;
+        }
+
+        /**
+         * Returns the transitions of each segment, in the order of getSegmentNames.
+         */
+        public List<int[]> getSegmentTransitions() {
+            return segmentTransitions;
+        }
+    }
+
+    private PnmlLoader() {
+    }
+
+    /**
+     * Loads a PNML file.
+     *
+     * @param file the PNML file.
+     * @return the loaded net.
+     * @throws IOException if the file cannot be read or is not valid PNML.
+     */
+    public static LoadedNet load(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads a PNML document from a stream.
+     *
+     * @param in the PNML document.
+     * @return the loaded net.
+     * @throws IOException if the document cannot be read or is not valid PNML.
+     */
+    public static LoadedNet load(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                LoadedNet net = new Parser(reader).parse();
+                logger.info("Loaded PNML net with " + net.getPlaceCount() + " places and "
+                        + net.getTransitionCount() + " transitions in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms.");
+                return net;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid PNML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Single-pass parser state.
+     */
+    private static class Parser {
+        private final XMLStreamReader reader;
+
+        // Nodes, in order of appearance.
+        private final NodeTable places = new NodeTable('P');
+        private final NodeTable transitions = new NodeTable('T');
+        private int[] marking = new int[64];
+        private int[] capacity = new int[64];
+        private boolean[] timed = new boolean[64];
+        private double[] rate = new double[64];
+
+        // Arcs; endpoints are resolved to net indexes in build().
+        private int arcCount = 0;
+        private int[] arcPlace = new int[256];
+        private int[] arcTransition = new int[256];
+        private int[] arcWeight = new int[256];
+        private boolean[] arcInput = new boolean[256];
+        // Arcs are resolved once all nodes are known, since PNML allows any order.
+        private final List<String> arcSources = new ArrayList<>();
+        private final List<String> arcTargets = new ArrayList<>();
+
+        // Tool-specific data, still referring to transition ids.
+        private final List<String> segmentNames = new ArrayList<>();
+        private final List<String[]> segmentMembers = new ArrayList<>();
+        private final Map<String, long[]> timings = new HashMap<>();
+
+        Parser(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        LoadedNet parse() throws XMLStreamException, IOException {
+            // Kind of node being read (0 none, 1 place, 2 transition, 3 arc).
+            int node = 0;
+            int ordinal = -1;
+            boolean inToolSpecific = false;
+            // Name of the PNML property whose <value> is being waited for.
+            String property = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    switch (name) {
+                        case "place":
+                            node = 1;
+                            ordinal = places.add(reader.getAttributeValue(null, "id"));
+                            ensureNodeCapacity(ordinal);
+                            break;
+                        case "transition":
+                            node = 2;
+                            ordinal = transitions.add(reader.getAttributeValue(null, "id"));
+                            ensureTransitionCapacity(ordinal);
+                            break;
+                        case "arc":
+                            node = 3;
+                            addArc(reader.getAttributeValue(null, "source"),
+                                    reader.getAttributeValue(null, "target"));
+                            break;
+                        case "type":
+                            if (node == 3) {
+                                String type = reader.getAttributeValue(null, "value");
+                                if (type != null && !type.equals("normal")) {
+                                    throw new IOException("Unsupported arc type: " + type);
+                                }
+                            }
+                            break;
+                        case "toolspecific":
+                            inToolSpecific = TOOL_NAME.equals(reader.getAttributeValue(null, "tool"));
+                            break;
+                        case "segment":
+                            if (inToolSpecific) {
+                                segmentNames.add(reader.getAttributeValue(null, "name"));
+                                String members = reader.getAttributeValue(null, "transitions");
+                                segmentMembers.add(members == null ? new String[0] : members.trim().split("\\s+"));
+                            }
+                            break;
+                        case "timing":
+                            if (inToolSpecific) {
+                                addTiming();
+                            }
+                            break;
+                        case "initialMarking":
+                        case "capacity":
+                        case "timed":
+                        case "rate":
+                        case "inscription":
+                            property = name;
+                            break;
+                        case "value":
+                            if (property != null) {
+                                setProperty(node, ordinal, property, reader.getElementText().trim());
+                                property = null;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("place") || name.equals("transition") || name.equals("arc")) {
+                        node = 0;
+                        property = null;
+                    } else if (name.equals("toolspecific")) {
+                        inToolSpecific = false;
+                    } else if (name.equals(property)) {
+                        property = null;
+                    }
+                }
+            }
+            return build();
+        }
+
+        /**
+         * Reads a timing element: transition, delay and optional maxDelay.
+         */
+        private void addTiming() throws IOException {
+            String transition = reader.getAttributeValue(null, "transition");
+            if (transition == null) {
+                throw new IOException("Timing without a transition attribute.");
+            }
+            String maxDelay = reader.getAttributeValue(null, "maxDelay");
+            timings.put(transition, new long[] {
+                    parseDelay(transition, "delay", reader.getAttributeValue(null, "delay")),
+                    maxDelay == null ? Long.MAX_VALUE : parseDelay(transition, "maxDelay", maxDelay) });
+        }
+
+        private static long parseDelay(String transition, String attribute, String value) throws IOException {
+            if (value == null) {
+                throw new IOException("Timing of transition " + transition + " has no " + attribute + ".");
+            }
+            try {
+                long delay = Long.parseLong(value.trim());
+                if (delay < 0) {
+                    throw new NumberFormatException();
+                }
+                return delay;
+            } catch (NumberFormatException e) {
+                throw new IOException("Timing of transition " + transition + " has an invalid " + attribute + ": "
+                        + value);
+            }
+        }
+
+        private void setProperty(int node, int ordinal, String property, String value) throws IOException {
+            switch (property) {
+                case "initialMarking":
+                    if (node == 1) {
+                        marking[ordinal] = parseTokens(value);
+                    }
+                    break;
+                case "capacity":
+                    if (node == 1) {
+                        capacity[ordinal] = parseTokens(value);
+                    }
+                    break;
+                case "timed":
+                    if (node == 2) {
+                        timed[ordinal] = Boolean.parseBoolean(value);
+                    }
+                    break;
+                case "rate":
+                    if (node == 2) {
+                        try {
+                            rate[ordinal] = Double.parseDouble(value);
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid rate of transition " + transitions.id(ordinal) + ": "
+                                    + value);
+                        }
+                    }
+                    break;
+                case "inscription":
+                    if (node == 3) {
+                        arcWeight[arcCount - 1] = parseTokens(value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Parses a PIPE token value, either "n" or "Default,n".
+         */
+        private int parseTokens(String value) throws IOException {
+            int comma = value.lastIndexOf(',');
+            try {
+                return value.isEmpty() ? 0 : Integer.parseInt(value.substring(comma + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid token count: " + value);
+            }
+        }
+
+        private void ensureNodeCapacity(int ordinal) {
+            if (ordinal >= marking.length) {
+                int size = marking.length * 2;
+                marking = Arrays.copyOf(marking, size);
+                capacity = Arrays.copyOf(capacity, size);
+            }
+        }
+
+        private void ensureTransitionCapacity(int ordinal) {
+            if (ordinal >= timed.length) {
+                int size = timed.length * 2;
+                timed = Arrays.copyOf(timed, size);
+                rate = Arrays.copyOf(rate, size);
+            }
+        }
+
+        private void addArc(String source, String target) {
+            if (arcCount == arcWeight.length) {
+                int size = arcCount * 2;
+                arcPlace = Arrays.copyOf(arcPlace, size);
+                arcTransition = Arrays.copyOf(arcTransition, size);
+                arcWeight = Arrays.copyOf(arcWeight, size);
+                arcInput = Arrays.copyOf(arcInput, size);
+            }
+            arcSources.add(source);
+            arcTargets.add(target);
+            arcWeight[arcCount] = 1;
+            arcCount++;
+        }
+
+        private LoadedNet build() throws IOException {
+            int[] placeIndex = places.indexes();
+            int[] transitionIndex = transitions.indexes();
+            int placeCount = Arrays.stream(placeIndex).max().orElse(-1) + 1;
+            int transitionCount = Arrays.stream(transitionIndex).max().orElse(-1) + 1;
+
+            // Resolve arc endpoints now that all nodes are known.
+            for (int a = 0; a < arcCount; a++) {
+                String source = arcSources.get(a);
+                String target = arcTargets.get(a);
+                int p = places.ordinal(source);
+                if (p >= 0) {
+                    int t = transitions.ordinal(target);
+                    if (t < 0) {
+                        throw new IOException("Arc " + source + " -> " + target + " does not end in a transition.");
+                    }
+                    arcPlace[a] = placeIndex[p];
+                    arcTransition[a] = transitionIndex[t];
+                    arcInput[a] = true;
+                } else {
+                    int t = transitions.ordinal(source);
+                    p = places.ordinal(target);
+                    if (t < 0 || p < 0) {
+                        throw new IOException("Arc " + source + " -> " + target + " references an unknown node.");
+                    }
+                    arcPlace[a] = placeIndex[p];
+                    arcTransition[a] = transitionIndex[t];
+                    arcInput[a] = false;
+                }
+            }
+
+            int[] initial = new int[placeCount];
+            for (int p = 0; p < places.size(); p++) {
+                initial[placeIndex[p]] = marking[p];
+                if (capacity[p] != 0) {
+                    throw new IOException("Place " + places.id(p) + " has capacity " + capacity[p]
+                            + ", but place capacities are not supported.");
+                }
+            }
+
+            // Order arcs by place, then (stably) by transition, so each CSR row
+            // is sorted by place id.
+            int[] byPlace = countingSort(identity(arcCount), arcPlace, placeCount);
+            int[] order = countingSort(byPlace, arcTransition, transitionCount);
+
+            // Fill the rows in that order, merging the parallel arcs (which are
+            // now next to each other in their row) by summing their weights.
+            int[] preStart = new int[transitionCount + 1];
+            int[] postStart = new int[transitionCount + 1];
+            int[] prePlace = new int[arcCount];
+            int[] preWeight = new int[arcCount];
+            int[] postPlace = new int[arcCount];
+            int[] postWeight = new int[arcCount];
+            int pre = 0;
+            int post = 0;
+            int next = 0;
+            for (int t = 0; t < transitionCount; t++) {
+                preStart[t] = pre;
+                postStart[t] = post;
+                for (; next < order.length && arcTransition[order[next]] == t; next++) {
+                    int a = order[next];
+                    if (arcInput[a]) {
+                        if (pre > preStart[t] && prePlace[pre - 1] == arcPlace[a]) {
+                            preWeight[pre - 1] += arcWeight[a];
+                        } else {
+                            prePlace[pre] = arcPlace[a];
+                            preWeight[pre++] = arcWeight[a];
+                        }
+                    } else if (post > postStart[t] && postPlace[post - 1] == arcPlace[a]) {
+                        postWeight[post - 1] += arcWeight[a];
+                    } else {
+                        postPlace[post] = arcPlace[a];
+                        postWeight[post++] = arcWeight[a];
+                    }
+                }
+            }
+            preStart[transitionCount] = pre;
+            postStart[transitionCount] = post;
+            if (pre + post < arcCount) {
+                logger.warn("Merged " + (arcCount - pre - post) + " parallel PNML arcs.");
+            }
+            prePlace = Arrays.copyOf(prePlace, pre);
+            preWeight = Arrays.copyOf(preWeight, pre);
+            postPlace = Arrays.copyOf(postPlace, post);
+            postWeight = Arrays.copyOf(postWeight, post);
+
+            boolean[] timedByIndex = new boolean[transitionCount];
+            long[] delays = new long[transitionCount];
+            long[] maxDelays = new long[transitionCount];
+            Arrays.fill(maxDelays, Long.MAX_VALUE);
+            for (int t = 0; t < transitions.size(); t++) {
+                int index = transitionIndex[t];
+                long[] timing = timings.get(transitions.id(t));
+                timedByIndex[index] = timed[t] || timing != null;
+                if (timing != null) {
+                    delays[index] = timing[0];
+                    maxDelays[index] = timing[1];
+                } else if (timed[t]) {
+                    delays[index] = Math.round(rate[t]);
+                    logger.warn("Transition " + transitions.id(t) + " has no timing entry: its PIPE rate "
+                            + rate[t] + " is used as a delay of " + delays[index] + " ms.");
+                }
+            }
+
+            List<int[]> segmentTransitions = new ArrayList<>();
+            List<String> names = new ArrayList<>(segmentNames);
+            if (names.isEmpty()) {
+                for (int t = 0; t < transitions.size(); t++) {
+                    names.add("Segment" + transitions.id(t));
+                    segmentTransitions.add(new int[] { transitionIndex[t] });
+                }
+            } else {
+                for (String[] members : segmentMembers) {
+                    int[] ids = new int[members.length];
+                    for (int i = 0; i < members.length; i++) {
+                        int t = transitions.ordinal(members[i]);
+                        if (t < 0) {
+                            throw new IOException("Segment references unknown transition " + members[i]);
+                        }
+                        ids[i] = transitionIndex[t];
+                    }
+                    segmentTransitions.add(ids);
+                }
+            }
+
+            return new LoadedNet(placeCount, transitionCount, initial,
+                    preStart, prePlace, preWeight, postStart, postPlace, postWeight,
+                    timedByIndex, delays, maxDelays, names, segmentTransitions);
+        }
+
+        private static int[] identity(int n) {
+            int[] result = new int[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = i;
+            }
+            return result;
+        }
+
+        /**
+         * Stable counting sort of the given arc order by key.
+         */
+        private static int[] countingSort(int[] arcs, int[] key, int buckets) {
+            int[] start = new int[buckets + 1];
+            for (int a : arcs) {
+                start[key[a] + 1]++;
+            }
+            for (int b = 0; b < buckets; b++) {
+                start[b + 1] += start[b];
+            }
+            int[] sorted = new int[arcs.length];
+            for (int a : arcs) {
+                sorted[start[key[a]]++] = a;
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * Node ids in order of appearance, and their index in the net.
+     */
+    private static class NodeTable {
+        private final char prefix;
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        // Whether every id seen so far is prefix + number.
+        private boolean numbered = true;
+
+        NodeTable(char prefix) {
+            this.prefix = prefix;
+        }
+
+        int add(String id) throws IOException {
+            if (id == null || ordinals.containsKey(id)) {
+                throw new IOException("Missing or duplicate node id: " + id);
+            }
+            int ordinal = ids.size();
+            ordinals.put(id, ordinal);
+            ids.add(id);
+            numbered = numbered && numberOf(id) >= 0;
+            return ordinal;
+        }
+
+        int ordinal(String id) {
+            Integer ordinal = ordinals.get(id);
+            return ordinal == null ? -1 : ordinal;
+        }
+
+        String id(int ordinal) {
+            return ids.get(ordinal);
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        /**
+         * Returns the index of each node, by ordinal: the number in its id if
+         * all ids are numbered without clashes, otherwise the ordinal itself.
+         */
+        int[] indexes() {
+            int[] result = new int[ids.size()];
+            if (numbered) {
+                boolean[] used = new boolean[ids.size()];
+                for (int i = 0; i < result.length; i++) {
+                    int number = numberOf(ids.get(i));
+                    // Only accept dense numberings, so indexes stay small.
+                    if (number >= ids.size() || used[number]) {
+                        return identity();
+                    }
+                    used[number] = true;
+                    result[i] = number;
+                }
+                return result;
+            }
+            return identity();
+        }
+
+        private int[] identity() {
+            int[] result = new int[ids.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = i;
+            }
+            return result;
+        }
+
+        private int numberOf(String id) {
+            if (id.length() < 2 || id.charAt(0) != prefix || id.length() > 10) {
+                return -1;
+            }
+            int number = 0;
+            for (int i = 1; i < id.length(); i++) {
+                char c = id.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return number;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package utils;
+
+import java.nio.file.Path;
+
+/**
+ * The layout of a firing trace, shared by TraceRecorder and TraceReader (see
+ * TraceRecorder for the format). It does not use the Logger, so that reading
+ * a trace never opens (and so empties) the log of the run.
+ */
+final class TraceFormat {
+  // Size of one record in bytes.
+  static final int RECORD_SIZE = 16;
+  // Records per chunk claimed by a thread (64 KiB).
+  static final int CHUNK_RECORDS = 4096;
+  static final int CHUNK_SIZE = RECORD_SIZE * CHUNK_RECORDS;
+
+  static final String SEGMENT_PREFIX = "trace-";
+  static final String SEGMENT_SUFFIX = ".bin";
+  static final String THREADS_FILE = "threads.txt";
+
+  private TraceFormat() {
+  }
+
+  /**
+   * Returns the path of a segment file of a trace.
+   *
+   * @param directory the trace directory.
+   * @param index     the segment index.
+   * @return the segment file.
+   */
+  static Path segmentFile(Path directory, int index) {
+    return directory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+}
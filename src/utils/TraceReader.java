@@ -0,0 +1,184 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads the binary firing traces written by TraceRecorder.
+ *
+ * Records are delivered in timestamp order: every chunk of the trace is
+ * already ordered (it was filled by one thread), so the chunks are merged
+ * with a priority queue keyed by the timestamp of their next record. Only
+ * the segment files are mapped; nothing is loaded into memory per record.
+ *
+ * Usage: java utils.TraceReader traceDir [output.txt]
+ * Each firing is written as: [timestamp ns] [Thread-Name] Transition N fired.
+ */
+public class TraceReader {
+
+  /**
+   * Receives the records of a trace.
+   */
+  public interface RecordConsumer {
+    /**
+     * @param nanos        nanoseconds since the recorder was created.
+     * @param threadId     the id of the recording thread.
+     * @param transitionId the transition that fired.
+     */
+    void accept(long nanos, int threadId, int transitionId);
+  }
+
+  private final Path directory;
+  private final List<String> threadNames = new ArrayList<>();
+
+  /**
+   * Opens a trace directory.
+   *
+   * @param directory the directory given to TraceRecorder.
+   * @throws IOException if the thread names cannot be read.
+   */
+  public TraceReader(Path directory) throws IOException {
+    this.directory = directory;
+    Path threads = directory.resolve(TraceFormat.THREADS_FILE);
+    if (Files.exists(threads)) {
+      for (String line : Files.readAllLines(threads, StandardCharsets.UTF_8)) {
+        int space = line.indexOf(' ');
+        int id = Integer.parseInt(line.substring(0, space));
+        while (threadNames.size() <= id) {
+          threadNames.add(null);
+        }
+        threadNames.set(id, line.substring(space + 1));
+      }
+    }
+  }
+
+  /**
+   * Returns the name of a recording thread.
+   *
+   * @param threadId the thread id stored in the records.
+   * @return the thread name, or "thread-N" if unknown.
+   */
+  public String getThreadName(int threadId) {
+    String name = threadId < threadNames.size() ? threadNames.get(threadId) : null;
+    return name != null ? name : "thread-" + threadId;
+  }
+
+  /**
+   * A chunk being merged: its buffer and the offset of its next record.
+   */
+  private static final class ChunkCursor {
+    final ByteBuffer buffer;
+    int position;
+    final int end;
+    long nanos;
+
+    ChunkCursor(ByteBuffer buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+      this.end = position + TraceFormat.CHUNK_SIZE;
+    }
+
+    /** Moves to the next record; false if the chunk has no more records. */
+    boolean load() {
+      if (position >= end || buffer.getInt(position) == 0) {
+        return false;
+      }
+      nanos = buffer.getLong(position + 8);
+      return true;
+    }
+  }
+
+  /**
+   * Delivers every record of the trace, in timestamp order.
+   *
+   * @param consumer receives the records.
+   * @return the number of records read.
+   * @throws IOException if a segment cannot be read.
+   */
+  public long read(RecordConsumer consumer) throws IOException {
+    PriorityQueue<ChunkCursor> queue = new PriorityQueue<>((a, b) -> Long.compare(a.nanos, b.nanos));
+    for (int index = 0; Files.exists(TraceFormat.segmentFile(directory, index)); index++) {
+      try (FileChannel channel = FileChannel.open(TraceFormat.segmentFile(directory, index),
+          StandardOpenOption.READ)) {
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        for (int chunk = 0; chunk + TraceFormat.CHUNK_SIZE <= segment.capacity();
+            chunk += TraceFormat.CHUNK_SIZE) {
+          ChunkCursor cursor = new ChunkCursor(segment, chunk);
+          if (cursor.load()) {
+            queue.add(cursor);
+          }
+        }
+      }
+    }
+
+    long count = 0;
+    while (!queue.isEmpty()) {
+      ChunkCursor cursor = queue.poll();
+      ByteBuffer buffer = cursor.buffer;
+      consumer.accept(cursor.nanos, buffer.getInt(cursor.position + 4), buffer.getInt(cursor.position) - 1);
+      count++;
+      cursor.position += TraceFormat.RECORD_SIZE;
+      if (cursor.load()) {
+        queue.add(cursor);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Converts the trace to text, one firing per line.
+   *
+   * @param out the destination.
+   * @return the number of records written.
+   * @throws IOException if the trace cannot be read or written.
+   */
+  public long decode(Writer out) throws IOException {
+    StringBuilder line = new StringBuilder(64);
+    IOException[] failure = new IOException[1];
+    long count = read((nanos, threadId, transitionId) -> {
+      if (failure[0] != null) {
+        return;
+      }
+      line.setLength(0);
+      line.append('[').append(nanos).append(" ns] [").append(getThreadName(threadId))
+          .append("] Transition ").append(transitionId).append(" fired.\n");
+      try {
+        out.append(line);
+      } catch (IOException e) {
+        failure[0] = e;
+      }
+    });
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    out.flush();
+    return count;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: java utils.TraceReader traceDir [output.txt]");
+      System.exit(1);
+    }
+    TraceReader reader = new TraceReader(Paths.get(args[0]));
+    try (Writer out = args.length > 1
+        ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)
+        : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+      long count = reader.decode(out);
+      System.err.println("Decoded " + count + " firings.");
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records every firing as a fixed-size binary record in memory-mapped
+ * segment files, for post-mortem analysis with TraceReader.
+ *
+ * Each record is 16 bytes: the transition id plus one (so that a zeroed
+ * record means "empty"), the recording thread id, and the System.nanoTime
+ * offset since the recorder was created. The marking delta is not stored,
+ * since it is implied by the transition id and the net structure.
+ *
+ * The trace directory holds segment files trace-00000.bin, trace-00001.bin,
+ * ... of a fixed size, split in chunks of CHUNK_RECORDS records. Each
+ * thread claims whole chunks with a single atomic increment and fills them
+ * on its own, so recording a firing is a few plain stores into the mapped
+ * buffer with no contention between threads. Records are thus ordered by
+ * time within a chunk, but not across chunks; TraceReader merges them.
+ * The names of the recording threads are written to threads.txt on close.
+ */
+public class TraceRecorder implements AutoCloseable {
+  // Default size of a segment file (64 MiB, about 4M records).
+  public static final int DEFAULT_SEGMENT_SIZE = 1024 * TraceFormat.CHUNK_SIZE;
+
+  private static final Logger logger = Logger.getInstance();
+
+  private final Path directory;
+  private final int segmentSize;
+  private final int chunksPerSegment;
+  private final long baseNanos = System.nanoTime();
+
+  // Next chunk to hand out, over all segments.
+  private final AtomicLong nextChunk = new AtomicLong();
+  // Mapped segments; grown under the recorder's monitor.
+  private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+  // Cursors of the recording threads, indexed by thread id.
+  private final List<Cursor> cursors = new ArrayList<>();
+  private final ThreadLocal<Cursor> localCursor = ThreadLocal.withInitial(this::newCursor);
+  private volatile boolean closed = false;
+  private boolean finished = false;
+
+  /**
+   * The chunk a thread is currently filling.
+   */
+  private static final class Cursor {
+    final int threadId;
+    final String threadName;
+    MappedByteBuffer buffer;
+    int position;
+    int end;
+    long count;
+
+    Cursor(int threadId, String threadName) {
+      this.threadId = threadId;
+      this.threadName = threadName;
+    }
+  }
+
+  /**
+   * Creates a recorder writing segments of the default size.
+   *
+   * @param directory the trace directory; created if missing.
+   * @throws IOException if the directory cannot be prepared.
+   */
+  public TraceRecorder(Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Creates a recorder. Previous trace files in the directory are removed.
+   *
+   * @param directory   the trace directory; created if missing.
+   * @param segmentSize the size of each segment file, a multiple of the chunk
+   *                    size (64 KiB).
+   * @throws IOException if the directory cannot be prepared.
+   */
+  public TraceRecorder(Path directory, int segmentSize) throws IOException {
+    if (segmentSize < TraceFormat.CHUNK_SIZE || segmentSize % TraceFormat.CHUNK_SIZE != 0) {
+      throw new IllegalArgumentException(
+          "Segment size must be a multiple of " + TraceFormat.CHUNK_SIZE + " bytes.");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.chunksPerSegment = segmentSize / TraceFormat.CHUNK_SIZE;
+    Files.createDirectories(directory);
+    try (DirectoryStream<Path> old = Files.newDirectoryStream(directory,
+        TraceFormat.SEGMENT_PREFIX + "*" + TraceFormat.SEGMENT_SUFFIX)) {
+      for (Path file : old) {
+        Files.delete(file);
+      }
+    }
+    Files.deleteIfExists(directory.resolve(TraceFormat.THREADS_FILE));
+    logger.info("Recording firing trace to " + directory);
+  }
+
+  private synchronized Cursor newCursor() {
+    Cursor cursor = new Cursor(cursors.size(), Thread.currentThread().getName());
+    cursors.add(cursor);
+    return cursor;
+  }
+
+  /**
+   * Records a firing of the given transition by the calling thread.
+   *
+   * @param transitionId the transition that fired.
+   */
+  public void record(int transitionId) {
+    if (closed) {
+      return;
+    }
+    Cursor cursor = localCursor.get();
+    if (cursor.position == cursor.end && !claimChunk(cursor)) {
+      return;
+    }
+    MappedByteBuffer buffer = cursor.buffer;
+    int position = cursor.position;
+    buffer.putInt(position, transitionId + 1);
+    buffer.putInt(position + 4, cursor.threadId);
+    buffer.putLong(position + 8, System.nanoTime() - baseNanos);
+    cursor.position = position + TraceFormat.RECORD_SIZE;
+    cursor.count++;
+  }
+
+  private boolean claimChunk(Cursor cursor) {
+    long chunk = nextChunk.getAndIncrement();
+    try {
+      cursor.buffer = segment((int) (chunk / chunksPerSegment));
+    } catch (IOException e) {
+      logger.error("Could not map trace segment, stopping the trace: " + e.getMessage());
+      closed = true;
+      return false;
+    }
+    cursor.position = (int) (chunk % chunksPerSegment) * TraceFormat.CHUNK_SIZE;
+    cursor.end = cursor.position + TraceFormat.CHUNK_SIZE;
+    return true;
+  }
+
+  /**
+   * Returns the mapped segment with the given index, mapping new segment
+   * files as needed.
+   */
+  private MappedByteBuffer segment(int index) throws IOException {
+    MappedByteBuffer[] current = segments;
+    if (index < current.length) {
+      return current[index];
+    }
+    synchronized (this) {
+      current = segments;
+      while (current.length <= index) {
+        Path file = TraceFormat.segmentFile(directory, current.length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          // The mapping stays valid after the channel is closed.
+          MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+          current = Arrays.copyOf(current, current.length + 1);
+          current[current.length - 1] = mapped;
+        }
+        segments = current;
+      }
+      return current[index];
+    }
+  }
+
+  /**
+   * Returns the number of firings recorded so far. Only exact once the
+   * recording threads have stopped.
+   *
+   * @return the number of records.
+   */
+  public synchronized long getRecordCount() {
+    long total = 0;
+    for (Cursor cursor : cursors) {
+      total += cursor.count;
+    }
+    return total;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Stops recording, forces the segments to disk and writes the thread names.
+   * Should be called once the firing threads have stopped; records made
+   * concurrently with close may be lost.
+   */
+  @Override
+  public synchronized void close() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    closed = true;
+    for (MappedByteBuffer segment : segments) {
+      segment.force();
+    }
+    try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve(TraceFormat.THREADS_FILE))) {
+      for (Cursor cursor : cursors) {
+        writer.write(cursor.threadId + " " + cursor.threadName);
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    logger.info("Firing trace closed with " + getRecordCount() + " records in " + segments.length + " segments.");
+  }
+}
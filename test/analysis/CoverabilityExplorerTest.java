@@ -0,0 +1,56 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import petrinet.Places;
+
+/**
+ * Checks the Karp-Miller tree against the reachability graph on bounded
+ * nets, and on a net with an unbounded place.
+ */
+class CoverabilityExplorerTest {
+
+  private static CoverabilityResult explore(TestNets.Net net, int threads) throws InterruptedException {
+    return new CoverabilityExplorer(net.places(), net.transitions, threads, 1_000_000).explore();
+  }
+
+  private static void assertMatchesReachability(TestNets.Net net) throws InterruptedException {
+    Places places = net.places();
+    ReachabilityResult reachability = new ReachabilityExplorer(places, net.transitions, 1, 1_000_000,
+        ReachabilityExplorer.defaultBitsPerPlace(places)).explore();
+    for (int threads : new int[] {1, 4}) {
+      CoverabilityResult coverability = explore(net, threads);
+      assertFalse(coverability.isTruncated());
+      assertEquals(0, coverability.getUnboundedPlaces().length, "unbounded places");
+      for (int p = 0; p < net.marking.length; p++) {
+        assertEquals(reachability.getBound(p), coverability.getBound(p), "bound of p" + p);
+      }
+      assertArrayEquals(reachability.getDeadTransitions(), coverability.getDeadTransitions());
+    }
+  }
+
+  @Test
+  void boundedAssignmentNetMatchesReachability() throws InterruptedException {
+    assertMatchesReachability(TestNets.assignment());
+  }
+
+  @Test
+  void boundedPhilosophersMatchReachability() throws InterruptedException {
+    assertMatchesReachability(TestNets.philosophers(4));
+  }
+
+  @Test
+  void findsTheUnboundedPlace() throws InterruptedException {
+    CoverabilityResult result = explore(TestNets.producer(), 4);
+    assertFalse(result.isTruncated());
+    assertArrayEquals(new int[] {1}, result.getUnboundedPlaces());
+    assertTrue(result.isUnbounded(1));
+    assertEquals(CoverabilityExplorer.OMEGA, result.getBound(1));
+    assertEquals(1, result.getBound(0));
+    assertArrayEquals(new int[] {2}, result.getDeadTransitions());
+  }
+}
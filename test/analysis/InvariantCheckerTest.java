@@ -0,0 +1,67 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import utils.TraceRecorder;
+
+/**
+ * Checks the binary trace path of the invariant checker.
+ */
+class InvariantCheckerTest {
+
+  /**
+   * Records the given invariant paths, once each, as a trace.
+   */
+  private static Path recordTrace(Path directory, int[][] paths) throws IOException {
+    try (TraceRecorder recorder = new TraceRecorder(directory)) {
+      for (int[] path : paths) {
+        for (int t : path) {
+          recorder.record(t);
+        }
+      }
+    }
+    return directory;
+  }
+
+  @Test
+  void matchesEveryRecordedInvariant() throws IOException {
+    int[][] paths = InvariantMatcher.defaultInvariants();
+    Path trace = recordTrace(Files.createTempDirectory("trace"), paths);
+    InvariantMatcher result = new InvariantChecker(paths, 2).checkTrace(trace);
+    for (int i = 0; i < paths.length; i++) {
+      assertEquals(1, result.getCompleted(i), "invariant " + i);
+    }
+    assertEquals(0, result.getIncompleteCount());
+  }
+
+  @Test
+  void checkingATraceKeepsTheLogOfTheRun() throws IOException, InterruptedException {
+    Path run = Files.createTempDirectory("run");
+    recordTrace(run.resolve("trace"), InvariantMatcher.defaultInvariants());
+    Path log = run.resolve("petri_net.log");
+    List<String> lines = List.of("[INFO] Transition 0 fired.", "[INFO] Transition 1 fired.");
+    Files.write(log, lines, StandardCharsets.UTF_8);
+
+    // A separate JVM started in the run directory, as after a real run.
+    Process checker = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-cp", System.getProperty("java.class.path"), "analysis.InvariantChecker", "--trace", "trace")
+        .directory(run.toFile())
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .redirectError(new File(run.toFile(), "stderr.txt"))
+        .start();
+    if (!checker.waitFor(60, TimeUnit.SECONDS)) {
+      checker.destroyForcibly();
+    }
+    assertEquals(0, checker.exitValue());
+    assertEquals(lines, Files.readAllLines(log, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,126 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import petrinet.Transition;
+
+/**
+ * Checks the invariants found by the Farkas solver against the incidence
+ * matrix and against every reachable marking.
+ */
+class NetInvariantsTest {
+
+  /**
+   * Asserts y . C = 0 for every P-invariant y and C . x = 0 for every
+   * T-invariant x.
+   */
+  private static void assertAnnulIncidence(TestNets.Net net, NetInvariants invariants) {
+    int placeCount = net.marking.length;
+    for (Invariant y : invariants.getPInvariants()) {
+      int[] weight = y.toDense(placeCount);
+      for (Transition transition : net.transitions.values()) {
+        assertEquals(0, delta(transition, weight), y.format("p") + " changed by T" + transition.getId());
+      }
+    }
+    for (Invariant x : invariants.getTInvariants()) {
+      long[] change = new long[placeCount];
+      for (int i = 0; i < x.size(); i++) {
+        int[] unit = new int[placeCount];
+        Transition transition = net.transitions.get(x.getIndex(i));
+        for (int p = 0; p < placeCount; p++) {
+          unit[p] = 1;
+          change[p] += (long) x.getWeight(i) * delta(transition, unit);
+          unit[p] = 0;
+        }
+      }
+      for (int p = 0; p < placeCount; p++) {
+        assertEquals(0, change[p], x.format("T") + " changes p" + p);
+      }
+    }
+  }
+
+  private static long delta(Transition transition, int[] weight) {
+    long delta = 0;
+    int[] pre = transition.getPrePlaces();
+    int[] preWeights = transition.getPreWeights();
+    for (int a = 0; a < pre.length; a++) {
+      delta -= (long) weight[pre[a]] * preWeights[a];
+    }
+    int[] post = transition.getPostPlaces();
+    int[] postWeights = transition.getPostWeights();
+    for (int a = 0; a < post.length; a++) {
+      delta += (long) weight[post[a]] * postWeights[a];
+    }
+    return delta;
+  }
+
+  /**
+   * Asserts that every P-invariant keeps its initial sum in every reachable
+   * marking.
+   */
+  private static void assertHoldInReachableMarkings(TestNets.Net net, NetInvariants invariants) {
+    List<Invariant> pInvariants = invariants.getPInvariants();
+    TestNets.Graph graph = TestNets.explore(net);
+    for (int i = 0; i < pInvariants.size(); i++) {
+      assertEquals(pInvariants.get(i).weightedSum(net.marking), invariants.getPInvariantTokens(i));
+      for (int[] marking : graph.markings) {
+        assertEquals(invariants.getPInvariantTokens(i), pInvariants.get(i).weightedSum(marking));
+      }
+    }
+  }
+
+  private static List<Integer> asList(int[] ids) {
+    return Arrays.stream(ids).boxed().toList();
+  }
+
+  @Test
+  void assignmentNetInvariants() {
+    TestNets.Net net = TestNets.assignment();
+    NetInvariants invariants = NetInvariants.compute(net.places(), net.transitions);
+    assertAnnulIncidence(net, invariants);
+    assertHoldInReachableMarkings(net, invariants);
+    assertTrue(invariants.isCoveredByPInvariants());
+    assertTrue(invariants.isCoveredByTInvariants());
+    assertEquals(6, invariants.getPInvariants().size());
+
+    // The T-invariants are the invariant paths the matcher looks for.
+    Set<List<Integer>> expected = new HashSet<>();
+    for (int[] path : InvariantMatcher.defaultInvariants()) {
+      expected.add(asList(path));
+    }
+    Set<List<Integer>> found = new HashSet<>();
+    for (Invariant x : invariants.getTInvariants()) {
+      found.add(asList(x.getSupport()));
+    }
+    assertEquals(expected, found);
+  }
+
+  @Test
+  void philosophersInvariants() {
+    TestNets.Net net = TestNets.philosophers(5);
+    NetInvariants invariants = NetInvariants.compute(net.places(), net.transitions);
+    assertAnnulIncidence(net, invariants);
+    assertHoldInReachableMarkings(net, invariants);
+    assertTrue(invariants.isCoveredByPInvariants());
+    // One cycle per philosopher.
+    assertEquals(5, invariants.getTInvariants().size());
+  }
+
+  @Test
+  void unboundedNetIsNotCovered() {
+    TestNets.Net net = TestNets.producer();
+    NetInvariants invariants = NetInvariants.compute(net.places(), net.transitions);
+    assertAnnulIncidence(net, invariants);
+    assertFalse(invariants.isCoveredByPInvariants());
+    assertEquals(1, invariants.getTInvariants().size());
+    assertEquals(List.of(0, 1), asList(invariants.getTInvariants().get(0).getSupport()));
+  }
+}
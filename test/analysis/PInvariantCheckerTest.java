@@ -0,0 +1,59 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import petrinet.Transition;
+
+/**
+ * Checks the incremental P-invariant checker along random firing sequences.
+ */
+class PInvariantCheckerTest {
+
+  @Test
+  void holdsAlongRandomFirings() {
+    for (TestNets.Net net : List.of(TestNets.assignment(), TestNets.philosophers(5))) {
+      PInvariantChecker checker = new PInvariantChecker(NetInvariants.compute(net.places(), net.transitions),
+          net.places(), net.transitions);
+      SplittableRandom random = new SplittableRandom(42);
+      int[] marking = net.marking.clone();
+      for (int step = 0; step < 10_000; step++) {
+        List<Transition> enabled = new ArrayList<>();
+        for (Transition transition : net.transitions.values()) {
+          if (TestNets.isEnabled(transition, marking)) {
+            enabled.add(transition);
+          }
+        }
+        if (enabled.isEmpty()) {
+          break;
+        }
+        Transition transition = enabled.get(random.nextInt(enabled.size()));
+        marking = TestNets.fire(transition, marking);
+        assertTrue(checker.check(transition.getId()), "after firing T" + transition.getId());
+      }
+    }
+  }
+
+  @Test
+  void reportsInvariantsOfAnotherNet() {
+    TestNets.Net net = TestNets.assignment();
+    NetInvariants invariants = NetInvariants.compute(net.places(), net.transitions);
+    // T0 now produces one more token than the invariants were computed for.
+    Transition t0 = net.transitions.get(0);
+    int[] postWeights = t0.getPostWeights().clone();
+    postWeights[0]++;
+    Map<Integer, Transition> changed = new HashMap<>(net.transitions);
+    changed.put(0, new Transition(0, t0.getPrePlaces(), t0.getPreWeights(), t0.getPostPlaces(), postWeights,
+        false, 0, Long.MAX_VALUE));
+    PInvariantChecker checker = new PInvariantChecker(invariants, net.places(), changed);
+    assertTrue(checker.check(1));
+    assertFalse(checker.check(0));
+  }
+}
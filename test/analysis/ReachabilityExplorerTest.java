@@ -0,0 +1,68 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import petrinet.Places;
+
+/**
+ * Checks the parallel explorer against a sequential breadth-first
+ * exploration of the same nets.
+ */
+class ReachabilityExplorerTest {
+
+  private static ReachabilityResult explore(TestNets.Net net, int threads) throws InterruptedException {
+    Places places = net.places();
+    return new ReachabilityExplorer(places, net.transitions, threads, 1_000_000,
+        ReachabilityExplorer.defaultBitsPerPlace(places)).explore();
+  }
+
+  private static void assertMatchesReference(TestNets.Net net) throws InterruptedException {
+    TestNets.Graph reference = TestNets.explore(net);
+    for (int threads : new int[] {1, 4}) {
+      ReachabilityResult result = explore(net, threads);
+      String label = threads + " threads: ";
+      assertTrue(result.isComplete(), label + "complete");
+      assertFalse(result.isReduced(), label + "not reduced");
+      assertEquals(reference.markings.size(), result.getStateCount(), label + "states");
+      assertEquals(reference.edges, result.getEdgeCount(), label + "edges");
+      assertEquals(reference.deadlocks, result.getDeadlockCount(), label + "deadlocks");
+      for (int p = 0; p < net.marking.length; p++) {
+        assertEquals(TestNets.bound(reference, p), result.getBound(p), label + "bound of p" + p);
+      }
+      assertEquals(net.transitions.size() - reference.fired.size(), result.getDeadTransitions().length,
+          label + "dead transitions");
+    }
+  }
+
+  @Test
+  void assignmentNetMatchesSequentialExploration() throws InterruptedException {
+    assertMatchesReference(TestNets.assignment());
+  }
+
+  @Test
+  void philosophersMatchSequentialExploration() throws InterruptedException {
+    assertMatchesReference(TestNets.philosophers(5));
+  }
+
+  @Test
+  void reportsTheDeadMarking() throws InterruptedException {
+    ReachabilityResult result = explore(TestNets.philosophers(3), 4);
+    assertEquals(1, result.getDeadlockCount());
+    // Every philosopher holds its left fork.
+    assertArrayEquals(new int[] {0, 0, 0, 0, 0, 0, 1, 1, 1, 0, 0, 0}, result.getDeadlockExamples().get(0));
+  }
+
+  @Test
+  void stopsAtTheStateLimit() throws InterruptedException {
+    TestNets.Net net = TestNets.assignment();
+    Places places = net.places();
+    ReachabilityResult result = new ReachabilityExplorer(places, net.transitions, 4, 100,
+        ReachabilityExplorer.defaultBitsPerPlace(places)).explore();
+    assertTrue(result.isTruncated());
+    assertFalse(result.isComplete());
+  }
+}
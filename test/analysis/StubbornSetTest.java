@@ -0,0 +1,53 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import petrinet.Places;
+
+/**
+ * Checks that the stubborn-set reduction finds exactly the deadlocks of the
+ * full exploration, with fewer states.
+ */
+class StubbornSetTest {
+
+  private static ReachabilityResult explore(TestNets.Net net, boolean reduced) throws InterruptedException {
+    Places places = net.places();
+    return new ReachabilityExplorer(places, net.transitions, 4, 1_000_000,
+        ReachabilityExplorer.defaultBitsPerPlace(places), reduced).explore();
+  }
+
+  private static void assertSameDeadlocks(TestNets.Net net) throws InterruptedException {
+    ReachabilityResult full = explore(net, false);
+    ReachabilityResult reduced = explore(net, true);
+    assertTrue(reduced.isReduced());
+    assertTrue(reduced.isComplete());
+    assertEquals(full.getDeadlockCount(), reduced.getDeadlockCount(), "deadlocks");
+    assertTrue(reduced.getStateCount() <= full.getStateCount(), "reduced state count");
+    for (int i = 0; i < full.getDeadlockExamples().size(); i++) {
+      assertArrayEquals(full.getDeadlockExamples().get(i), reduced.getDeadlockExamples().get(i));
+    }
+  }
+
+  @Test
+  void keepsTheDeadlockOfThePhilosophers() throws InterruptedException {
+    for (int n = 2; n <= 6; n++) {
+      assertSameDeadlocks(TestNets.philosophers(n));
+    }
+  }
+
+  @Test
+  void findsNoDeadlockInTheAssignmentNet() throws InterruptedException {
+    TestNets.Net net = TestNets.assignment();
+    assertSameDeadlocks(net);
+    assertEquals(0, explore(net, true).getDeadlockCount());
+  }
+
+  @Test
+  void exploresFewerStates() throws InterruptedException {
+    TestNets.Net net = TestNets.philosophers(6);
+    assertTrue(explore(net, true).getStateCount() < explore(net, false).getStateCount());
+  }
+}
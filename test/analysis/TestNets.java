@@ -0,0 +1,205 @@
+package analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import monitor.BalancedPolicy;
+import petrinet.Places;
+import petrinet.Transition;
+import utils.Logger;
+import utils.PetriNet;
+
+/**
+ * Small nets shared by the analysis tests, and a plain breadth-first
+ * exploration of their reachable markings used as the reference the
+ * analyses are checked against.
+ */
+final class TestNets {
+  static {
+    Logger.getInstance().setLevel(Logger.Level.WARN);
+  }
+
+  private TestNets() {
+  }
+
+  /**
+   * A net given by its initial marking and its transitions.
+   */
+  static final class Net {
+    final int[] marking;
+    final Map<Integer, Transition> transitions;
+
+    Net(int[] marking, Map<Integer, Transition> transitions) {
+      this.marking = marking;
+      this.transitions = transitions;
+    }
+
+    /**
+     * Returns fresh Places holding the initial marking.
+     */
+    Places places() {
+      Places places = new Places();
+      for (int p = 0; p < marking.length; p++) {
+        places.addPlace(p, marking[p]);
+      }
+      return places;
+    }
+  }
+
+  /**
+   * The net of the assignment (built-in, as in Main).
+   */
+  static Net assignment() {
+    PetriNet net = new PetriNet(new BalancedPolicy());
+    Places places = net.getPlaces();
+    int[] marking = new int[places.getPlaceCount()];
+    for (int p = 0; p < marking.length; p++) {
+      marking[p] = places.getTokenCount(p);
+    }
+    return new Net(marking, net.getTransitions());
+  }
+
+  /**
+   * Dining philosophers: philosopher i takes its left fork, then its right
+   * one, eats and puts both back. It deadlocks once every philosopher holds
+   * its left fork. Places: fork i = i, thinking i = n + i, holding its left
+   * fork i = 2n + i, eating i = 3n + i.
+   */
+  static Net philosophers(int n) {
+    int[] marking = new int[4 * n];
+    Map<Integer, Transition> transitions = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      int left = i;
+      int right = (i + 1) % n;
+      marking[left] = 1;
+      marking[n + i] = 1;
+      transitions.put(3 * i, transition(3 * i, new int[] {n + i, left}, new int[] {2 * n + i}));
+      transitions.put(3 * i + 1, transition(3 * i + 1, new int[] {2 * n + i, right}, new int[] {3 * n + i}));
+      transitions.put(3 * i + 2, transition(3 * i + 2, new int[] {3 * n + i}, new int[] {n + i, left, right}));
+    }
+    return new Net(marking, transitions);
+  }
+
+  /**
+   * An unbounded net: T0 keeps its token in p0 and adds one to p1, T1
+   * consumes the tokens of p1, and T2 needs two tokens in p0, which never
+   * holds more than one, so it is dead.
+   */
+  static Net producer() {
+    Map<Integer, Transition> transitions = new HashMap<>();
+    transitions.put(0, transition(0, new int[] {0}, new int[] {0, 1}));
+    transitions.put(1, transition(1, new int[] {1}, new int[0]));
+    transitions.put(2, new Transition(2, new int[] {0}, new int[] {2}, new int[] {1}, new int[] {1},
+        false, 0, Long.MAX_VALUE));
+    return new Net(new int[] {1, 0}, transitions);
+  }
+
+  /**
+   * Builds a non-temporal transition whose arcs all have weight 1.
+   */
+  static Transition transition(int id, int[] pre, int[] post) {
+    int[] preWeights = new int[pre.length];
+    int[] postWeights = new int[post.length];
+    Arrays.fill(preWeights, 1);
+    Arrays.fill(postWeights, 1);
+    return new Transition(id, pre, preWeights, post, postWeights, false, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns true if the transition is enabled in the marking.
+   */
+  static boolean isEnabled(Transition transition, int[] marking) {
+    int[] pre = transition.getPrePlaces();
+    int[] weights = transition.getPreWeights();
+    for (int a = 0; a < pre.length; a++) {
+      if (marking[pre[a]] < weights[a]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the marking reached by firing an enabled transition.
+   */
+  static int[] fire(Transition transition, int[] marking) {
+    int[] next = marking.clone();
+    int[] pre = transition.getPrePlaces();
+    int[] preWeights = transition.getPreWeights();
+    for (int a = 0; a < pre.length; a++) {
+      next[pre[a]] -= preWeights[a];
+    }
+    int[] post = transition.getPostPlaces();
+    int[] postWeights = transition.getPostWeights();
+    for (int a = 0; a < post.length; a++) {
+      next[post[a]] += postWeights[a];
+    }
+    return next;
+  }
+
+  /**
+   * The reachability graph of a bounded net, explored breadth-first on one
+   * thread.
+   */
+  static final class Graph {
+    final List<int[]> markings = new ArrayList<>();
+    long edges;
+    int deadlocks;
+    final Set<Integer> fired = new HashSet<>();
+  }
+
+  static Graph explore(Net net) {
+    Graph graph = new Graph();
+    Set<List<Integer>> seen = new HashSet<>();
+    Deque<int[]> queue = new ArrayDeque<>();
+    seen.add(key(net.marking));
+    queue.add(net.marking);
+    while (!queue.isEmpty()) {
+      int[] marking = queue.poll();
+      graph.markings.add(marking);
+      boolean dead = true;
+      for (Transition transition : net.transitions.values()) {
+        if (!isEnabled(transition, marking)) {
+          continue;
+        }
+        dead = false;
+        graph.edges++;
+        graph.fired.add(transition.getId());
+        int[] next = fire(transition, marking);
+        if (seen.add(key(next))) {
+          queue.add(next);
+        }
+      }
+      if (dead) {
+        graph.deadlocks++;
+      }
+    }
+    return graph;
+  }
+
+  private static List<Integer> key(int[] marking) {
+    List<Integer> key = new ArrayList<>(marking.length);
+    for (int tokens : marking) {
+      key.add(tokens);
+    }
+    return key;
+  }
+
+  /**
+   * Returns the largest number of tokens of a place over the markings.
+   */
+  static int bound(Graph graph, int placeId) {
+    int bound = 0;
+    for (int[] marking : graph.markings) {
+      bound = Math.max(bound, marking[placeId]);
+    }
+    return bound;
+  }
+}